@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.core;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.jfinal.config.Routes;
+
+/**
+ * ActionMappingBenchmark
+ *
+ * 对比 ActionIndex 单次扫描与原有 HashMap + lastIndexOf + substring 二次查找，
+ * 每批 url 覆盖四种形态：controllerKey、controllerKey/para、controllerKey/method、controllerKey/method/para
+ *
+ * 与 request.getRequestURI() 一样每次查找都使用新建的 String，避免 HashMap 命中已缓存的 hashCode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionMappingBenchmark {
+
+	private static final AtomicInteger trial = new AtomicInteger();
+	private static final int URL_COUNT = 1024;
+
+	@Param({"1000", "10000"})
+	public int routeCount;
+
+	private ActionMapping actionMapping;
+	private Map<String, Action> mapping;
+	private char[][] urls;
+
+	public static class BenchController extends Controller {
+		public void index() {}
+		public void list() {}
+		public void show() {}
+		public void save() {}
+		public void delete() {}
+	}
+
+	@Setup
+	public void setup() {
+		// Routes 内的 controllerKey 全局唯一，同一 JVM 内多次 setup 时加前缀区分
+		final String prefix = "/t" + trial.incrementAndGet();
+		final int controllerCount = routeCount / 5;	// 每个 controller 对应 5 个 action
+		Routes routes = new Routes() {
+			public void config() {
+				for (int i = 0; i < controllerCount; i++) {
+					add(prefix + "/module" + (i % 50) + "/res" + i, BenchController.class);
+				}
+			}
+		};
+		routes.config();
+		actionMapping = new ActionMapping(routes);
+		actionMapping.buildActionMapping();
+		mapping = actionMapping.mapping;
+
+		String[] methods = {"list", "show", "save", "delete"};
+		urls = new char[URL_COUNT][];
+		for (int i = 0; i < URL_COUNT; i++) {
+			int c = (i * 7919) % controllerCount;
+			String controllerKey = prefix + "/module" + (c % 50) + "/res" + c;
+			String url;
+			switch (i & 3) {
+			case 0: url = controllerKey; break;
+			case 1: url = controllerKey + "/" + i; break;
+			case 2: url = controllerKey + "/" + methods[i % methods.length]; break;
+			default: url = controllerKey + "/" + methods[i % methods.length] + "/" + i + "-a-b";
+			}
+			urls[i] = url.toCharArray();
+		}
+
+		String[] urlPara = {null};
+		for (char[] url : urls) {
+			if (actionMapping.getAction(new String(url), urlPara) == null) {
+				throw new IllegalStateException("Action not found: " + new String(url));
+			}
+		}
+	}
+
+	@Benchmark
+	public void actionIndex(Blackhole bh) {
+		String[] urlPara = {null};
+		for (char[] url : urls) {
+			bh.consume(actionMapping.getAction(new String(url), urlPara));
+			bh.consume(urlPara[0]);
+		}
+	}
+
+	@Benchmark
+	public void hashMapLastIndexOf(Blackhole bh) {
+		String[] urlPara = {null};
+		for (char[] url : urls) {
+			bh.consume(legacyGetAction(new String(url), urlPara));
+			bh.consume(urlPara[0]);
+		}
+	}
+
+	/**
+	 * ActionMapping 引入 ActionIndex 之前的查找逻辑
+	 */
+	private Action legacyGetAction(String url, String[] urlPara) {
+		Action action = mapping.get(url);
+		if (action != null) {
+			return action;
+		}
+
+		int i = url.lastIndexOf('/');
+		if (i != -1) {
+			action = mapping.get(url.substring(0, i));
+			urlPara[0] = url.substring(i + 1);
+		}
+		return action;
+	}
+}
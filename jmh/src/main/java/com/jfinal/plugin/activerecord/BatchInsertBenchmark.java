@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+import com.jfinal.plugin.activerecord.dialect.Sqlite3Dialect;
+
+/**
+ * BatchInsertBenchmark
+ *
+ * 向 sqlite 导入 100k 行 record，对比 batchSave() 的 addBatch/executeBatch 与 batchInsert() 的多行 values，
+ * batchInsert() 同时回填自增主键。synchronous 设为 OFF，只比较语句与驱动的开销，不受磁盘 fsync 影响
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+	private static final int ROW_COUNT = 100000;
+
+	@Param({"batchSave", "batchInsert"})
+	public String mode;
+
+	@Param({"1000"})
+	public int batchSize;
+
+	private File dbFile;
+	private ActiveRecordPlugin arp;
+	private DbPro db;
+	private List<Record> records;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException {
+		dbFile = File.createTempFile("batch-insert-benchmark", ".db");
+		SQLiteConfig sqliteConfig = new SQLiteConfig();
+		sqliteConfig.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
+		SQLiteDataSource dataSource = new SQLiteDataSource(sqliteConfig);
+		dataSource.setUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+		arp = new ActiveRecordPlugin("batchInsertBenchmark", dataSource);
+		arp.setDialect(new Sqlite3Dialect());
+		arp.start();
+		db = Db.use("batchInsertBenchmark");
+		db.update("create table t_order (id integer primary key autoincrement, name varchar(64), amount decimal(12, 2), status int, created_at bigint)");
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		db.update("delete from t_order");
+		records = new ArrayList<Record>(ROW_COUNT);
+		for (int i = 0; i < ROW_COUNT; i++) {
+			records.add(new Record()
+				.set("name", "order name " + i)
+				.set("amount", new BigDecimal(i).movePointLeft(2))
+				.set("status", i % 5)
+				.set("created_at", 1500000000000L + i));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		arp.stop();
+		dbFile.delete();
+	}
+
+	@Benchmark
+	public int[] importRows() {
+		if ("batchInsert".equals(mode)) {
+			return db.batchInsert("t_order", "id", records, batchSize);
+		}
+		return db.batchSave("t_order", records, batchSize);
+	}
+}
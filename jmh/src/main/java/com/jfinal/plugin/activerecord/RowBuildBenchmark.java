@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteDataSource;
+import com.jfinal.plugin.activerecord.dialect.Sqlite3Dialect;
+
+/**
+ * RowBuildBenchmark
+ *
+ * 对比 ArrayContainerFactory 与默认的 IContainerFactory 由 10k 行、10 列的结果集构建 Model 与 Record，
+ * 结果集预先从 sqlite 读入 CachedRowSet，每次调用只包含 ModelBuilder、RecordBuilder 本身的开销。
+ * 使用 -prof gc 运行以查看每次调用分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowBuildBenchmark {
+
+	private static final int ROW_COUNT = 10000;
+
+	@Param({"default", "array"})
+	public String containerFactory;
+
+	private File dbFile;
+	private ActiveRecordPlugin arp;
+	private Config config;
+	private CachedRowSet rowSet;
+
+	@SuppressWarnings("serial")
+	public static class Order extends Model<Order> {
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		dbFile = File.createTempFile("row-build-benchmark", ".db");
+		SQLiteDataSource dataSource = new SQLiteDataSource();
+		dataSource.setUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+
+		DbPro db;
+		Connection conn = dataSource.getConnection();
+		try {
+			conn.createStatement().executeUpdate("create table t_order (id integer primary key, user_id bigint, name varchar(64), remark varchar(255), amount double, quantity int, status int, type int, created_at bigint, updated_at bigint)");
+		} finally {
+			conn.close();
+		}
+
+		arp = new ActiveRecordPlugin("rowBuildBenchmark", dataSource);
+		arp.setDialect(new Sqlite3Dialect());
+		if ("array".equals(containerFactory)) {
+			arp.setContainerFactory(new ArrayContainerFactory());
+		}
+		arp.addMapping("t_order", Order.class);
+		arp.start();
+		config = DbKit.getConfig("rowBuildBenchmark");
+		db = Db.use("rowBuildBenchmark");
+
+		List<Record> records = new ArrayList<Record>(ROW_COUNT);
+		for (int i = 0; i < ROW_COUNT; i++) {
+			records.add(new Record()
+				.set("id", i + 1)
+				.set("user_id", 100000L + i % 1000)
+				.set("name", "order name " + i)
+				.set("remark", i % 3 == 0 ? null : "remark of order " + i)
+				.set("amount", i * 1.25)
+				.set("quantity", i % 10)
+				.set("status", i % 5)
+				.set("type", i % 2)
+				.set("created_at", 1500000000000L + i)
+				.set("updated_at", 1500000000000L + i * 2));
+		}
+		db.batchInsert("t_order", "id", records, 1000);
+
+		conn = config.getConnection();
+		try {
+			Statement st = conn.createStatement();
+			ResultSet rs = st.executeQuery("select * from t_order");
+			rowSet = RowSetProvider.newFactory().createCachedRowSet();
+			rowSet.populate(rs);
+			rs.close();
+			st.close();
+		} finally {
+			config.close(conn);
+		}
+		if (rowSet.size() != ROW_COUNT) {
+			throw new IllegalStateException("Expected " + ROW_COUNT + " rows but got " + rowSet.size());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		rowSet.close();
+		arp.stop();
+		dbFile.delete();
+	}
+
+	@Benchmark
+	public List<Order> buildModels() throws Exception {
+		rowSet.beforeFirst();
+		return ModelBuilder.me.build(rowSet, Order.class);
+	}
+
+	@Benchmark
+	public List<Record> buildRecords() throws Exception {
+		rowSet.beforeFirst();
+		return RecordBuilder.me.build(config, rowSet);
+	}
+
+	/**
+	 * 构建后读取每一行的所有列，包含 get 的查找开销
+	 */
+	@Benchmark
+	public long buildModelsAndRead() throws Exception {
+		rowSet.beforeFirst();
+		List<Order> list = ModelBuilder.me.build(rowSet, Order.class);
+		long sum = 0;
+		for (Order order : list) {
+			sum += order.getLong("user_id") + order.getInt("quantity") + order.getInt("status") + order.getInt("type");
+			sum += order.getStr("name").length() + order.getLong("created_at") + order.getLong("updated_at");
+			sum += order.getDouble("amount").longValue();
+			sum += order.getStr("remark") != null ? 1 : 0;
+			sum += order.getInt("id");
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.jfinal.plugin.redis.serializer.FstSerializer;
+import com.jfinal.plugin.redis.serializer.ISerializer;
+import com.jfinal.plugin.redis.serializer.JdkSerializer;
+import com.jfinal.plugin.redis.serializer.RowSerializer;
+
+/**
+ * RowSerializerBenchmark
+ *
+ * 对比 RowSerializer、FstSerializer 与 JdkSerializer 序列化一行 20 列的 Record 与 Model，
+ * 每种组合在 setup 时输出序列化后的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowSerializerBenchmark {
+
+	@Param({"row", "fst", "jdk"})
+	public String serializer;
+
+	@Param({"record", "model"})
+	public String payload;
+
+	private ISerializer ser;
+	private Object value;
+	private byte[] bytes;
+	private Set<String> projection;
+
+	@SuppressWarnings("serial")
+	public static class Order extends Model<Order> {
+	}
+
+	@Setup
+	public void setup() {
+		Map<String, Class<?>> columnTypeMap = new LinkedHashMap<String, Class<?>>();
+		Map<String, Object> row = new LinkedHashMap<String, Object>();
+		long now = 1500000000000L;
+		for (int i = 0; i < 4; i++) {
+			put(columnTypeMap, row, "id_" + i, Long.valueOf(1000000L + i));
+			put(columnTypeMap, row, "name_" + i, "order name " + i);
+			put(columnTypeMap, row, "amount_" + i, new BigDecimal("1234.5" + i));
+			put(columnTypeMap, row, "status_" + i, Integer.valueOf(i));
+			put(columnTypeMap, row, "created_at_" + i, new Timestamp(now + i));
+		}
+
+		Table table = new Table("t_order", "id_0", Order.class);
+		table.setColumnTypeMap(columnTypeMap);
+		TableMapping.me().putTable(table);
+
+		if ("record".equals(payload)) {
+			value = new Record().setColumns(row);
+		} else {
+			Order order = new Order();
+			for (Map.Entry<String, Object> e : row.entrySet()) {
+				order.put(e.getKey(), e.getValue());
+			}
+			value = order;
+		}
+
+		if ("row".equals(serializer)) {
+			ser = RowSerializer.me;
+		} else if ("fst".equals(serializer)) {
+			ser = FstSerializer.me;
+		} else {
+			ser = JdkSerializer.me;
+		}
+		bytes = ser.valueToBytes(value);
+		projection = new HashSet<String>();
+		projection.add("id_0");
+		projection.add("name_0");
+		System.out.println("\n" + serializer + "/" + payload + " serialized size: " + bytes.length + " bytes");
+	}
+
+	private static void put(Map<String, Class<?>> columnTypeMap, Map<String, Object> row, String name, Object value) {
+		columnTypeMap.put(name, value.getClass());
+		row.put(name, value);
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return ser.valueToBytes(value);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return ser.valueFromBytes(bytes);
+	}
+
+	/**
+	 * 只取两列，RowSerializer 跳过其余列的解码，其它序列化器只能完整反序列化
+	 */
+	@Benchmark
+	public Object deserializeTwoColumns() {
+		if (ser instanceof RowSerializer) {
+			return ((RowSerializer)ser).readRow(bytes, projection);
+		}
+		return ser.valueFromBytes(bytes);
+	}
+}
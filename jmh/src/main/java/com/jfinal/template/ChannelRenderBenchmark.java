@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ChannelRenderBenchmark
+ *
+ * 渲染约 200KB 的页面（大段静态文本之间穿插表达式与 #for 循环），
+ * 对比 render(OutputStream)、render(WritableByteChannel) 与 renderToByteBuffers(...)，使用 -prof gc 查看分配
+ *
+ * sink = discard：输出端只统计字节数，OutputStream 带有与 servlet 响应相同的 8KB 缓冲，结果只包含模板引擎自身的开销
+ * sink = devnull：写入 /dev/null（仅限 Linux、macOS），包含系统调用以及 JDK 将堆内 ByteBuffer 拷贝到直接内存的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelRenderBenchmark {
+
+	@Param({"discard", "devnull"})
+	public String sink;
+
+	private Template template;
+	private Map<String, Object> data;
+	private OutputStream outputStream;
+	private GatheringByteChannel channel;
+	private FileOutputStream devNull;
+
+	@Setup
+	public void setup() throws IOException {
+		if ("devnull".equals(sink)) {
+			devNull = new FileOutputStream("/dev/null");
+			outputStream = new BufferedOutputStream(devNull, 8192);
+			channel = devNull.getChannel();
+		} else {
+			outputStream = new BufferedOutputStream(new CountingOutputStream(), 8192);
+			channel = new CountingChannel();
+		}
+
+		StringBuilder staticBlock = new StringBuilder();
+		for (int i = 0; staticBlock.length() < 4096; i++) {
+			staticBlock.append("<div class=\"item\"><span class=\"label\">static text line ").append(i).append("</span></div>\n");
+		}
+
+		StringBuilder source = new StringBuilder("<html><head><title>#(title)</title></head><body>\n");
+		for (int i = 0; i < 45; i++) {
+			source.append(staticBlock);
+			source.append("<h2>#(title) ").append(i).append("</h2><table>\n");
+			source.append("#for(row : rows)<tr><td>#(row.id)</td><td>#(row.name)</td><td>#(row.amount)</td></tr>\n#end");
+			source.append("</table>\n");
+		}
+		source.append("</body></html>");
+
+		Engine engine = Engine.create("channelRenderBenchmark");
+		template = engine.getTemplateByString(source.toString());
+
+		data = new HashMap<String, Object>();
+		data.put("title", "订单列表 order list");
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 10; i++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", 100000 + i);
+			row.put("name", "商品 item " + i);
+			row.put("amount", i * 12.5);
+			rows.add(row);
+		}
+		data.put("rows", rows);
+
+		long size = 0;
+		for (ByteBuffer buffer : template.renderToByteBuffers(data)) {
+			size += buffer.remaining();
+		}
+		System.out.println("\nrendered page size: " + size + " bytes");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (devNull != null) {
+			devNull.close();
+		}
+	}
+
+	/**
+	 * Template.render(...) 结束时 flush，与 servlet 一样整页写完后清空缓冲
+	 */
+	@Benchmark
+	public void outputStream() {
+		template.render(data, outputStream);
+	}
+
+	@Benchmark
+	public void channel() {
+		template.render(data, channel);
+	}
+
+	@Benchmark
+	public long byteBuffers() throws IOException {
+		ByteBuffer[] buffers = template.renderToByteBuffers(data);
+		long ret = 0;
+		while (buffers[buffers.length - 1].hasRemaining()) {
+			ret += channel.write(buffers);
+		}
+		return ret;
+	}
+
+	/**
+	 * 只统计写入的字节数
+	 */
+	static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		public void write(int b) {
+			count++;
+		}
+
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	/**
+	 * 与 SocketChannel、FileChannel 一样支持 gathering write，只统计写入的字节数
+	 */
+	static class CountingChannel implements GatheringByteChannel {
+
+		long count;
+
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			src.position(src.limit());
+			count += n;
+			return n;
+		}
+
+		public long write(ByteBuffer[] srcs, int offset, int length) {
+			long n = 0;
+			for (int i = offset; i < offset + length; i++) {
+				n += write(srcs[i]);
+			}
+			return n;
+		}
+
+		public long write(ByteBuffer[] srcs) {
+			return write(srcs, 0, srcs.length);
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+	}
+}
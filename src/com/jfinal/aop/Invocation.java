@@ -16,6 +16,7 @@
 
 package com.jfinal.aop;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import com.jfinal.core.Action;
@@ -70,7 +71,11 @@ public class Invocation {
 			try {
 				// Invoke the action
 				if (action != null) {
-					returnValue = action.getMethod().invoke(target, args);
+					MethodHandle methodHandle = action.getMethodHandle();
+					if (methodHandle != null)
+						returnValue = (Object)methodHandle.invokeExact((Controller)target);
+					else
+						returnValue = action.getMethod().invoke(target, args);
 				}
 				// Invoke the method
 				else {
@@ -3,7 +3,9 @@ package com.jfinal.base;
 import com.jfinal.core.Controller;
 import com.jfinal.ext.plugin.sql.Cnd;
 import com.jfinal.interfaces.ISuccCallback;
+import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.activerecord.IBean;
+import com.jfinal.plugin.activerecord.KeysetPage;
 import com.jfinal.plugin.activerecord.Model;
 import com.jfinal.plugin.activerecord.Page;
 
@@ -102,6 +104,45 @@ public class BaseControllerKit<M extends Model<M>> {
         return page;
     }
 
+    /**
+     * 通用keyset分页查找，以主键作为排序键，翻页耗时与页码无关，需显式调用，getPage 不会切换到此模式
+     *
+     * 参数：cursor 上一页返回的游标，第一页为空；pageSize 每页条数；
+     * desc 是否按主键降序；countMode 总行数计算方式（NONE、EXACT、ESTIMATED），默认及取值无效时为 NONE
+     */
+    public KeysetPage<M> getKeysetPage() {
+        return getKeysetPage(controller.getParaMap());
+    }
+    public KeysetPage<M> getKeysetPage(Map<String, String[]> params) {
+        Cnd.Query cnd = getQuery(params).where().build();
+        M m = getM();
+        String alias = m.getAlias();
+        String pkName = m.getPkName();
+
+        KeysetPage<M> page = m.paginateByKeyset(controller.getPara("cursor"),
+                controller.getParaToInt("pageSize", 10),
+                StrKit.isBlank(alias) ? pkName : alias + "." + pkName,
+                controller.getParaToBoolean("desc", false),
+                getCountMode(),
+                Cnd.$SELECT_,
+                String.format(Cnd.$_FROM_TABLE, m.getTableName()).concat(alias==null?"":" "+alias).concat(cnd.getSql()),
+                cnd.getParas()
+        );
+        return page;
+    }
+
+    private KeysetPage.CountMode getCountMode() {
+        String countMode = controller.getPara("countMode");
+        if(StrKit.notBlank(countMode)){
+            for(KeysetPage.CountMode mode : KeysetPage.CountMode.values()){
+                if(mode.name().equalsIgnoreCase(countMode.trim())){
+                    return mode;
+                }
+            }
+        }
+        return KeysetPage.CountMode.NONE;
+    }
+
     /**
      * 通用查找全部
      */
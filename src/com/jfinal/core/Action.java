@@ -16,6 +16,9 @@
 
 package com.jfinal.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import com.jfinal.aop.Interceptor;
 
@@ -31,6 +34,7 @@ public class Action {
 	private final String methodName;
 	private final Interceptor[] interceptors;
 	private final String viewPath;
+	private final MethodHandle methodHandle;
 	
 	public Action(String controllerKey, String actionKey, Class<? extends Controller> controllerClass, Method method, String methodName, Interceptor[] interceptors, String viewPath) {
 		this.controllerKey = controllerKey;
@@ -40,6 +44,23 @@ public class Action {
 		this.methodName = methodName;
 		this.interceptors = interceptors;
 		this.viewPath = viewPath;
+		this.methodHandle = buildMethodHandle(method);
+	}
+	
+	/**
+	 * Bind the action method once at startup, so Invocation can call it directly
+	 * with signature (Controller)Object, avoiding Method.invoke() per request
+	 */
+	private static MethodHandle buildMethodHandle(Method method) {
+		try {
+			if (!method.isAccessible()) {
+				method.setAccessible(true);
+			}
+			MethodType type = MethodType.methodType(Object.class, Controller.class);
+			return MethodHandles.lookup().unreflect(method).asType(type);
+		} catch (Exception e) {
+			return null;	// fall back to Method.invoke()
+		}
 	}
 	
 	public Class<? extends Controller> getControllerClass() {
@@ -58,6 +79,14 @@ public class Action {
 		return method;
 	}
 	
+	/**
+	 * Return the MethodHandle of action method with type (Controller)Object,
+	 * or null if it can not be created
+	 */
+	public MethodHandle getMethodHandle() {
+		return methodHandle;
+	}
+	
 	public Interceptor[] getInterceptors() {
 		return interceptors;
 	}
@@ -147,6 +147,7 @@ public class ActionHandler extends Handler {
 		} finally {
 			if (controller != null) {
 				controller.clear();
+				controllerFactory.recycle(controller);
 			}
 		}
 	}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.core;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * ActionIndex
+ *
+ * 由 ActionMapping.buildActionMapping() 一次性编译生成的只读开放寻址表，
+ * 单次扫描 url 即可同时算出整个 url 与最后一个 '/' 之前部分的 hash，以及 urlPara 的分割位置，
+ * 无需 lastIndexOf + substring 后重新计算 hash 二次查找
+ *
+ * 匹配规则与 ActionMapping 原有逻辑保持一致：
+ * 1: url 完整命中 actionKey，直接返回
+ * 2: 否则取最后一个 '/' 之前的部分作为 actionKey，之后的部分作为 urlPara
+ */
+final class ActionIndex {
+
+	private final int mask;
+	private final int[] hashes;
+	private final String[] keys;
+	private final Action[] actions;
+
+	ActionIndex(Map<String, Action> mapping) {
+		int capacity = 16;
+		while (capacity < mapping.size() * 2) {		// 装载因子不超过 0.5
+			capacity <<= 1;
+		}
+		mask = capacity - 1;
+		hashes = new int[capacity];
+		keys = new String[capacity];
+		actions = new Action[capacity];
+
+		for (Entry<String, Action> e : mapping.entrySet()) {
+			String key = e.getKey();
+			int h = key.hashCode();
+			int i = spread(h) & mask;
+			while (keys[i] != null) {
+				i = (i + 1) & mask;
+			}
+			hashes[i] = h;
+			keys[i] = key;
+			actions[i] = e.getValue();
+		}
+	}
+
+	Action getAction(String url, String[] urlPara) {
+		int len = url.length();
+		int h = 0;
+		int slash = -1;				// 最后一个 '/' 的位置
+		int slashHash = 0;			// slash 之前部分的 hash，与 String.hashCode() 算法一致
+		for (int i = 0; i < len; i++) {
+			char c = url.charAt(i);
+			if (c == '/') {
+				slash = i;
+				slashHash = h;
+			}
+			h = 31 * h + c;
+		}
+
+		Action action = find(url, len, h);
+		if (action != null || slash == -1) {
+			return action;
+		}
+
+		action = find(url, slash, slashHash);
+		if (action != null) {
+			urlPara[0] = url.substring(slash + 1);
+		}
+		return action;
+	}
+
+	/**
+	 * 查找与 url 前 len 个字符相同的 actionKey
+	 */
+	private Action find(String url, int len, int h) {
+		for (int i = spread(h) & mask; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == h) {
+				String key = keys[i];
+				if (key.length() == len && url.startsWith(key)) {
+					return actions[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+}
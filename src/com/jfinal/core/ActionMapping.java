@@ -39,6 +39,7 @@ public class ActionMapping {
 	
 	protected Routes routes;
 	protected Map<String, Action> mapping = new HashMap<String, Action>();
+	private ActionIndex actionIndex;
 	
 	public ActionMapping(Routes routes) {
 		this.routes = routes;
@@ -114,6 +115,8 @@ public class ActionMapping {
 		if (action != null) {
 			mapping.put("", action);
 		}
+		
+		actionIndex = new ActionIndex(mapping);
 	}
 	
 	protected String buildMsg(String actionKey, Class<? extends Controller> controllerClass, Method method) {
@@ -135,8 +138,14 @@ public class ActionMapping {
 	 * 4: http://abc.com/controllerKey/method/para     ---> 11
 	 * The controllerKey can also contains "/"
 	 * Example: http://abc.com/uvw/xyz/method/para
+	 * 
+	 * After buildActionMapping() the url is resolved by ActionIndex in a single pass
 	 */
 	public Action getAction(String url, String[] urlPara) {
+		if (actionIndex != null) {
+			return actionIndex.getAction(url, urlPara);
+		}
+		
 		Action action = mapping.get(url);
 		if (action != null) {
 			return action;
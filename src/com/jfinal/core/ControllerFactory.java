@@ -24,6 +24,13 @@ public class ControllerFactory {
 	public Controller getController(Class<? extends Controller> controllerClass) throws InstantiationException, IllegalAccessException {
 		return controllerClass.newInstance();
 	}
+	
+	/**
+	 * Invoked by ActionHandler after Controller.clear(), subclass can pool the controller for reuse
+	 */
+	public void recycle(Controller controller) {
+		
+	}
 }
 
 
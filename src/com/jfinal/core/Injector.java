@@ -16,10 +16,18 @@
 
 package com.jfinal.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.http.HttpServletRequest;
+import com.jfinal.core.converter.IConverter;
 import com.jfinal.core.converter.TypeConverter;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.activerecord.ActiveRecordException;
@@ -29,9 +37,14 @@ import com.jfinal.plugin.activerecord.TableMapping;
 
 /**
  * Injector.
+ * 
+ * Setter 方法、参数名与 IConverter 按 Class 预先解析并缓存，注入时只需遍历一次参数
  */
 public class Injector {
 	
+	private static final ConcurrentHashMap<Class<?>, BeanInjector> beanInjectorCache = new ConcurrentHashMap<Class<?>, BeanInjector>();
+	private static final ConcurrentHashMap<Class<?>, ModelInjector> modelInjectorCache = new ConcurrentHashMap<Class<?>, ModelInjector>();
+	
 	private static <T> T createInstance(Class<T> objClass) {
 		try {
 			return objClass.newInstance();
@@ -53,27 +66,19 @@ public class Injector {
 	@SuppressWarnings("unchecked")
 	public static final <T> T injectBean(Class<T> beanClass, String beanName, HttpServletRequest request, boolean skipConvertError) {
 		Object bean = createInstance(beanClass);
-		String modelNameAndDot = StrKit.notBlank(beanName) ? beanName + "." : null;
+		BeanInjector injector = getBeanInjector(beanClass);
+		Setter[] setters = injector.setters;
+		String[] paraNames = injector.getParaNames(beanName);
 		TypeConverter converter = TypeConverter.me();
 		Map<String, String[]> parasMap = request.getParameterMap();
-		Method[] methods = beanClass.getMethods();
-		for (Method method : methods) {
-			String methodName = method.getName();
-			if (methodName.startsWith("set") == false || methodName.length() <= 3) {	// only setter method
-				continue;
-			}
-			Class<?>[] types = method.getParameterTypes();
-			if (types.length != 1) {						// only one parameter
-				continue;
-			}
-			
-			String attrName = StrKit.firstCharToLowerCase(methodName.substring(3));
-			String paraName = modelNameAndDot != null ? modelNameAndDot + attrName : attrName;
-			if (parasMap.containsKey(paraName)) {
+		for (int i = 0; i < setters.length; i++) {
+			String[] paraValueArray = parasMap.get(paraNames[i]);
+			if (paraValueArray != null) {
+				Setter setter = setters[i];
 				try {
-					String paraValue = request.getParameter(paraName);
-					Object value = paraValue != null ? converter.convert(types[0], paraValue) : null;
-					method.invoke(bean, value);
+					String paraValue = paraValueArray.length > 0 ? paraValueArray[0] : null;
+					Object value = paraValue != null ? converter.convert(setter.type, setter.converter, paraValue) : null;
+					setter.set(bean, value);
 				} catch (Exception e) {
 					if (skipConvertError == false) {
 						throw new RuntimeException(e);
@@ -99,7 +104,9 @@ public class Injector {
 					" not exists or the ActiveRecordPlugin not start.");
 		}
 		
-		String modelNameAndDot = StrKit.notBlank(modelName) ? modelName + "." : null;
+		ModelInjector injector = getModelInjector(modelClass, table);
+		Map<String, Column> columns = injector.getColumns(modelName);
+		String modelNameAndDot = StrKit.notBlank(modelName) ? injector.getModelNameAndDot(modelName) : null;
 		Map<String, String[]> parasMap = request.getParameterMap();
 		TypeConverter converter = TypeConverter.me();
 		// 对 paraMap进行遍历而不是对table.getColumnTypeMapEntrySet()进行遍历，以便支持 CaseInsensitiveContainerFactory
@@ -107,30 +114,42 @@ public class Injector {
 		for (Entry<String, String[]> entry : parasMap.entrySet()) {
 			String paraName = entry.getKey();
 			String attrName;
-			if (modelNameAndDot != null) {
-				if (paraName.startsWith(modelNameAndDot)) {
-					attrName = paraName.substring(modelNameAndDot.length());
-				} else {
-					continue ;
-				}
-			} else {
-				attrName = paraName;
-			}
+			Class<?> colType;
+			IConverter<?> colConverter;
 			
-			Class<?> colType = table.getColumnType(attrName);
-			if (colType == null) {
-				if (skipConvertError) {
-					continue ;
+			Column column = columns.get(paraName);
+			if (column != null) {
+				attrName = column.attrName;
+				colType = column.type;
+				colConverter = column.converter;
+			} else {
+				// 未命中预先计算的参数名时，退回按前缀截取 attrName 的方式，例如大小写不一致的参数名
+				if (modelNameAndDot != null) {
+					if (paraName.startsWith(modelNameAndDot)) {
+						attrName = paraName.substring(modelNameAndDot.length());
+					} else {
+						continue ;
+					}
 				} else {
-					throw new ActiveRecordException("The model attribute " + attrName + " is not exists.");
+					attrName = paraName;
 				}
+				
+				colType = table.getColumnType(attrName);
+				if (colType == null) {
+					if (skipConvertError) {
+						continue ;
+					} else {
+						throw new ActiveRecordException("The model attribute " + attrName + " is not exists.");
+					}
+				}
+				colConverter = converter.getConverter(colType);
 			}
 			
 			try {
 				String[] paraValueArray = entry.getValue();
 				String paraValue = (paraValueArray != null && paraValueArray.length > 0) ? paraValueArray[0] : null;
 				
-				Object value = paraValue != null ? converter.convert(colType, paraValue) : null;
+				Object value = paraValue != null ? converter.convert(colType, colConverter, paraValue) : null;
 				model.set(attrName, value);
 			} catch (Exception e) {
 				if (skipConvertError == false) {
@@ -141,5 +160,175 @@ public class Injector {
 		
 		return (T)model;
 	}
+	
+	private static BeanInjector getBeanInjector(Class<?> beanClass) {
+		BeanInjector ret = beanInjectorCache.get(beanClass);
+		if (ret == null) {
+			ret = new BeanInjector(beanClass);
+			BeanInjector old = beanInjectorCache.putIfAbsent(beanClass, ret);
+			if (old != null) {
+				ret = old;
+			}
+		}
+		return ret;
+	}
+	
+	private static ModelInjector getModelInjector(Class<?> modelClass, Table table) {
+		ModelInjector ret = modelInjectorCache.get(modelClass);
+		if (ret == null || ret.table != table) {	// ActiveRecordPlugin 重启后 Table 对象会变化
+			ret = new ModelInjector(table);
+			modelInjectorCache.put(modelClass, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * 单个 setter 方法，MethodHandle 类型为 (Object, Object)void
+	 */
+	private static class Setter {
+		
+		final String attrName;
+		final Class<?> type;
+		final IConverter<?> converter;
+		final MethodHandle handle;
+		final Method method;
+		
+		Setter(String attrName, Method method) {
+			this.attrName = attrName;
+			this.type = method.getParameterTypes()[0];
+			this.converter = TypeConverter.me().getConverter(type);
+			this.method = method;
+			
+			MethodHandle mh;
+			try {
+				mh = MethodHandles.publicLookup().unreflect(method).asType(MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (Exception e) {
+				mh = null;		// fall back to Method.invoke()
+			}
+			this.handle = mh;
+		}
+		
+		void set(Object bean, Object value) throws Exception {
+			if (handle == null) {
+				method.invoke(bean, value);
+				return ;
+			}
+			
+			try {
+				handle.invokeExact(bean, value);
+			} catch (Exception e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+	}
+	
+	private static class BeanInjector {
+		
+		final Setter[] setters;
+		final String[] attrNames;
+		final ConcurrentHashMap<String, String[]> paraNamesCache = new ConcurrentHashMap<String, String[]>();
+		
+		BeanInjector(Class<?> beanClass) {
+			List<Setter> list = new ArrayList<Setter>();
+			for (Method method : beanClass.getMethods()) {
+				String methodName = method.getName();
+				if (methodName.startsWith("set") == false || methodName.length() <= 3) {	// only setter method
+					continue;
+				}
+				if (method.getParameterTypes().length != 1) {	// only one parameter
+					continue;
+				}
+				list.add(new Setter(StrKit.firstCharToLowerCase(methodName.substring(3)), method));
+			}
+			
+			setters = list.toArray(new Setter[list.size()]);
+			attrNames = new String[setters.length];
+			for (int i = 0; i < setters.length; i++) {
+				attrNames[i] = setters[i].attrName;
+			}
+		}
+		
+		/**
+		 * 返回与 setters 一一对应的参数名: beanName + "." + attrName
+		 */
+		String[] getParaNames(String beanName) {
+			if (StrKit.isBlank(beanName)) {
+				return attrNames;
+			}
+			
+			String[] ret = paraNamesCache.get(beanName);
+			if (ret == null) {
+				ret = new String[attrNames.length];
+				for (int i = 0; i < ret.length; i++) {
+					ret[i] = beanName + "." + attrNames[i];
+				}
+				paraNamesCache.put(beanName, ret);
+			}
+			return ret;
+		}
+	}
+	
+	private static class Column {
+		
+		final String attrName;
+		final Class<?> type;
+		final IConverter<?> converter;
+		
+		Column(String attrName, Class<?> type) {
+			this.attrName = attrName;
+			this.type = type;
+			this.converter = TypeConverter.me().getConverter(type);
+		}
+	}
+	
+	private static class ModelInjector {
+		
+		final Table table;
+		final Map<String, Column> columns;
+		final ConcurrentHashMap<String, Map<String, Column>> columnsCache = new ConcurrentHashMap<String, Map<String, Column>>();
+		final ConcurrentHashMap<String, String> modelNameAndDotCache = new ConcurrentHashMap<String, String>();
+		
+		ModelInjector(Table table) {
+			this.table = table;
+			Map<String, Column> map = new HashMap<String, Column>();
+			for (Entry<String, Class<?>> e : table.getColumnTypeMapEntrySet()) {
+				map.put(e.getKey(), new Column(e.getKey(), e.getValue()));
+			}
+			this.columns = map;
+		}
+		
+		/**
+		 * 返回以参数名 modelName + "." + attrName 为 key 的 Column
+		 */
+		Map<String, Column> getColumns(String modelName) {
+			if (StrKit.isBlank(modelName)) {
+				return columns;
+			}
+			
+			Map<String, Column> ret = columnsCache.get(modelName);
+			if (ret == null) {
+				String modelNameAndDot = getModelNameAndDot(modelName);
+				ret = new HashMap<String, Column>();
+				for (Column column : columns.values()) {
+					ret.put(modelNameAndDot + column.attrName, column);
+				}
+				columnsCache.put(modelName, ret);
+			}
+			return ret;
+		}
+		
+		String getModelNameAndDot(String modelName) {
+			String ret = modelNameAndDotCache.get(modelName);
+			if (ret == null) {
+				ret = modelName + ".";
+				modelNameAndDotCache.put(modelName, ret);
+			}
+			return ret;
+		}
+	}
 }
 
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PooledControllerFactory
+ *
+ * 复用 Controller 对象的 ControllerFactory，配置方式：
+ * <pre>
+ * me.setControllerFactory(new PooledControllerFactory());
+ * </pre>
+ *
+ * 1: 每个 Controller 类拥有一个池，池按线程 id 分为多个 stripe，每个 stripe 容量有上限，
+ *    大量 servlet 线程时锁竞争被分散，且空闲对象总数有界
+ * 2: getController() 从池中取出对象，ActionHandler 使用完毕后先调用 Controller.clear()
+ *    再调用 recycle() 放回池中，forward 重入 ActionHandler.handle() 时取到的是不同的对象
+ * 3: 被复用的 Controller 不能在自身属性中保存与请求相关的状态
+ */
+public class PooledControllerFactory extends ControllerFactory {
+
+	private final ConcurrentHashMap<Class<? extends Controller>, Pool> pools = new ConcurrentHashMap<Class<? extends Controller>, Pool>();
+	private final int stripeMask;
+	private final int maxIdlePerStripe;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder discardCount = new LongAdder();
+
+	/**
+	 * @param stripes stripe 数量，会向上取整为 2 的幂
+	 * @param maxIdlePerStripe 每个 stripe 最多缓存的空闲 Controller 数量
+	 */
+	public PooledControllerFactory(int stripes, int maxIdlePerStripe) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be greater than 0");
+		}
+		if (maxIdlePerStripe < 1) {
+			throw new IllegalArgumentException("maxIdlePerStripe must be greater than 0");
+		}
+
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		this.stripeMask = n - 1;
+		this.maxIdlePerStripe = maxIdlePerStripe;
+	}
+
+	public PooledControllerFactory() {
+		this(Runtime.getRuntime().availableProcessors() * 2, 16);
+	}
+
+	public Controller getController(Class<? extends Controller> controllerClass) throws InstantiationException, IllegalAccessException {
+		Controller ret = getPool(controllerClass).stripe().pop();
+		if (ret != null) {
+			hitCount.increment();
+			return ret;
+		}
+
+		missCount.increment();
+		return controllerClass.newInstance();
+	}
+
+	public void recycle(Controller controller) {
+		Pool pool = pools.get(controller.getClass());
+		if (pool == null || !pool.stripe().push(controller)) {
+			discardCount.increment();
+		}
+	}
+
+	private Pool getPool(Class<? extends Controller> controllerClass) {
+		Pool pool = pools.get(controllerClass);
+		if (pool == null) {
+			pool = new Pool();
+			Pool old = pools.putIfAbsent(controllerClass, pool);
+			if (old != null) {
+				pool = old;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * 从池中取到对象的次数
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * 池中无可用对象而新建 Controller 的次数
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * 池已满而丢弃 Controller 的次数
+	 */
+	public long getDiscardCount() {
+		return discardCount.sum();
+	}
+
+	public void clear() {
+		pools.clear();
+	}
+
+	private final class Pool {
+
+		final Stripe[] stripes = new Stripe[stripeMask + 1];
+
+		Pool() {
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i] = new Stripe(maxIdlePerStripe);
+			}
+		}
+
+		Stripe stripe() {
+			long id = Thread.currentThread().getId();
+			return stripes[(int)(id ^ (id >>> 16)) & stripeMask];
+		}
+	}
+
+	private static final class Stripe {
+
+		final Controller[] items;
+		int size = 0;
+
+		Stripe(int capacity) {
+			items = new Controller[capacity];
+		}
+
+		synchronized Controller pop() {
+			if (size == 0) {
+				return null;
+			}
+			Controller ret = items[--size];
+			items[size] = null;
+			return ret;
+		}
+
+		synchronized boolean push(Controller controller) {
+			if (size == items.length) {
+				return false;
+			}
+			items[size++] = controller;
+			return true;
+		}
+	}
+}
@@ -91,6 +91,13 @@ public class TypeConverter {
 		converterMap.put(type, converter);
 	}
 	
+	/**
+	 * 获取已注册的 IConverter，供 Injector 预先缓存，未注册时返回 null
+	 */
+	public IConverter<?> getConverter(Class<?> type) {
+		return converterMap.get(type);
+	}
+	
 	/**
 	 * 将 String 数据转换为指定的类型
 	 * @param type 需要转换成为的数据类型
@@ -98,6 +105,17 @@ public class TypeConverter {
 	 * @return 转换成功的数据
 	 */
 	public final Object convert(Class<?> type, String s) throws ParseException {
+		return convert(type, type == String.class ? null : converterMap.get(type), s);
+	}
+	
+	/**
+	 * 使用预先获取的 IConverter 将 String 数据转换为指定的类型，省去每次查找 converterMap
+	 * @param type 需要转换成为的数据类型
+	 * @param converter 通过 getConverter(type) 获取的 IConverter，可以为 null
+	 * @param s 被转换的 String 类型数据，不接受 null 值
+	 * @return 转换成功的数据
+	 */
+	public final Object convert(Class<?> type, IConverter<?> converter, String s) throws ParseException {
 		// mysql type: varchar, char, enum, set, text, tinytext, mediumtext, longtext
 		if (type == String.class) {
 			return ("".equals(s) ? null : s);	// 用户在表单域中没有输入内容时将提交过来 "", 因为没有输入,所以要转成 null.
@@ -110,7 +128,6 @@ public class TypeConverter {
 		//String.class提前处理
 		
 		// --------
-		IConverter<?> converter = converterMap.get(type);
 		if (converter != null) {
 			return converter.convert(s);
 		}
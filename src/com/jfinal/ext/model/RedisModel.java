@@ -7,6 +7,7 @@ import com.jfinal.plugin.activerecord.Table;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -86,16 +87,54 @@ public abstract class RedisModel<M extends Model<M>> extends Model<M> {
 
 	/**
 	 * 方便redis存储情况，通过ids集获取数据
+	 * redis 通过一次MGET获取，未命中的id通过一次 in 查询从DB获取，再通过管道回填redis
 	 * @param ids
-	 * @return
+	 * @return 与ids顺序一致
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public List<M> findByIds(List<?> ids){
 		List<M> list = new ArrayList<M>();
-		for(Object id : ids){
-			M m = findById(id);
-			if(m != null){
-				list.add(m);
+		if(ids == null || ids.isEmpty()){
+			return list;
+		}
+		RedisDb redisDb = getRedisDb();
+		List<Map<String,Object>> maps = redisDb.getRedisMaps(this.getClass(), ids);
+
+		List<Object> missIds = new ArrayList<Object>();
+		for(int i = 0; i < maps.size(); i++){
+			if(maps.get(i) == null){
+				missIds.add(ids.get(i));
+			}
+		}
+
+		Map<String, M> loaded = new HashMap<String, M>();
+		if(missIds.size() > 0){
+			String pkName = getPkName();
+			for(M m : super.findByIds(missIds)){
+				loaded.put(String.valueOf(m.get(pkName)), m);
+			}
+			Map<Object, Object> backFill = new LinkedHashMap<Object, Object>();
+			for(Object id : missIds){
+				M m = loaded.get(String.valueOf(id));
+				//处理空值情况，防止null进行DB穿透
+				backFill.put(id, m != null ? m : new HashMap<String,Object>());
+			}
+			redisDb.addAll(this.getClass(), backFill);
+		}
+
+		for(int i = 0; i < maps.size(); i++){
+			Map<String,Object> map = maps.get(i);
+			if(map != null){
+				//redis空值特殊处理
+				if(map.size() > 0){
+					list.add((M) ModelKit.toModel(this.getClass(), map));
+				}
+			} else {
+				M m = loaded.get(String.valueOf(ids.get(i)));
+				if(m != null){
+					list.add(m);
+				}
 			}
 		}
 		return list;
@@ -4,6 +4,9 @@ import com.jfinal.interfaces.IDataLoader;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.redis.Cache;
 import com.jfinal.plugin.redis.Redis;
+import com.jfinal.plugin.redis.serializer.ISerializer;
+import com.jfinal.plugin.redis.serializer.RowSerializer;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 
 import java.util.*;
@@ -115,17 +118,21 @@ public class RedisDb {
 			return null;
 		}
 		//从redis获取数据
-		Map<String,Object> map = getRedisMap(RedisDbBuilder.getKey(alias, idValue));
+		Map<String,Object> map = getRedisMap(RedisDbBuilder.getKey(alias, idValue), filterAttrs);
 		//过滤属性
+		filterAttrs(map, filterAttrs);
+		return map;
+	}
+
+	private static void filterAttrs(Map<String,Object> map, String[] filterAttrs){
 		if(map != null && map.size() > 0 && filterAttrs != null && filterAttrs.length > 0){
 			List<String> fAttrs = Arrays.asList(filterAttrs);
-			for(Entry<String,Object> entry : map.entrySet()){
-				if(!fAttrs.contains(entry.getKey())){
-					map.remove(entry.getKey());
+			for(Iterator<Entry<String,Object>> it = map.entrySet().iterator(); it.hasNext();){
+				if(!fAttrs.contains(it.next().getKey())){
+					it.remove();
 				}
 			}
 		}
-		return map;
 	}
 	public Map<String,Object> getRedisDbMap(Class<?> beanClass, Object idValue, String[] filterAttrs){
 		return getRedisDbMap(RedisDbBuilder.getAlias(beanClass), idValue, filterAttrs);
@@ -149,10 +156,9 @@ public class RedisDb {
 			return null;
 		}
 		List<Map<String,Object>> list = new ArrayList<>();
-		Map<String,Object> map;
-		for(Object idValue : idValues){
-			map = getRedisDbMap(alias, idValue, filterAttrs);
+		for(Map<String,Object> map : getRedisMaps(alias, idValues)){
 			if(map != null){
+				filterAttrs(map, filterAttrs);
 				list.add(map);
 			}
 		}
@@ -168,14 +174,88 @@ public class RedisDb {
 		return getRedisDbList(beanClass, idValues, null);
 	}
 
+	/**
+	 * 批量获取redis Map数据，所有key通过一次MGET获取
+	 * @param alias
+	 * @param idValues
+	 * @return 与idValues顺序一致，未命中的位置为null
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Map<String,Object>> getRedisMaps(String alias, List<?> idValues){
+		List<Map<String,Object>> result = new ArrayList<>(idValues.size());
+		if(idValues.isEmpty()){
+			return result;
+		}
+		Object[] keys = new Object[idValues.size()];
+		for(int i = 0; i < keys.length; i++){
+			keys[i] = RedisDbBuilder.getKey(alias, idValues.get(i));
+		}
+		List<Object> data = this.cache().mget(keys);
+		List<Object> hitKeys = new ArrayList<>();
+		for(int i = 0; i < keys.length; i++){
+			Object value = data.get(i);
+			if(value == null || "nil".equals(value.toString())){
+				result.add(null);
+			} else {
+				result.add((Map<String,Object>) value);
+				hitKeys.add(keys[i]);
+			}
+		}
+		//重置过期时间
+		if(autoRefreshExpireTime && expireSeconds > 0 && hitKeys.size() > 0){
+			if(isOpenPipeline()){
+				for(Object key : hitKeys){
+					this.pipeline.expire(keyToBytes((String)key), expireSeconds);
+				}
+			} else {
+				Jedis jedis = this.cache().getJedis();
+				try {
+					Pipeline p = jedis.pipelined();
+					for(Object key : hitKeys){
+						p.expire(keyToBytes((String)key), expireSeconds);
+					}
+					p.sync();
+				} finally {
+					this.cache().close(jedis);
+				}
+			}
+		}
+		return result;
+	}
+	public List<Map<String,Object>> getRedisMaps(Class<?> beanClass, List<?> idValues){
+		return getRedisMaps(RedisDbBuilder.getAlias(beanClass), idValues);
+	}
+
 	/**
 	 * 获取redis数据转换成map
 	 * @param cacheKey
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	Map<String,Object> getRedisMap(String cacheKey){
-		Object data = this.cache().get(cacheKey);
+		return getRedisMap(cacheKey, null);
+	}
+
+	/**
+	 * 获取redis数据转换成map，使用RowSerializer时只解码filterAttrs中的属性
+	 * @param cacheKey
+	 * @param filterAttrs
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	Map<String,Object> getRedisMap(String cacheKey, String[] filterAttrs){
+		Object data;
+		ISerializer serializer = this.cache().getSerializer();
+		if(filterAttrs != null && filterAttrs.length > 0 && serializer instanceof RowSerializer){
+			Jedis jedis = this.cache().getJedis();
+			try {
+				byte[] bytes = jedis.get(keyToBytes(cacheKey));
+				data = ((RowSerializer)serializer).readRow(bytes, new HashSet<String>(Arrays.asList(filterAttrs)));
+			} finally {
+				this.cache().close(jedis);
+			}
+		} else {
+			data = this.cache().get(cacheKey);
+		}
 		if(data == null || "nil".equals(data.toString())){
 			return null;
 		}
@@ -186,6 +266,19 @@ public class RedisDb {
 		return (Map<String, Object>) data;
 	}
 
+	/**
+	 * 按cache的命名策略及序列化器转换key，管道操作需要
+	 * @param key
+	 * @return
+	 */
+	byte[] keyToBytes(String key){
+		return this.cache().getSerializer().keyToBytes(this.cache().getKeyNamingPolicy().getKeyName(key));
+	}
+
+	byte[] valueToBytes(Object value){
+		return this.cache().getSerializer().valueToBytes(value);
+	}
+
 	/**
 	 * 设置 redis Object
 	 * @param alias
@@ -204,6 +297,39 @@ public class RedisDb {
 		return add(RedisDbBuilder.getAlias(beanClass), object, idValue);
 	}
 
+	/**
+	 * 批量设置 redis Object，未开启管道时使用一次性管道写入
+	 * @param alias
+	 * @param objects idValue -> object
+	 * @return
+	 */
+	public RedisDb addAll(String alias, Map<?, ?> objects){
+		if(StrKit.isBlank(alias) || objects == null || objects.isEmpty()){
+			return this;
+		}
+		if(isOpenPipeline()){
+			for(Entry<?, ?> entry : objects.entrySet()){
+				add(alias, entry.getValue(), entry.getKey());
+			}
+			return this;
+		}
+		Jedis jedis = this.cache().getJedis();
+		try {
+			this.pipeline = jedis.pipelined();
+			for(Entry<?, ?> entry : objects.entrySet()){
+				add(alias, entry.getValue(), entry.getKey());
+			}
+			this.pipeline.sync();
+		} finally {
+			this.pipeline = null;
+			this.cache().close(jedis);
+		}
+		return this;
+	}
+	public RedisDb addAll(Class<?> beanClass, Map<?, ?> objects){
+		return addAll(RedisDbBuilder.getAlias(beanClass), objects);
+	}
+
 	public Set<String> keys(String pattern){
 		return this.cache().keys(pattern);
 	}
@@ -77,9 +77,9 @@ class RedisDbBuilder {
         String key = RedisDbBuilder.getKey(alias, idValue);
         if(redisDb.isOpenPipeline()){
         	if(redisDb.getExpireSeconds() > 0){
-        		redisDb.pipeline().setex(keyToBytes(key), redisDb.getExpireSeconds(), valueToBytes(map));
+        		redisDb.pipeline().setex(redisDb.keyToBytes(key), redisDb.getExpireSeconds(), redisDb.valueToBytes(map));
         	} else {
-        		redisDb.pipeline().set(keyToBytes(key), valueToBytes(map));
+        		redisDb.pipeline().set(redisDb.keyToBytes(key), redisDb.valueToBytes(map));
         	}
         } else{
         	if(redisDb.getExpireSeconds() > 0){
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.kit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LruQueue 为基于 ConcurrentHashMap 的缓存提供近似 LRU 淘汰（CLOCK，second chance）
+ *
+ * 1: 新条目放入 map 之后调用 add(entry) 按插入次序进入队列，命中时调用 entry.touch() 设置访问标记，不加锁
+ * 2: evict(...) 在数量超出上限时从队首取出条目，带访问标记的清除标记后放回队尾，否则淘汰，
+ *    每淘汰一个条目平均只检查常数个条目，而不是扫描整个 map
+ * 3: evict(...) 串行执行，并发未命中时不会同时淘汰而使数量低于上限
+ * 4: 被替换或移除的条目留在队列中，取出时跳过，队列长度超过 map 数量的两倍时整体清理一次
+ *
+ * 被 Engine 的模板缓存与 LocalFragmentCache 共用
+ */
+public class LruQueue<K> {
+
+	private final ConcurrentLinkedQueue<Entry<K>> queue = new ConcurrentLinkedQueue<Entry<K>>();
+	private final AtomicInteger queued = new AtomicInteger();		// ConcurrentLinkedQueue.size() 需要遍历
+
+	/**
+	 * 新条目放入 map 之后调用，maxSize 小于等于 0 时也需调用，以便之后调小上限时可以淘汰
+	 */
+	public void add(Entry<K> entry) {
+		queue.offer(entry);
+		queued.incrementAndGet();
+	}
+
+	/**
+	 * map 数量超出 maxSize 时淘汰最近未被访问的条目，maxSize 小于等于 0 表示不限制
+	 * @return 淘汰的条目数量
+	 */
+	public synchronized <E extends Entry<K>> int evict(ConcurrentHashMap<K, E> map, int maxSize) {
+		if (queued.get() > 2 * Math.max(map.size(), 16)) {
+			purge(map);
+		}
+		if (maxSize <= 0) {
+			return 0;
+		}
+
+		int ret = 0;
+		int secondChances = queued.get();		// 所有条目都被频繁访问时限制放回次数，保证循环结束
+		boolean refilled = false;
+		while (map.size() > maxSize) {
+			Entry<K> e = queue.poll();
+			if (e == null) {
+				// 与 clear() 并发放入的条目可能不在队列中，重新入队一次
+				if (refilled) {
+					break;
+				}
+				refilled = true;
+				for (E value : map.values()) {
+					add(value);
+				}
+				continue;
+			}
+			queued.decrementAndGet();
+
+			if (map.get(e.key) != e) {
+				continue;
+			}
+			if (e.accessed && secondChances-- > 0) {
+				e.accessed = false;
+				add(e);
+				continue;
+			}
+			if (map.remove(e.key, e)) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 移除队列中已被替换或移除的条目
+	 */
+	private <E extends Entry<K>> void purge(ConcurrentHashMap<K, E> map) {
+		for (Iterator<Entry<K>> it = queue.iterator(); it.hasNext();) {
+			Entry<K> e = it.next();
+			if (map.get(e.key) != e) {
+				it.remove();
+				queued.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * map 被清空时调用
+	 */
+	public synchronized void clear() {
+		queue.clear();
+		queued.set(0);
+	}
+
+	public static class Entry<K> {
+
+		final K key;
+		volatile boolean accessed = false;
+
+		public Entry(K key) {
+			this.key = key;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * 已设置时不再写入，避免命中时频繁写同一缓存行
+		 */
+		public void touch() {
+			if (!accessed) {
+				accessed = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.kit;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * SingleFlight 合并同一个 key 的并发加载
+ * 
+ * 1: 同一个 key 同时只有一个线程执行 loader，其它线程等待并共享其结果，结果不被保留，缓存由调用方负责
+ * 2: loader 抛出异常时所有等待的线程抛出同一个异常，RuntimeException 与 Error 原样抛出，
+ *    其它异常包装为 RuntimeException
+ * 3: loader 中对相同 key 再次调用时直接执行 loader，避免等待自身
+ * 
+ * 被 Engine 的模板缓存与 #cache 指令共用
+ */
+public class SingleFlight<K, V> {
+	
+	private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<K, Flight<V>>();
+	
+	public V execute(K key, Callable<V> loader) {
+		Flight<V> flight = new Flight<V>(loader);
+		Flight<V> existing = flights.putIfAbsent(key, flight);
+		if (existing != null) {
+			if (existing.owner == Thread.currentThread()) {
+				return call(loader);
+			}
+			return await(existing);
+		}
+		try {
+			flight.run();
+			return await(flight);
+		} finally {
+			flights.remove(key, flight);
+		}
+	}
+	
+	private V call(Callable<V> loader) {
+		try {
+			return loader.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private V await(Flight<V> flight) {
+		try {
+			return flight.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static class Flight<V> extends FutureTask<V> {
+		
+		final Thread owner = Thread.currentThread();
+		
+		Flight(Callable<V> loader) {
+			super(loader);
+		}
+	}
+}
+
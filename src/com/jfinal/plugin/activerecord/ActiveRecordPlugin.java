@@ -19,6 +19,7 @@ package com.jfinal.plugin.activerecord;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import javax.sql.DataSource;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.IPlugin;
@@ -144,6 +145,65 @@ public class ActiveRecordPlugin implements IPlugin {
 		return this;
 	}
 	
+	/**
+	 * 开启框架层 PreparedStatement 缓存
+	 * @param statementCacheSize 每个物理连接上最多缓存的 PreparedStatement 数量，小于 1 时关闭缓存
+	 * @see StatementCache
+	 */
+	public ActiveRecordPlugin setStatementCacheSize(int statementCacheSize) {
+		config.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+		return this;
+	}
+	
+	/**
+	 * 开启读写分离，find、query、paginate、each 系列方法使用 ReplicaRouter 选取的从库
+	 * @see ReplicaRouter
+	 */
+	public ActiveRecordPlugin setReplicaRouter(ReplicaRouter replicaRouter) {
+		config.replicaRouter = replicaRouter;
+		return this;
+	}
+	
+	/**
+	 * 配置 DbAsync 使用的 JDBC 线程池，由调用方负责关闭
+	 * @see DbAsync
+	 */
+	public ActiveRecordPlugin setAsyncExecutor(ExecutorService asyncExecutor) {
+		config.asyncExecutor = asyncExecutor;
+		return this;
+	}
+	
+	/**
+	 * 配置 DbAsync 默认 JDBC 线程池的线程数与队列长度，线程数不应超过连接池的最大连接数
+	 */
+	public ActiveRecordPlugin setAsyncPoolSize(int poolSize, int queueSize) {
+		if (poolSize < 1 || queueSize < 1) {
+			throw new IllegalArgumentException("poolSize and queueSize must be greater than 0");
+		}
+		config.asyncPoolSize = poolSize;
+		config.asyncQueueSize = queueSize;
+		return this;
+	}
+	
+	/**
+	 * 开启查询缓存，find(SqlPara)、findFirst(SqlPara)、paginate(pageNumber, pageSize, SqlPara) 的结果被自动缓存，
+	 * 写入相关表时自动失效
+	 * @see QueryCache
+	 */
+	public ActiveRecordPlugin setQueryCache(QueryCache queryCache) {
+		config.queryCache = queryCache;
+		return this;
+	}
+	
+	/**
+	 * 开启 sql 执行统计与慢 sql 日志，插件启动时注册名为 "com.jfinal:type=SqlMetrics,name=configName" 的 MBean
+	 * @see SqlMetrics
+	 */
+	public ActiveRecordPlugin setSqlMetrics(SqlMetrics sqlMetrics) {
+		config.sqlMetrics = sqlMetrics;
+		return this;
+	}
+	
 	public ActiveRecordPlugin setShowSql(boolean showSql) {
 		config.showSql = showSql;
 		return this;
@@ -223,6 +283,13 @@ public class ActiveRecordPlugin implements IPlugin {
 		
 		config.sqlKit.parseSqlTemplate();
 		
+		if (config.replicaRouter != null) {
+			config.replicaRouter.start(config.getName());
+		}
+		if (config.sqlMetrics != null) {
+			config.sqlMetrics.registerMBean(config.getName());
+		}
+		
 		new TableBuilder().build(tableList, config);
 		DbKit.addConfig(config);
 		isStarted = true;
@@ -231,6 +298,13 @@ public class ActiveRecordPlugin implements IPlugin {
 	
 	public boolean stop() {
 		DbKit.removeConfig(config.getName());
+		if (config.replicaRouter != null) {
+			config.replicaRouter.stop();
+		}
+		if (config.sqlMetrics != null) {
+			config.sqlMetrics.unregisterMBean();
+		}
+		config.shutdownAsyncExecutor();
 		isStarted = false;
 		return true;
 	}
@@ -0,0 +1,450 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ArrayContainerFactory 使用数组存放 Model、Record 的属性，减少大结果集查询时的对象分配
+ * 
+ * 用法：
+ * arp.setContainerFactory(new ArrayContainerFactory())
+ * 
+ * 1: AttrMap 将属性值存放在 Object[] 中，属性名与下标的对应关系由 Layout 描述，
+ *    同一查询的所有行共享同一个 Layout，ModelBuilder、RecordBuilder 按下标直接写入，
+ *    每行只分配 Model/Record、AttrMap 与 Object[] 三个对象，而 HashMap 需要额外为每一列分配 Node
+ * 2: Layout 之间通过属性名形成转换树，依次 put 相同属性名的 AttrMap 共享同一个 Layout
+ * 3: 遍历次序与 put 的次序一致，与 OrderedFieldContainerFactory 相同
+ * 4: modify flag 使用 FlagSet 存放，以 BitSet 记录属性名在全局属性名表中的编号
+ * 5: AttrMap、FlagSet 序列化时分别转换为 LinkedHashMap、HashSet，缓存到 redis 等外部存储后仍可正常使用
+ * 6: JDBC 驱动的 getObject(...) 返回的已是包装类型，AttrMap 原样保存，不会引入额外的装箱
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class ArrayContainerFactory implements IContainerFactory {
+	
+	public Map<String, Object> getAttrsMap() {
+		return new AttrMap();
+	}
+	
+	public Map<String, Object> getColumnsMap() {
+		return new AttrMap();
+	}
+	
+	public Set<String> getModifyFlagSet() {
+		return new FlagSet();
+	}
+	
+	/**
+	 * 属性名与数组下标的对应关系，创建后不可变
+	 */
+	public static final class Layout {
+		
+		private static final int MAX_TRANSITIONS = 64;
+		private static final int INDEX_THRESHOLD = 8;
+		
+		static final Layout ROOT = new Layout(new String[0]);
+		
+		private final String[] names;
+		private final Map<String, Integer> index;		// 属性较多时使用 HashMap 查找
+		private final ConcurrentHashMap<String, Layout> transitions = new ConcurrentHashMap<String, Layout>();
+		
+		private Layout(String[] names) {
+			this.names = names;
+			if (names.length > INDEX_THRESHOLD) {
+				index = new HashMap<String, Integer>(names.length * 2);
+				for (int i=0; i<names.length; i++) {
+					index.put(names[i], i);
+				}
+			} else {
+				index = null;
+			}
+		}
+		
+		/**
+		 * 由 ModelBuilder、RecordBuilder 调用，labelNames 下标从 1 开始，重复的 label 只占用一个位置
+		 */
+		public static Layout of(String[] labelNames) {
+			Layout ret = ROOT;
+			for (int i=1; i<labelNames.length; i++) {
+				if (ret.indexOf(labelNames[i]) < 0) {
+					ret = ret.add(labelNames[i]);
+				}
+			}
+			return ret;
+		}
+		
+		/**
+		 * labelNames 中每个 label 在本 Layout 中的下标，重复的 label 指向同一下标，后写入的值覆盖先写入的值，与 HashMap 一致
+		 */
+		public int[] getSlots(String[] labelNames) {
+			int[] ret = new int[labelNames.length];
+			for (int i=1; i<labelNames.length; i++) {
+				ret[i] = indexOf(labelNames[i]);
+			}
+			return ret;
+		}
+		
+		public int size() {
+			return names.length;
+		}
+		
+		public String getName(int i) {
+			return names[i];
+		}
+		
+		public int indexOf(Object name) {
+			if (index != null) {
+				Integer ret = index.get(name);
+				return ret != null ? ret : -1;
+			}
+			String[] names = this.names;
+			for (int i=0; i<names.length; i++) {		// label 通常来自同一 ResultSetMetaData，先比较引用
+				if (names[i] == name) {
+					return i;
+				}
+			}
+			if (name != null) {
+				for (int i=0; i<names.length; i++) {
+					if (names[i].equals(name)) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+		
+		Layout add(String name) {
+			Layout ret = transitions.get(name);
+			if (ret == null) {
+				String[] newNames = Arrays.copyOf(names, names.length + 1);
+				newNames[names.length] = name;
+				ret = new Layout(newNames);
+				if (transitions.size() < MAX_TRANSITIONS) {		// 属性名组合过多时不再缓存，避免转换树无限增长
+					Layout old = transitions.putIfAbsent(name, ret);
+					if (old != null) {
+						ret = old;
+					}
+				}
+			}
+			return ret;
+		}
+		
+		Layout remove(int i) {
+			Layout ret = ROOT;
+			for (int j=0; j<names.length; j++) {
+				if (j != i) {
+					ret = ret.add(names[j]);
+				}
+			}
+			return ret;
+		}
+	}
+	
+	/**
+	 * 数组存储的 Map，key 不能为 null
+	 */
+	public static final class AttrMap extends AbstractMap<String, Object> implements Serializable {
+		
+		private static final long serialVersionUID = -6237318215826354380L;
+		private static final Object[] EMPTY = new Object[0];
+		
+		private Layout layout = Layout.ROOT;
+		private Object[] values = EMPTY;
+		
+		/**
+		 * 清空并切换到 layout，返回按 layout 下标存放属性值的数组，由 ModelBuilder、RecordBuilder 直接写入
+		 */
+		public Object[] reset(Layout layout) {
+			this.layout = layout;
+			this.values = layout.size() > 0 ? new Object[layout.size()] : EMPTY;
+			return values;
+		}
+		
+		public int size() {
+			return layout.size();
+		}
+		
+		public boolean containsKey(Object key) {
+			return layout.indexOf(key) >= 0;
+		}
+		
+		public Object get(Object key) {
+			int i = layout.indexOf(key);
+			return i >= 0 ? values[i] : null;
+		}
+		
+		public Object put(String key, Object value) {
+			if (key == null) {
+				throw new NullPointerException("key can not be null");
+			}
+			int i = layout.indexOf(key);
+			if (i >= 0) {
+				Object old = values[i];
+				values[i] = value;
+				return old;
+			}
+			
+			layout = layout.add(key);
+			int size = layout.size();
+			if (size > values.length) {
+				values = Arrays.copyOf(values, Math.max(size, values.length + (values.length >> 1)));
+			}
+			values[size - 1] = value;
+			return null;
+		}
+		
+		public Object remove(Object key) {
+			int i = layout.indexOf(key);
+			if (i < 0) {
+				return null;
+			}
+			Object old = values[i];
+			int size = layout.size();
+			System.arraycopy(values, i + 1, values, i, size - i - 1);
+			values[size - 1] = null;
+			layout = layout.remove(i);
+			return old;
+		}
+		
+		public void clear() {
+			layout = Layout.ROOT;
+			values = EMPTY;
+		}
+		
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				public int size() {
+					return layout.size();
+				}
+				
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						Layout expected = layout;
+						int next = 0;
+						int last = -1;
+						
+						public boolean hasNext() {
+							return next < expected.size();
+						}
+						
+						public Entry<String, Object> next() {
+							if (layout != expected) {
+								throw new java.util.ConcurrentModificationException();
+							}
+							if (next >= expected.size()) {
+								throw new NoSuchElementException();
+							}
+							last = next++;
+							final int i = last;
+							final String key = expected.getName(i);
+							return new Entry<String, Object>() {
+								public String getKey() {
+									return key;
+								}
+								public Object getValue() {
+									return values[i];
+								}
+								public Object setValue(Object value) {
+									Object old = values[i];
+									values[i] = value;
+									return old;
+								}
+								public boolean equals(Object o) {
+									if (!(o instanceof Entry)) {
+										return false;
+									}
+									Entry e = (Entry)o;
+									return getKey().equals(e.getKey()) && (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+								}
+								public int hashCode() {
+									return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+								}
+								public String toString() {
+									return getKey() + "=" + getValue();
+								}
+							};
+						}
+						
+						public void remove() {
+							if (last < 0) {
+								throw new IllegalStateException();
+							}
+							if (layout != expected) {
+								throw new java.util.ConcurrentModificationException();
+							}
+							AttrMap.this.remove(expected.getName(last));
+							expected = layout;
+							next = last;
+							last = -1;
+						}
+					};
+				}
+			};
+		}
+		
+		private Object writeReplace() {
+			return new LinkedHashMap<String, Object>(this);
+		}
+	}
+	
+	/**
+	 * BitSet 存储的 modify flag，属性名在全局属性名表中的编号作为 bit 下标
+	 */
+	public static final class FlagSet extends AbstractSet<String> implements Serializable {
+		
+		private static final long serialVersionUID = 2687352640419335428L;
+		private static final int MAX_NAMES = 65536;
+		
+		private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+		private static volatile String[] names = new String[64];
+		
+		private final BitSet bits = new BitSet();
+		private Set<String> overflow = null;		// 全局属性名表已满后使用
+		
+		private static int idOf(String name, boolean create) {
+			Integer id = ids.get(name);
+			if (id != null) {
+				return id;
+			}
+			if (!create) {
+				return -1;
+			}
+			synchronized (FlagSet.class) {
+				id = ids.get(name);
+				if (id != null) {
+					return id;
+				}
+				int n = ids.size();
+				if (n >= MAX_NAMES) {
+					return -1;
+				}
+				String[] arr = names;
+				if (n >= arr.length) {
+					arr = Arrays.copyOf(arr, arr.length * 2);
+				}
+				arr[n] = name;
+				names = arr;
+				ids.put(name, n);		// 先发布 names 再发布 id
+				return n;
+			}
+		}
+		
+		public boolean add(String name) {
+			int id = idOf(name, true);
+			if (id < 0) {
+				if (overflow == null) {
+					overflow = new HashSet<String>();
+				}
+				return overflow.add(name);
+			}
+			if (bits.get(id)) {
+				return false;
+			}
+			bits.set(id);
+			return true;
+		}
+		
+		public boolean contains(Object name) {
+			if (!(name instanceof String)) {
+				return false;
+			}
+			int id = idOf((String)name, false);
+			return id >= 0 ? bits.get(id) : overflow != null && overflow.contains(name);
+		}
+		
+		public boolean remove(Object name) {
+			if (!(name instanceof String)) {
+				return false;
+			}
+			int id = idOf((String)name, false);
+			if (id >= 0) {
+				if (!bits.get(id)) {
+					return false;
+				}
+				bits.clear(id);
+				return true;
+			}
+			return overflow != null && overflow.remove(name);
+		}
+		
+		public int size() {
+			return bits.cardinality() + (overflow != null ? overflow.size() : 0);
+		}
+		
+		public boolean isEmpty() {
+			return bits.isEmpty() && (overflow == null || overflow.isEmpty());
+		}
+		
+		public void clear() {
+			bits.clear();
+			overflow = null;
+		}
+		
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				final String[] arr = names;
+				final Iterator<String> overflowIt = overflow != null ? overflow.iterator() : null;
+				int next = bits.nextSetBit(0);
+				int last = -1;
+				
+				public boolean hasNext() {
+					return next >= 0 || (overflowIt != null && overflowIt.hasNext());
+				}
+				
+				public String next() {
+					if (next >= 0) {
+						last = next;
+						next = bits.nextSetBit(next + 1);
+						return arr[last];
+					}
+					if (overflowIt != null) {
+						last = -1;
+						return overflowIt.next();
+					}
+					throw new NoSuchElementException();
+				}
+				
+				public void remove() {
+					if (last >= 0) {
+						bits.clear(last);
+						last = -1;
+					} else {
+						overflowIt.remove();
+					}
+				}
+			};
+		}
+		
+		private Object writeReplace() {
+			return new HashSet<String>(this);
+		}
+	}
+}
+
+
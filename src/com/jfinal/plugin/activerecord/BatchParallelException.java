@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchParallelException
+ * <br>
+ * DbPro.batchParallel(...) 中部分 chunk 执行失败时抛出，其余 chunk 已各自提交。
+ * getResult() 中失败 chunk 对应的元素为 Statement.EXECUTE_FAILED
+ */
+public class BatchParallelException extends ActiveRecordException {
+	
+	private static final long serialVersionUID = -3254181375913262375L;
+	
+	private final int[] result;
+	private final List<ChunkFailure> failures;
+	
+	public BatchParallelException(int[] result, List<ChunkFailure> failures) {
+		super(failures.size() + " chunk(s) failed in batchParallel, first failure: rows [" + failures.get(0).getFrom() + ", " + failures.get(0).getTo() + ")", failures.get(0).getCause());
+		this.result = result;
+		this.failures = Collections.unmodifiableList(failures);
+	}
+	
+	public int[] getResult() {
+		return result;
+	}
+	
+	/**
+	 * 失败的 chunk，按起始行号排序
+	 */
+	public List<ChunkFailure> getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * 执行失败的 chunk，对应 paras 中 [from, to) 范围内的行
+	 */
+	public static class ChunkFailure {
+		
+		private final int from;
+		private final int to;
+		private final Throwable cause;
+		
+		public ChunkFailure(int from, int to, Throwable cause) {
+			this.from = from;
+			this.to = to;
+			this.cause = cause;
+		}
+		
+		public int getFrom() {
+			return from;
+		}
+		
+		public int getTo() {
+			return to;
+		}
+		
+		public Throwable getCause() {
+			return cause;
+		}
+	}
+}
+
+
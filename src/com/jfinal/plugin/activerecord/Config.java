@@ -20,6 +20,12 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 import com.jfinal.kit.LogKit;
 import com.jfinal.kit.StrKit;
@@ -42,6 +48,14 @@ public class Config {
 	IContainerFactory containerFactory;
 	IDbProFactory dbProFactory = IDbProFactory.defaultDbProFactory;
 	ICache cache;
+	StatementCache statementCache;
+	ReplicaRouter replicaRouter;
+	QueryCache queryCache;
+	SqlMetrics sqlMetrics;
+	volatile ExecutorService asyncExecutor;
+	int asyncPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+	int asyncQueueSize = 1024;
+	private boolean asyncExecutorCreated = false;
 	
 	SqlKit sqlKit;
 	
@@ -172,6 +186,72 @@ public class Config {
 		return dbProFactory;
 	}
 	
+	public StatementCache getStatementCache() {
+		return statementCache;
+	}
+	
+	public ReplicaRouter getReplicaRouter() {
+		return replicaRouter;
+	}
+	
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+	
+	public SqlMetrics getSqlMetrics() {
+		return sqlMetrics;
+	}
+	
+	/**
+	 * 写操作执行后使 QueryCache 中相关表的缓存失效
+	 */
+	final void invalidateQueryCache(String sql) {
+		if (queryCache != null)
+			queryCache.invalidateBySql(this, sql);
+	}
+	
+	final void invalidateQueryCacheTable(String tableName) {
+		if (queryCache != null)
+			queryCache.invalidate(this, tableName);
+	}
+	
+	/**
+	 * 获取 DbAsync 使用的 JDBC 线程池，未配置时在首次使用时创建有界线程池
+	 */
+	public ExecutorService getAsyncExecutor() {
+		ExecutorService ret = asyncExecutor;
+		if (ret == null) {
+			synchronized (this) {
+				ret = asyncExecutor;
+				if (ret == null) {
+					final AtomicInteger threadNumber = new AtomicInteger(1);
+					ret = new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(asyncQueueSize), new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "DbAsync-" + name + "-" + threadNumber.getAndIncrement());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+					((ThreadPoolExecutor)ret).allowCoreThreadTimeOut(true);
+					asyncExecutorCreated = true;
+					asyncExecutor = ret;
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * 关闭由 Config 自行创建的 JDBC 线程池，通过 ActiveRecordPlugin.setAsyncExecutor(...) 传入的线程池由调用方负责关闭
+	 */
+	synchronized void shutdownAsyncExecutor() {
+		if (asyncExecutorCreated && asyncExecutor != null) {
+			asyncExecutor.shutdown();
+			asyncExecutor = null;
+			asyncExecutorCreated = false;
+		}
+	}
+	
 	public boolean isShowSql() {
 		return showSql;
 	}
@@ -191,6 +271,8 @@ public class Config {
 	
 	public final void removeThreadLocalConnection() {
 		threadLocal.remove();
+		if (queryCache != null)
+			queryCache.onTransactionEnd(this);
 	}
 	
 	/**
@@ -200,7 +282,30 @@ public class Config {
 		Connection conn = threadLocal.get();
 		if (conn != null)
 			return conn;
-		return showSql ? new SqlReporter(dataSource.getConnection()).getConnection() : dataSource.getConnection();
+		if (replicaRouter != null)
+			replicaRouter.onPrimaryConnection();
+		return wrap(dataSource.getConnection());
+	}
+	
+	/**
+	 * Get Connection for read only query. Use replica of ReplicaRouter if configured,
+	 * otherwise the same as getConnection()
+	 */
+	public final Connection getReadConnection() throws SQLException {
+		Connection conn = threadLocal.get();
+		if (conn != null)
+			return conn;
+		if (replicaRouter != null && (conn = replicaRouter.getConnection()) != null)
+			return wrap(conn);
+		return wrap(dataSource.getConnection());
+	}
+	
+	private Connection wrap(Connection conn) {
+		if (statementCache != null)
+			conn = statementCache.wrap(conn);
+		if (sqlMetrics != null)
+			conn = sqlMetrics.wrap(conn);
+		return showSql ? new SqlReporter(conn).getConnection() : conn;
 	}
 	
 	/**
@@ -21,6 +21,7 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Db. Powerful database query and update tool box.
@@ -66,6 +67,13 @@ public class Db {
 		return MAIN;
 	}
 	
+	/**
+	 * @see DbPro#async()
+	 */
+	public static DbAsync async() {
+		return MAIN.async();
+	}
+	
 	static <T> List<T> query(Config config, Connection conn, String sql, Object... paras) throws SQLException {
 		return MAIN.query(config, conn, sql, paras);
 	}
@@ -279,6 +287,20 @@ public class Db {
 		return MAIN.find(sql);
 	}
 	
+	/**
+	 * @see DbPro#each(IRowConsumer, int, String, Object...)
+	 */
+	public static long each(IRowConsumer<Record> consumer, int fetchSize, String sql, Object... paras) {
+		return MAIN.each(consumer, fetchSize, sql, paras);
+	}
+	
+	/**
+	 * @see DbPro#each(IRowConsumer, String, Object...)
+	 */
+	public static long each(IRowConsumer<Record> consumer, String sql, Object... paras) {
+		return MAIN.each(consumer, sql, paras);
+	}
+	
 	/**
 	 * Find first record. I recommend add "limit 1" in your sql.
 	 * @param sql an SQL statement that may contain one or more '?' IN parameter placeholders
@@ -612,6 +634,20 @@ public class Db {
     	return MAIN.batch(sqlList, batchSize);
     }
     
+    /**
+	 * @see DbPro#batchParallel(String, Object[][], int, int)
+     */
+    public static int[] batchParallel(String sql, Object[][] paras, int chunkSize, int parallelism) {
+    	return MAIN.batchParallel(sql, paras, chunkSize, parallelism);
+    }
+    
+    /**
+	 * @see DbPro#batchParallel(ExecutorService, String, Object[][], int, int)
+     */
+    public static int[] batchParallel(ExecutorService executor, String sql, Object[][] paras, int chunkSize, int parallelism) {
+    	return MAIN.batchParallel(executor, sql, paras, chunkSize, parallelism);
+    }
+    
     /**
 	 * @see DbPro#batchSave(List, int)
      */
@@ -647,6 +683,27 @@ public class Db {
     	return MAIN.batchUpdate(tableName, recordList, batchSize);
     }
     
+    /**
+	 * @see DbPro#batchInsert(List, int)
+     */
+    public static int[] batchInsert(List<? extends Model> modelList, int rowsPerStatement) {
+    	return MAIN.batchInsert(modelList, rowsPerStatement);
+    }
+    
+    /**
+	 * @see DbPro#batchInsert(String, String, List, int)
+     */
+    public static int[] batchInsert(String tableName, String primaryKey, List<Record> recordList, int rowsPerStatement) {
+    	return MAIN.batchInsert(tableName, primaryKey, recordList, rowsPerStatement);
+    }
+    
+    /**
+	 * @see DbPro#batchInsert(String, List, int)
+     */
+    public static int[] batchInsert(String tableName, List<Record> recordList, int rowsPerStatement) {
+    	return MAIN.batchInsert(tableName, recordList, rowsPerStatement);
+    }
+    
     public static String getSql(String key) {
     	return MAIN.getSql(key);
     }
@@ -675,6 +732,14 @@ public class Db {
     	return MAIN.findFirst(sqlPara);
     }
     
+    public static long each(IRowConsumer<Record> consumer, int fetchSize, SqlPara sqlPara) {
+    	return MAIN.each(consumer, fetchSize, sqlPara);
+    }
+    
+    public static long each(IRowConsumer<Record> consumer, SqlPara sqlPara) {
+    	return MAIN.each(consumer, sqlPara);
+    }
+    
     public static int update(SqlPara sqlPara) {
     	return MAIN.update(sqlPara);
     }
@@ -682,6 +747,21 @@ public class Db {
     public static Page<Record> paginate(int pageNumber, int pageSize, SqlPara sqlPara) {
     	return MAIN.paginate(pageNumber, pageSize, sqlPara);
     }
+    
+    /**
+	 * @see DbPro#paginateByKeyset(String, int, String, boolean, KeysetPage.CountMode, String, String, Object...)
+     */
+    public static KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, String select, String sqlExceptSelect, Object... paras) {
+    	return MAIN.paginateByKeyset(cursor, pageSize, orderKey, desc, countMode, select, sqlExceptSelect, paras);
+    }
+    
+    public static KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, String select, String sqlExceptSelect, Object... paras) {
+    	return MAIN.paginateByKeyset(cursor, pageSize, orderKey, desc, select, sqlExceptSelect, paras);
+    }
+    
+    public static KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, SqlPara sqlPara) {
+    	return MAIN.paginateByKeyset(cursor, pageSize, orderKey, desc, countMode, sqlPara);
+    }
 }
 
 
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * DbAsync 在 Config 的 JDBC 线程池中异步执行数据库操作，返回 CompletableFuture，
+ * 用于在一个请求中并发执行多个互不依赖的查询
+ * <pre>
+ * Example:
+ * CompletableFuture<List<Record>> users = Db.async().findAsync("select * from user where status = ?", 1);
+ * CompletableFuture<Page<Record>> orders = Db.async().paginateAsync(1, 10, "select *", "from orders");
+ * CompletableFuture.allOf(users, orders).join();
+ * </pre>
+ * 
+ * 1: 线程池通过 ActiveRecordPlugin.setAsyncExecutor(...) 或 setAsyncPoolSize(...) 配置，
+ *    默认为 CPU 核数 * 2 个线程、队列长度 1024 的有界线程池，队列已满时返回的 CompletableFuture 以
+ *    RejectedExecutionException 异常完成
+ * 2: 当前线程处于 Tx、Db.tx() 事务中时，事务连接保存在当前线程的 ThreadLocal 中，不能被其它线程使用，
+ *    此时直接在当前线程中同步执行，返回已完成的 CompletableFuture，保证读到事务中未提交的数据并参与该事务，
+ *    执行中的异常（包括 NestedTransactionHelpException）直接抛给调用方，以便外层事务回滚
+ * 3: 当前线程通过 ReplicaRouter.forcePrimary() 或 read-your-writes 要求读主库时，该要求同样作用于异步任务
+ * 4: txAsync 在 JDBC 线程中开启独立的事务，与调用方线程无关；调用方处于事务中时按第 2 条同步执行，
+ *    成为外层事务的嵌套事务，atom 返回 false 时外层事务同样回滚
+ */
+public class DbAsync {
+	
+	private final DbPro db;
+	
+	public DbAsync(DbPro db) {
+		if (db == null) {
+			throw new IllegalArgumentException("db can not be null");
+		}
+		this.db = db;
+	}
+	
+	/**
+	 * 异步执行任意数据库操作，task 的参数为当前 DbPro
+	 */
+	public <T> CompletableFuture<T> submit(final Function<DbPro, T> task) {
+		final Config config = db.getConfig();
+		if (config.isInTransaction()) {
+			// 不能以异常完成 CompletableFuture，否则外层事务感知不到异常而提交
+			return CompletableFuture.completedFuture(task.apply(db));
+		}
+		
+		final ReplicaRouter router = config.getReplicaRouter();
+		final boolean readFromPrimary = router != null && router.isReadFromPrimary();
+		final CompletableFuture<T> ret = new CompletableFuture<T>();
+		ExecutorService executor = config.getAsyncExecutor();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					if (readFromPrimary) {
+						router.forcePrimary();
+					}
+					try {
+						ret.complete(task.apply(db));
+					} catch (Throwable e) {
+						ret.completeExceptionally(e);
+					} finally {
+						if (readFromPrimary) {
+							router.clearForcePrimary();
+						}
+					}
+				}
+			});
+		} catch (Exception e) {		// RejectedExecutionException
+			ret.completeExceptionally(e);
+		}
+		return ret;
+	}
+	
+	public CompletableFuture<List<Record>> findAsync(final String sql, final Object... paras) {
+		return submit(new Function<DbPro, List<Record>>() {
+			public List<Record> apply(DbPro db) {
+				return db.find(sql, paras);
+			}
+		});
+	}
+	
+	public CompletableFuture<List<Record>> findAsync(final SqlPara sqlPara) {
+		return findAsync(sqlPara.getSql(), sqlPara.getPara());
+	}
+	
+	public CompletableFuture<Record> findFirstAsync(final String sql, final Object... paras) {
+		return submit(new Function<DbPro, Record>() {
+			public Record apply(DbPro db) {
+				return db.findFirst(sql, paras);
+			}
+		});
+	}
+	
+	public CompletableFuture<Record> findFirstAsync(SqlPara sqlPara) {
+		return findFirstAsync(sqlPara.getSql(), sqlPara.getPara());
+	}
+	
+	public <T> CompletableFuture<List<T>> queryAsync(final String sql, final Object... paras) {
+		return submit(new Function<DbPro, List<T>>() {
+			public List<T> apply(DbPro db) {
+				return db.query(sql, paras);
+			}
+		});
+	}
+	
+	public CompletableFuture<Page<Record>> paginateAsync(final int pageNumber, final int pageSize, final String select, final String sqlExceptSelect, final Object... paras) {
+		return submit(new Function<DbPro, Page<Record>>() {
+			public Page<Record> apply(DbPro db) {
+				return db.paginate(pageNumber, pageSize, select, sqlExceptSelect, paras);
+			}
+		});
+	}
+	
+	public CompletableFuture<Page<Record>> paginateAsync(final int pageNumber, final int pageSize, final SqlPara sqlPara) {
+		return submit(new Function<DbPro, Page<Record>>() {
+			public Page<Record> apply(DbPro db) {
+				return db.paginate(pageNumber, pageSize, sqlPara);
+			}
+		});
+	}
+	
+	public CompletableFuture<Integer> updateAsync(final String sql, final Object... paras) {
+		return submit(new Function<DbPro, Integer>() {
+			public Integer apply(DbPro db) {
+				return db.update(sql, paras);
+			}
+		});
+	}
+	
+	public CompletableFuture<Integer> updateAsync(SqlPara sqlPara) {
+		return updateAsync(sqlPara.getSql(), sqlPara.getPara());
+	}
+	
+	public CompletableFuture<Boolean> txAsync(final int transactionLevel, final IAtom atom) {
+		return submit(new Function<DbPro, Boolean>() {
+			public Boolean apply(DbPro db) {
+				return db.tx(transactionLevel, atom);
+			}
+		});
+	}
+	
+	public CompletableFuture<Boolean> txAsync(final IAtom atom) {
+		return submit(new Function<DbPro, Boolean>() {
+			public Boolean apply(DbPro db) {
+				return db.tx(atom);
+			}
+		});
+	}
+}
+
+
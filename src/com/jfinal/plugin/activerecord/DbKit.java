@@ -46,6 +46,7 @@ public final class DbKit {
 	private static Map<String, Config> configNameToConfig = new HashMap<String, Config>();
 	
 	static final Object[] NULL_PARA_ARRAY = new Object[0];
+	public static final int DEFAULT_FETCH_SIZE = 1000;
 	public static final String MAIN_CONFIG_NAME = "main";
 	public static final int DEFAULT_TRANSACTION_LEVEL = Connection.TRANSACTION_REPEATABLE_READ;
 	
@@ -118,6 +119,36 @@ public final class DbKit {
 		if (st != null) {try {st.close();} catch (SQLException e) {throw new ActiveRecordException(e);}}
 	}
 	
+	/**
+	 * 流式查询开始前调用，驱动要求非 autoCommit 才能使用游标时临时关闭 autoCommit
+	 * @return 是否关闭了 autoCommit，需原样传给 endStreaming(...)
+	 */
+	static final boolean beginStreaming(Config config, Connection conn) throws SQLException {
+		if (config.dialect.isStreamingRequireTransaction() && conn.getAutoCommit()) {
+			conn.setAutoCommit(false);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 流式查询结束后调用，先关闭游标，再恢复 beginStreaming(...) 关闭的 autoCommit
+	 */
+	static final void endStreaming(Connection conn, boolean autoCommitSwitched, ResultSet rs, Statement st) {
+		try {
+			close(rs, st);
+		} finally {
+			if (autoCommitSwitched) {
+				try {
+					conn.rollback();		// 只读游标，无需提交
+					conn.setAutoCommit(true);
+				} catch (SQLException e) {
+					throw new ActiveRecordException(e);
+				}
+			}
+		}
+	}
+	
 	public static Set<Map.Entry<String, Config>> getConfigSet() {
 		return configNameToConfig.entrySet();
 	}
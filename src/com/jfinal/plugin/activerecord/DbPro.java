@@ -22,10 +22,22 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.jfinal.interfaces.IDataLoader;
 import com.jfinal.kit.LogKit;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.activerecord.cache.ICache;
@@ -73,6 +85,14 @@ public class DbPro {
 		return config;
 	}
 	
+	/**
+	 * 返回在 JDBC 线程池中异步执行的 DbAsync
+	 * @see DbAsync
+	 */
+	public DbAsync async() {
+		return new DbAsync(this);
+	}
+	
 	<T> List<T> query(Config config, Connection conn, String sql, Object... paras) throws SQLException {
 		List result = new ArrayList();
 		PreparedStatement pst = conn.prepareStatement(sql);
@@ -93,6 +113,7 @@ public class DbPro {
 				result.add(rs.getObject(1));
 			}
 		}
+		SqlMetricsStatement.addRows(pst, result.size());
 		DbKit.close(rs, pst);
 		return result;
 	}
@@ -103,7 +124,7 @@ public class DbPro {
 	public <T> List<T> query(String sql, Object... paras) {
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			return query(config, conn, sql, paras);
 		} catch (Exception e) {
 			throw new ActiveRecordException(e);
@@ -293,6 +314,7 @@ public class DbPro {
 		config.dialect.fillStatement(pst, paras);
 		int result = pst.executeUpdate();
 		DbKit.close(pst);
+		config.invalidateQueryCache(sql);
 		return result;
 	}
 	
@@ -329,6 +351,7 @@ public class DbPro {
 		config.dialect.fillStatement(pst, paras);
 		ResultSet rs = pst.executeQuery();
 		List<Record> result = config.dialect.buildRecordList(config, rs);	// RecordBuilder.build(config, rs);
+		SqlMetricsStatement.addRows(pst, result.size());
 		DbKit.close(rs, pst);
 		return result;
 	}
@@ -339,7 +362,7 @@ public class DbPro {
 	public List<Record> find(String sql, Object... paras) {
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			return find(config, conn, sql, paras);
 		} catch (Exception e) {
 			throw new ActiveRecordException(e);
@@ -356,6 +379,61 @@ public class DbPro {
 		return find(sql, NULL_PARA_ARRAY);
 	}
 	
+	long each(Config config, Connection conn, IRowConsumer<Record> consumer, int fetchSize, String sql, Object... paras) throws SQLException {
+		boolean autoCommitSwitched = DbKit.beginStreaming(config, conn);
+		PreparedStatement pst = null;
+		ResultSet rs = null;
+		try {
+			pst = config.dialect.prepareStreamingStatement(conn, sql, fetchSize);
+			config.dialect.fillStatement(pst, paras);
+			rs = pst.executeQuery();
+			long ret = config.dialect.eachRecord(config, rs, consumer);
+			SqlMetricsStatement.addRows(pst, ret);
+			return ret;
+		} finally {
+			DbKit.endStreaming(conn, autoCommitSwitched, rs, pst);
+		}
+	}
+	
+	/**
+	 * 流式遍历查询结果，每读取一行即回调 consumer 一次，不会将整个结果集载入内存，
+	 * 适用于数据导出等大结果集场景
+	 * <pre>
+	 * 例子：
+	 * Db.each(record -> {
+	 *     writer.write(record.toJson());
+	 *     return true;
+	 * }, 1000, "select * from user where status = ?", 1);
+	 * </pre>
+	 * 
+	 * 注意：MySQL 下游标未读取完之前，同一连接上不能执行其它 sql，
+	 *      在事务中使用时 consumer 内不要再通过 Db、Model 访问同一数据源
+	 * 
+	 * @param consumer 行回调，返回 false 时终止遍历
+	 * @param fetchSize 驱动每次从数据库拉取的行数，MySQL 下固定使用 Integer.MIN_VALUE 逐行读取
+	 * @param sql an SQL statement that may contain one or more '?' IN parameter placeholders
+	 * @param paras the parameters of sql
+	 * @return 回调处理的行数
+	 */
+	public long each(IRowConsumer<Record> consumer, int fetchSize, String sql, Object... paras) {
+		Connection conn = null;
+		try {
+			conn = config.getReadConnection();
+			return each(config, conn, consumer, fetchSize, sql, paras);
+		} catch (Exception e) {
+			throw new ActiveRecordException(e);
+		} finally {
+			config.close(conn);
+		}
+	}
+	
+	/**
+	 * @see #each(IRowConsumer, int, String, Object...)
+	 */
+	public long each(IRowConsumer<Record> consumer, String sql, Object... paras) {
+		return each(consumer, DbKit.DEFAULT_FETCH_SIZE, sql, paras);
+	}
+	
 	/**
 	 * Find first record. I recommend add "limit 1" in your sql.
 	 * @param sql an SQL statement that may contain one or more '?' IN parameter placeholders
@@ -528,7 +606,7 @@ public class DbPro {
 	private Page<Record> doPaginate(int pageNumber, int pageSize, Boolean isGroupBySql, String select, String sqlExceptSelect, Object... paras) {
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			String totalRowSql = "select count(*) " + config.dialect.replaceOrderBy(sqlExceptSelect);
 			StringBuilder findSql = new StringBuilder();
 			findSql.append(select).append(' ').append(sqlExceptSelect);
@@ -589,7 +667,7 @@ public class DbPro {
 	private Page<Record> doPaginateByFullSql(int pageNumber, int pageSize, Boolean isGroupBySql, String totalRowSql, String findSql, Object... paras) {
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			StringBuilder findSqlBuf = new StringBuilder().append(findSql);
 			return doPaginateByFullSql(config, conn, pageNumber, pageSize, isGroupBySql, totalRowSql, findSqlBuf, paras);
 		} catch (Exception e) {
@@ -607,6 +685,56 @@ public class DbPro {
 		return doPaginateByFullSql(pageNumber, pageSize, isGroupBySql, totalRowSql, findSql, paras);
 	}
 	
+	/**
+	 * 基于排序键的 seek 分页，翻页耗时与页码无关，适用于大表深度翻页
+	 * <pre>
+	 * 例子：
+	 * KeysetPage<Record> page = Db.paginateByKeyset(null, 20, "id", true, CountMode.NONE,
+	 *                                 "select *", "from user where status = ?", 1);
+	 * // 下一页
+	 * page = Db.paginateByKeyset(page.getCursor(), 20, "id", true, CountMode.NONE,
+	 *                                 "select *", "from user where status = ?", 1);
+	 * </pre>
+	 * @param cursor 上一页 KeysetPage.getCursor() 返回的游标，为空时查询第一页
+	 * @param pageSize the page size
+	 * @param orderKey 唯一的排序键，通常为主键，需出现在 select 的结果列中
+	 * @param desc 是否按 orderKey 降序
+	 * @param countMode 总行数的计算方式，只在第一页计算
+	 * @param select the select part of the sql statement
+	 * @param sqlExceptSelect the sql statement excluded select part，最外层的 order by 与 limit 会被忽略
+	 * @param paras the parameters of sql
+	 * @return the KeysetPage object
+	 */
+	public KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, String select, String sqlExceptSelect, Object... paras) {
+		if (pageSize < 1) {
+			throw new ActiveRecordException("pageSize must more than 0");
+		}
+		KeysetSqlKit.checkOrderKey(orderKey);
+		
+		KeysetSqlKit.Cursor c = KeysetSqlKit.decodeCursor(orderKey, cursor);
+		Connection conn = null;
+		try {
+			conn = config.getReadConnection();
+			paras = KeysetSqlKit.trimParas(sqlExceptSelect, paras);
+			sqlExceptSelect = KeysetSqlKit.trimSqlExceptSelect(sqlExceptSelect);
+			long totalRow = (c != null) ? c.totalRow : KeysetSqlKit.getTotalRow(config, conn, countMode, sqlExceptSelect, paras);
+			String sql = KeysetSqlKit.forKeysetPaginate(config.dialect, select, sqlExceptSelect, orderKey, desc, c != null, pageSize);
+			List<Record> list = find(config, conn, sql, (c != null) ? KeysetSqlKit.appendPara(paras, c.lastValue) : paras);
+			return KeysetSqlKit.buildPage(list, pageSize, orderKey, (c != null) ? c.pageNumber : 1, totalRow);
+		} catch (Exception e) {
+			throw new ActiveRecordException(e);
+		} finally {
+			config.close(conn);
+		}
+	}
+	
+	/**
+	 * @see #paginateByKeyset(String, int, String, boolean, KeysetPage.CountMode, String, String, Object...)
+	 */
+	public KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, String select, String sqlExceptSelect, Object... paras) {
+		return paginateByKeyset(cursor, pageSize, orderKey, desc, KeysetPage.CountMode.NONE, select, sqlExceptSelect, paras);
+	}
+	
 	boolean save(Config config, Connection conn, String tableName, String primaryKey, Record record) throws SQLException {
 		String[] pKeys = primaryKey.split(",");
 		List<Object> paras = new ArrayList<Object>();
@@ -623,6 +751,7 @@ public class DbPro {
 		int result = pst.executeUpdate();
 		config.dialect.getRecordGeneratedKey(pst, record, pKeys);
 		DbKit.close(pst);
+		config.invalidateQueryCacheTable(tableName);
 		return result >= 1;
 	}
 	
@@ -897,37 +1026,41 @@ public class DbPro {
 		int counter = 0;
 		int pointer = 0;
 		int[] result = new int[paras.length];
+		boolean isOracle = config.dialect.isOracle();
 		PreparedStatement pst = conn.prepareStatement(sql);
-		for (int i=0; i<paras.length; i++) {
-			for (int j=0; j<paras[i].length; j++) {
-				Object value = paras[i][j];
-				if (config.dialect.isOracle()) {
-					if (value instanceof java.sql.Date)
-						pst.setDate(j + 1, (java.sql.Date)value);
-					else if (value instanceof java.sql.Timestamp)
-						pst.setTimestamp(j + 1, (java.sql.Timestamp)value);
+		try {
+			for (int i=0; i<paras.length; i++) {
+				for (int j=0; j<paras[i].length; j++) {
+					Object value = paras[i][j];
+					if (isOracle) {
+						if (value instanceof java.sql.Date)
+							pst.setDate(j + 1, (java.sql.Date)value);
+						else if (value instanceof java.sql.Timestamp)
+							pst.setTimestamp(j + 1, (java.sql.Timestamp)value);
+						else
+							pst.setObject(j + 1, value);
+					}
 					else
 						pst.setObject(j + 1, value);
 				}
-				else
-					pst.setObject(j + 1, value);
-			}
-			pst.addBatch();
-			if (++counter >= batchSize) {
-				counter = 0;
-				int[] r = pst.executeBatch();
-				if (isInTransaction == false)
-					conn.commit();
-				for (int k=0; k<r.length; k++)
-					result[pointer++] = r[k];
+				pst.addBatch();
+				if (++counter >= batchSize) {
+					counter = 0;
+					int[] r = pst.executeBatch();
+					if (isInTransaction == false)
+						conn.commit();
+					for (int k=0; k<r.length; k++)
+						result[pointer++] = r[k];
+				}
 			}
+			int[] r = pst.executeBatch();
+			if (isInTransaction == false)
+				conn.commit();
+			for (int k=0; k<r.length; k++)
+				result[pointer++] = r[k];
+		} finally {
+			DbKit.close(pst);
 		}
-		int[] r = pst.executeBatch();
-		if (isInTransaction == false)
-			conn.commit();
-		for (int k=0; k<r.length; k++)
-			result[pointer++] = r[k];
-		DbKit.close(pst);
 		return result;
 	}
 	
@@ -956,9 +1089,133 @@ public class DbPro {
 			if (autoCommit != null)
 				try {conn.setAutoCommit(autoCommit);} catch (Exception e) {LogKit.error(e.getMessage(), e);}
 			config.close(conn);
+			config.invalidateQueryCache(sql);
 		}
 	}
 	
+	/**
+	 * 将 paras 按 chunkSize 切分为多个 chunk，使用 parallelism 个连接并行执行，适用于不需要跨 chunk 原子性的大批量导入。
+	 * 每个 chunk 在其所在连接上单独提交，失败的 chunk 单独回滚，不影响其它 chunk。
+	 * <pre>
+	 * Example:
+	 * int[] result = Db.batchParallel(sql, paras, 1000, 4);
+	 * </pre>
+	 * @param chunkSize 每个 chunk 的行数，同时也是 executeBatch 的批次大小
+	 * @param parallelism 最大并行连接数，不应超过连接池的最大连接数
+	 * @return 与 paras 顺序一致的执行结果
+	 * @throws BatchParallelException 存在失败的 chunk 时抛出，通过 getResult()、getFailures() 获取部分结果与失败详情
+	 */
+	public int[] batchParallel(String sql, Object[][] paras, int chunkSize, int parallelism) {
+		if (paras == null || paras.length == 0)
+			return new int[0];
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("The chunkSize must more than 0.");
+		if (parallelism < 1)
+			throw new IllegalArgumentException("The parallelism must more than 0.");
+		
+		int chunkCount = (paras.length + chunkSize - 1) / chunkSize;
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunkCount), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "batchParallel-" + config.getName() + "-" + threadNumber.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			return batchParallel(executor, sql, paras, chunkSize, parallelism);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * 使用调用方提供的 executor 执行 batchParallel，executor 需能同时运行 parallelism 个任务
+	 * @see #batchParallel(String, Object[][], int, int)
+	 */
+	public int[] batchParallel(ExecutorService executor, final String sql, final Object[][] paras, final int chunkSize, int parallelism) {
+		if (paras == null || paras.length == 0)
+			return new int[0];
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("The chunkSize must more than 0.");
+		if (parallelism < 1)
+			throw new IllegalArgumentException("The parallelism must more than 0.");
+		if (config.isInTransaction())
+			throw new ActiveRecordException("batchParallel can not be used in transaction, chunks are committed on different connections.");
+		
+		final int chunkCount = (paras.length + chunkSize - 1) / chunkSize;
+		final int[] result = new int[paras.length];
+		final AtomicInteger nextChunk = new AtomicInteger(0);
+		final List<BatchParallelException.ChunkFailure> failures = Collections.synchronizedList(new ArrayList<BatchParallelException.ChunkFailure>());
+		
+		// 每个任务持有一个连接，循环领取下一个 chunk，直到全部领取完毕
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		Exception connectionException = null;
+		for (int i=0, n=Math.min(parallelism, chunkCount); i<n; i++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					Connection conn = config.getConnection();
+					Boolean autoCommit = null;
+					try {
+						autoCommit = conn.getAutoCommit();
+						conn.setAutoCommit(false);
+						for (int c; (c = nextChunk.getAndIncrement()) < chunkCount;) {
+							int from = c * chunkSize;
+							int to = Math.min(from + chunkSize, paras.length);
+							try {
+								int[] r = batch(config, conn, sql, Arrays.copyOfRange(paras, from, to), chunkSize);
+								System.arraycopy(r, 0, result, from, r.length);
+							} catch (Exception e) {
+								try {conn.rollback();} catch (Exception e1) {LogKit.error(e1.getMessage(), e1);}
+								Arrays.fill(result, from, to, Statement.EXECUTE_FAILED);
+								failures.add(new BatchParallelException.ChunkFailure(from, to, e));
+							}
+						}
+						return null;
+					} finally {
+						if (autoCommit != null)
+							try {conn.setAutoCommit(autoCommit);} catch (Exception e) {LogKit.error(e.getMessage(), e);}
+						config.close(conn);
+					}
+				}
+			}));
+		}
+		
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				connectionException = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<?> other : futures)
+					other.cancel(true);
+				throw new ActiveRecordException(e);
+			}
+		}
+		
+		config.invalidateQueryCache(sql);
+		
+		// 所有任务都未能获取连接时，未被领取的 chunk 视为失败
+		for (int c; (c = nextChunk.getAndIncrement()) < chunkCount;) {
+			int from = c * chunkSize;
+			int to = Math.min(from + chunkSize, paras.length);
+			Arrays.fill(result, from, to, Statement.EXECUTE_FAILED);
+			failures.add(new BatchParallelException.ChunkFailure(from, to, connectionException));
+		}
+		
+		if (failures.size() > 0) {
+			List<BatchParallelException.ChunkFailure> sorted = new ArrayList<BatchParallelException.ChunkFailure>(failures);
+			Collections.sort(sorted, new Comparator<BatchParallelException.ChunkFailure>() {
+				public int compare(BatchParallelException.ChunkFailure a, BatchParallelException.ChunkFailure b) {
+					return a.getFrom() - b.getFrom();
+				}
+			});
+			throw new BatchParallelException(result, sorted);
+		}
+		return result;
+	}
+	
 	private int[] batch(Config config, Connection conn, String sql, String columns, List list, int batchSize) throws SQLException {
 		if (list == null || list.size() == 0)
 			return new int[0];
@@ -978,12 +1235,13 @@ public class DbPro {
 		int pointer = 0;
 		int size = list.size();
 		int[] result = new int[size];
+		boolean isOracle = config.dialect.isOracle();
 		PreparedStatement pst = conn.prepareStatement(sql);
 		for (int i=0; i<size; i++) {
 			Map map = isModel ? ((Model)list.get(i))._getAttrs() : ((Record)list.get(i)).getColumns();
 			for (int j=0; j<columnArray.length; j++) {
 				Object value = map.get(columnArray[j]);
-				if (config.dialect.isOracle()) {
+				if (isOracle) {
 					if (value instanceof java.sql.Date)
 						pst.setDate(j + 1, (java.sql.Date)value);
 					else if (value instanceof java.sql.Timestamp)
@@ -1040,6 +1298,7 @@ public class DbPro {
 			if (autoCommit != null)
 				try {conn.setAutoCommit(autoCommit);} catch (Exception e) {LogKit.error(e.getMessage(), e);}
 			config.close(conn);
+			config.invalidateQueryCache(sql);
 		}
 	}
 	
@@ -1099,6 +1358,9 @@ public class DbPro {
 			if (autoCommit != null)
 				try {conn.setAutoCommit(autoCommit);} catch (Exception e) {LogKit.error(e.getMessage(), e);}
 			config.close(conn);
+			if (sqlList != null)
+				for (String sql : sqlList)
+					config.invalidateQueryCache(sql);
 		}
     }
     
@@ -1170,6 +1432,140 @@ public class DbPro {
     	return batch(sql.toString(), columns.toString(), recordList, batchSize);
     }
     
+    /**
+     * 使用多行 values 语句批量插入 model："insert into t(a, b) values(?, ?), (?, ?), ..."
+     * 每条 sql 插入的行数不超过 rowsPerStatement，并受 Dialect.getMaxParameterCount() 限制。
+     * 插入的列由第一个 model 决定，第一个 model 未设置主键值时为所有 model 回填自增主键。
+     * Dialect 不支持多行 values 时退化为 batchSave(modelList, rowsPerStatement)
+     * @return 每个 model 对应一个元素，插入成功为 1，无法确定时为 Statement.SUCCESS_NO_INFO
+     */
+    public int[] batchInsert(List<? extends Model> modelList, int rowsPerStatement) {
+    	if (modelList == null || modelList.size() == 0)
+    		return new int[0];
+    	if (!config.dialect.isMultiValuesInsertSupported())
+    		return batchSave(modelList, rowsPerStatement);
+    	
+    	Model model = modelList.get(0);
+    	Table table = TableMapping.me().getTable(model.getClass());
+    	Map<String, Object> columns = new LinkedHashMap<String, Object>();
+    	for (Object colName : model._getAttrs().keySet()) {
+    		if (table.hasColumnLabel((String)colName)) {
+    			columns.put((String)colName, colName);
+    		}
+    	}
+    	
+    	// 以列名作为参数值，得到的 paras 即为列的顺序
+    	StringBuilder sql = new StringBuilder();
+    	List<Object> columnList = new ArrayList<Object>();
+    	config.dialect.forModelSave(table, columns, sql, columnList);
+    	
+    	String[] pKeys = table.getPrimaryKey();
+    	String generatedKey = (pKeys.length == 1 && model.get(pKeys[0]) == null) ? pKeys[0] : null;
+    	Class<?> keyType = generatedKey != null ? table.getColumnType(generatedKey) : null;
+    	return batchInsert(sql.toString(), columnList.toArray(new String[columnList.size()]), modelList, rowsPerStatement, generatedKey, keyType);
+    }
+    
+    /**
+     * 使用多行 values 语句批量插入 record，第一个 record 未设置 primaryKey 时为所有 record 回填自增主键
+     * @see #batchInsert(List, int)
+     */
+    public int[] batchInsert(String tableName, String primaryKey, List<Record> recordList, int rowsPerStatement) {
+    	if (recordList == null || recordList.size() == 0)
+    		return new int[0];
+    	if (!config.dialect.isMultiValuesInsertSupported())
+    		return batchSave(tableName, recordList, rowsPerStatement);
+    	
+    	Record record = recordList.get(0);
+    	Record columns = new Record();
+    	for (String colName : record.getColumnNames()) {
+    		columns.set(colName, colName);
+    	}
+    	
+    	StringBuilder sql = new StringBuilder();
+    	List<Object> columnList = new ArrayList<Object>();
+    	config.dialect.forDbSave(tableName, new String[0], columns, sql, columnList);
+    	
+    	String[] pKeys = primaryKey.split(",");
+    	String generatedKey = (pKeys.length == 1 && record.get(pKeys[0].trim()) == null) ? pKeys[0].trim() : null;
+    	return batchInsert(sql.toString(), columnList.toArray(new String[columnList.size()]), recordList, rowsPerStatement, generatedKey, null);
+    }
+    
+    /**
+     * @see #batchInsert(String, String, List, int)
+     */
+    public int[] batchInsert(String tableName, List<Record> recordList, int rowsPerStatement) {
+    	return batchInsert(tableName, config.dialect.getDefaultPrimaryKey(), recordList, rowsPerStatement);
+    }
+    
+    private int[] batchInsert(String sql, String[] columns, List list, int rowsPerStatement, String generatedKey, Class<?> keyType) {
+		Connection conn = null;
+		Boolean autoCommit = null;
+		try {
+			conn = config.getConnection();
+			autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			return batchInsert(config, conn, sql, columns, list, rowsPerStatement, generatedKey, keyType);
+		} catch (Exception e) {
+			throw new ActiveRecordException(e);
+		} finally {
+			if (autoCommit != null)
+				try {conn.setAutoCommit(autoCommit);} catch (Exception e) {LogKit.error(e.getMessage(), e);}
+			config.close(conn);
+			config.invalidateQueryCache(sql);
+		}
+    }
+    
+	private int[] batchInsert(Config config, Connection conn, String sql, String[] columns, List list, int rowsPerStatement, String generatedKey, Class<?> keyType) throws SQLException {
+		if (rowsPerStatement < 1)
+			throw new IllegalArgumentException("The rowsPerStatement must more than 0.");
+		
+		int columnCount = columns.length;
+		int maxRows = rowsPerStatement;
+		if (columnCount > 0 && (long)maxRows * columnCount > config.dialect.getMaxParameterCount()) {
+			maxRows = Math.max(1, config.dialect.getMaxParameterCount() / columnCount);
+		}
+		
+		boolean isModel = list.get(0) instanceof Model;
+		boolean isInTransaction = config.isInTransaction();
+		int size = list.size();
+		int[] result = new int[size];
+		PreparedStatement pst = null;
+		Object[] paras = null;
+		int preparedRows = 0;
+		try {
+			for (int from=0; from<size; from+=maxRows) {
+				int rows = Math.min(maxRows, size - from);
+				if (rows != preparedRows) {	// 只有最后一条 sql 的行数可能不同，columnCount 为 0 时也须按行数重新 prepare
+					DbKit.close(pst);
+					pst = null;
+					String multiSql = config.dialect.forMultiValuesInsert(sql, rows);
+					pst = generatedKey != null ? conn.prepareStatement(multiSql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(multiSql);
+					paras = new Object[rows * columnCount];
+					preparedRows = rows;
+				}
+				
+				int p = 0;
+				for (int i=from, to=from+rows; i<to; i++) {
+					Map map = isModel ? ((Model)list.get(i))._getAttrs() : ((Record)list.get(i)).getColumns();
+					for (int j=0; j<columnCount; j++) {
+						paras[p++] = map.get(columns[j]);
+					}
+				}
+				config.dialect.fillStatement(pst, paras);
+				int count = pst.executeUpdate();
+				if (generatedKey != null) {
+					config.dialect.getBatchGeneratedKeys(pst, list, from, from + rows, generatedKey, keyType);
+				}
+				if (isInTransaction == false)
+					conn.commit();
+				Arrays.fill(result, from, from + rows, count == rows ? 1 : Statement.SUCCESS_NO_INFO);
+			}
+		} finally {
+			DbKit.close(pst);
+		}
+		return result;
+	}
+    
     /**
      * Batch update models using the attrs names of the first model in modelList.
      * Ensure all the models can use the same sql as the first model.
@@ -1264,22 +1660,57 @@ public class DbPro {
     	return config.getSqlKit().getSqlPara(key, paras);
     }
     
-    public List<Record> find(SqlPara sqlPara) {
+    public List<Record> find(final SqlPara sqlPara) {
+    	if (config.queryCache != null) {
+    		return config.queryCache.get(config, "find", sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+    			public Object load() {
+    				return find(sqlPara.getSql(), sqlPara.getPara());
+    			}
+    		});
+    	}
     	return find(sqlPara.getSql(), sqlPara.getPara());
     }
     
-    public Record findFirst(SqlPara sqlPara) {
+    public Record findFirst(final SqlPara sqlPara) {
+    	if (config.queryCache != null) {
+    		return config.queryCache.get(config, "first", sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+    			public Object load() {
+    				return findFirst(sqlPara.getSql(), sqlPara.getPara());
+    			}
+    		});
+    	}
     	return findFirst(sqlPara.getSql(), sqlPara.getPara());
     }
     
+    public long each(IRowConsumer<Record> consumer, int fetchSize, SqlPara sqlPara) {
+    	return each(consumer, fetchSize, sqlPara.getSql(), sqlPara.getPara());
+    }
+    
+    public long each(IRowConsumer<Record> consumer, SqlPara sqlPara) {
+    	return each(consumer, DbKit.DEFAULT_FETCH_SIZE, sqlPara.getSql(), sqlPara.getPara());
+    }
+    
     public int update(SqlPara sqlPara) {
     	return update(sqlPara.getSql(), sqlPara.getPara());
     }
     
-    public Page<Record> paginate(int pageNumber, int pageSize, SqlPara sqlPara) {
+    public Page<Record> paginate(final int pageNumber, final int pageSize, final SqlPara sqlPara) {
+    	if (config.queryCache != null) {
+    		return config.queryCache.get(config, "page:" + pageNumber + ":" + pageSize, sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+    			public Object load() {
+    				String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
+    				return doPaginate(pageNumber, pageSize, null, sqls[0], sqls[1], sqlPara.getPara());
+    			}
+    		});
+    	}
     	String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
     	return doPaginate(pageNumber, pageSize, null, sqls[0], sqls[1], sqlPara.getPara());
     }
+    
+    public KeysetPage<Record> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, SqlPara sqlPara) {
+    	String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
+    	return paginateByKeyset(cursor, pageSize, orderKey, desc, countMode, sqls[0], sqls[1], sqlPara.getPara());
+    }
 }
 
 
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+/**
+ * IPoolMetrics
+ * <p>
+ * 连接池运行时状态，C3p0Plugin、DruidPlugin、HikariCpPlugin 均实现了该接口，
+ * 连接池未启动或无法获取时返回 -1
+ * @see PoolMonitor
+ */
+public interface IPoolMetrics {
+	
+	/**
+	 * 已借出的连接数
+	 */
+	int getActiveConnections();
+	
+	/**
+	 * 池中空闲的连接数
+	 */
+	int getIdleConnections();
+	
+	/**
+	 * 池中连接总数
+	 */
+	int getTotalConnections();
+	
+	/**
+	 * 等待获取连接的线程数
+	 */
+	int getPendingThreads();
+	
+	/**
+	 * 连接池最大连接数
+	 */
+	int getMaxPoolSize();
+}
+
+
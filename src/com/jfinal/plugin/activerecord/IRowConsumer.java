@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+/**
+ * IRowConsumer 用于 DbPro.each(...)、Model.each(...) 流式遍历查询结果
+ * 
+ * 每读取一行数据即回调一次，回调返回后该行对象不再被引用，
+ * 因此无论结果集多大，内存占用都是常量级别
+ */
+public interface IRowConsumer<T> {
+	
+	/**
+	 * 处理一行数据
+	 * @param row 当前行对应的 Record 或 Model 对象
+	 * @return 返回 false 立即终止遍历并释放游标，返回 true 继续读取下一行
+	 */
+	boolean accept(T row);
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.List;
+
+/**
+ * KeysetPage is the result of Model.paginateByKeyset(......) or Db.paginateByKeyset(......)
+ * 
+ * 基于排序键的 seek 分页结果，通过 getCursor() 取得下一页的游标，
+ * 将其原样传回 paginateByKeyset(...) 即可获取下一页，游标为 null 表示已是最后一页
+ * 
+ * totalRow 按 CountMode 计算，只在第一页计算一次并随游标传递，
+ * 为 NONE 或数据库不支持估算时 totalRow 与 totalPage 为 -1
+ */
+public class KeysetPage<T> extends Page<T> {
+	
+	private static final long serialVersionUID = 3207519470383342658L;
+	
+	/**
+	 * 总行数的计算方式
+	 */
+	public enum CountMode {
+		
+		/**
+		 * 不计算总行数，省去 count 查询
+		 */
+		NONE,
+		
+		/**
+		 * 第一页执行 select count(*)，结果随游标传递，后续页不再执行
+		 */
+		EXACT,
+		
+		/**
+		 * 第一页通过 Dialect.estimateRowCount(...) 取得执行计划中的估算行数，结果随游标传递
+		 */
+		ESTIMATED
+	}
+	
+	private String cursor;		// cursor of next page, null if this is the last page
+	
+	public KeysetPage(List<T> list, int pageNumber, int pageSize, int totalPage, int totalRow, String cursor) {
+		super(list, pageNumber, pageSize, totalPage, totalRow);
+		this.cursor = cursor;
+	}
+	
+	public KeysetPage() {
+		
+	}
+	
+	/**
+	 * Return cursor of next page, null if this is the last page.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+	
+	public boolean isLastPage() {
+		return cursor == null;
+	}
+	
+	public String toString() {
+		return super.toString() + "\ncursor : " + cursor;
+	}
+}
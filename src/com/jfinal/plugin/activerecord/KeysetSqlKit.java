@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.List;
+import com.jfinal.kit.StrKit;
+import com.jfinal.plugin.activerecord.KeysetPage.CountMode;
+import com.jfinal.plugin.activerecord.dialect.Dialect;
+
+/**
+ * KeysetSqlKit
+ * 
+ * 为 paginateByKeyset(...) 生成 seek 分页 sql 以及编码、解码游标：
+ * 1: 第一页：select ... from ... where ... order by key limit pageSize + 1
+ * 2: 后续页：select ... from ... where (...) and key > ? order by key limit pageSize + 1
+ *    降序时使用 key < ?，无论翻到第几页都只需沿索引扫描 pageSize + 1 行
+ * 3: 多取的一行用于判断是否存在下一页，存在时以本页最后一行的 key 值生成游标
+ * 
+ * 排序键必须唯一（通常为主键），否则相同 key 值的行可能在翻页时被跳过
+ */
+public class KeysetSqlKit {
+	
+	private static final char SEPARATOR = '\n';
+	
+	/**
+	 * 解码后的游标
+	 */
+	static class Cursor {
+		int pageNumber;
+		long totalRow;
+		Object lastValue;
+	}
+	
+	/**
+	 * 排序键必须是单个列，复合主键 "a,b" 不能作为排序键
+	 */
+	static void checkOrderKey(String orderKey) {
+		if (StrKit.isBlank(orderKey)) {
+			throw new ActiveRecordException("orderKey can not be blank");
+		}
+		if (orderKey.indexOf(',') != -1) {
+			throw new ActiveRecordException("paginateByKeyset(...) can not use composite key as order key: " + orderKey);
+		}
+	}
+	
+	/**
+	 * 去掉 sqlExceptSelect 最外层的 order by 与 limit，排序由 orderKey 决定
+	 * 被去掉部分中的参数需同时通过 trimParas(...) 从 paras 中移除
+	 */
+	static String trimSqlExceptSelect(String sqlExceptSelect) {
+		return sqlExceptSelect.substring(0, getTrimIndex(sqlExceptSelect)).trim();
+	}
+	
+	/**
+	 * 移除 trimSqlExceptSelect(...) 去掉的 order by 与 limit 部分所对应的参数，这些参数位于 paras 的末尾
+	 */
+	static Object[] trimParas(String sqlExceptSelect, Object[] paras) {
+		int count = countPlaceholder(sqlExceptSelect, getTrimIndex(sqlExceptSelect));
+		if (count == 0) {
+			return paras;
+		}
+		if (count > paras.length) {
+			throw new ActiveRecordException("The number of parameters does not match the sql: " + sqlExceptSelect);
+		}
+		Object[] ret = new Object[paras.length - count];
+		System.arraycopy(paras, 0, ret, 0, ret.length);
+		return ret;
+	}
+	
+	private static int getTrimIndex(String sqlExceptSelect) {
+		if (indexOfKeyword(sqlExceptSelect, "group") != -1 || indexOfKeyword(sqlExceptSelect, "having") != -1) {
+			throw new ActiveRecordException("paginateByKeyset(...) can not support group by sql: " + sqlExceptSelect);
+		}
+		
+		int end = sqlExceptSelect.length();
+		int index = indexOfKeyword(sqlExceptSelect, "order");
+		if (index != -1) {
+			end = index;
+		}
+		index = indexOfKeyword(sqlExceptSelect, "limit");
+		if (index != -1 && index < end) {
+			end = index;
+		}
+		return end;
+	}
+	
+	/**
+	 * 统计 sql 从 start 开始不在字符串常量之内的 '?' 数量
+	 */
+	private static int countPlaceholder(String sql, int start) {
+		int ret = 0;
+		boolean inString = false;
+		for (int i = start, len = sql.length(); i < len; i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				inString = !inString;
+			} else if (c == '?' && !inString) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+	
+	static String forKeysetPaginate(Dialect dialect, String select, String sqlExceptSelect, String orderKey, boolean desc, boolean seek, int pageSize) {
+		StringBuilder findSql = new StringBuilder(select.length() + sqlExceptSelect.length() + 64);
+		findSql.append(select).append(' ');
+		if (seek) {
+			int index = indexOfKeyword(sqlExceptSelect, "where");
+			if (index == -1) {
+				findSql.append(sqlExceptSelect).append(" where ");
+			} else {
+				findSql.append(sqlExceptSelect, 0, index).append("where (");
+				findSql.append(sqlExceptSelect, index + "where".length(), sqlExceptSelect.length()).append(") and ");
+			}
+			findSql.append(orderKey).append(desc ? " < ?" : " > ?");
+		} else {
+			findSql.append(sqlExceptSelect);
+		}
+		findSql.append(" order by ").append(orderKey).append(desc ? " desc" : " asc");
+		return dialect.forPaginate(1, pageSize + 1, findSql);
+	}
+	
+	static Object[] appendPara(Object[] paras, Object lastValue) {
+		Object[] ret = new Object[paras.length + 1];
+		System.arraycopy(paras, 0, ret, 0, paras.length);
+		ret[paras.length] = lastValue;
+		return ret;
+	}
+	
+	/**
+	 * 第一页按 CountMode 计算总行数，-1 表示未计算
+	 */
+	@SuppressWarnings("rawtypes")
+	static long getTotalRow(Config config, Connection conn, CountMode countMode, String sqlExceptSelect, Object... paras) throws SQLException {
+		if (countMode == CountMode.EXACT) {
+			List result = Db.query(config, conn, "select count(*) " + sqlExceptSelect, paras);
+			return result.size() > 0 ? ((Number)result.get(0)).longValue() : 0;
+		}
+		if (countMode == CountMode.ESTIMATED) {
+			return config.dialect.estimateRowCount(conn, sqlExceptSelect, paras);
+		}
+		return -1;
+	}
+	
+	/**
+	 * 多查询的一行用于判断是否存在下一页，判断后将其移除
+	 */
+	static <T> KeysetPage<T> buildPage(List<T> list, int pageSize, String orderKey, int pageNumber, long totalRow) {
+		String nextCursor = null;
+		if (list.size() > pageSize) {
+			list.remove(list.size() - 1);
+			T last = list.get(list.size() - 1);
+			Object lastValue = (last instanceof Model) ? ((Model<?>)last).get(getKeyLabel(orderKey)) : ((Record)last).get(getKeyLabel(orderKey));
+			if (lastValue == null) {
+				throw new ActiveRecordException("The value of order key can not be null: " + orderKey);
+			}
+			nextCursor = encodeCursor(orderKey, pageNumber + 1, totalRow, lastValue);
+		}
+		
+		int totalPage = -1;
+		if (totalRow >= 0) {
+			totalPage = (int)(totalRow / pageSize);
+			if (totalRow % pageSize != 0) {
+				totalPage++;
+			}
+		}
+		return new KeysetPage<T>(list, pageNumber, pageSize, totalPage, (int)totalRow, nextCursor);
+	}
+	
+	/**
+	 * "u.id" 或 "`id`" 形式的排序键在结果集中的列名为 "id"
+	 */
+	static String getKeyLabel(String orderKey) {
+		String label = orderKey.substring(orderKey.lastIndexOf('.') + 1).trim();
+		char c = label.charAt(0);
+		if (c == '`' || c == '"' || c == '[') {
+			label = label.substring(1, label.length() - 1);
+		}
+		return label;
+	}
+	
+	static String encodeCursor(String orderKey, int pageNumber, long totalRow, Object lastValue) {
+		StringBuilder ret = new StringBuilder();
+		ret.append(orderKey).append(SEPARATOR).append(pageNumber).append(SEPARATOR).append(totalRow).append(SEPARATOR);
+		if (lastValue instanceof Integer) {
+			ret.append('I').append(lastValue);
+		} else if (lastValue instanceof Long) {
+			ret.append('L').append(lastValue);
+		} else if (lastValue instanceof BigInteger) {
+			ret.append('G').append(lastValue);
+		} else if (lastValue instanceof BigDecimal) {
+			ret.append('N').append(((BigDecimal)lastValue).toPlainString());
+		} else if (lastValue instanceof String) {
+			ret.append('S').append(lastValue);
+		} else if (lastValue instanceof java.sql.Timestamp) {
+			ret.append('T').append(lastValue);
+		} else if (lastValue instanceof java.sql.Date) {
+			ret.append('d').append(lastValue);
+		} else if (lastValue instanceof java.util.Date) {
+			ret.append('D').append(((java.util.Date)lastValue).getTime());
+		} else {
+			throw new ActiveRecordException("Unsupported type of order key: " + lastValue.getClass().getName());
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(ret.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * @return 解码后的游标，cursor 为空时返回 null，表示第一页
+	 */
+	static Cursor decodeCursor(String orderKey, String cursor) {
+		if (StrKit.isBlank(cursor)) {
+			return null;
+		}
+		
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(String.valueOf(SEPARATOR), 4);
+			if (parts.length != 4 || !parts[0].equals(orderKey) || parts[3].length() == 0) {
+				throw new ActiveRecordException("Cursor does not match order key " + orderKey + ": " + cursor);
+			}
+			
+			Cursor ret = new Cursor();
+			ret.pageNumber = Integer.parseInt(parts[1]);
+			ret.totalRow = Long.parseLong(parts[2]);
+			String value = parts[3].substring(1);
+			switch (parts[3].charAt(0)) {
+			case 'I': ret.lastValue = Integer.valueOf(value); break;
+			case 'L': ret.lastValue = Long.valueOf(value); break;
+			case 'G': ret.lastValue = new BigInteger(value); break;
+			case 'N': ret.lastValue = new BigDecimal(value); break;
+			case 'S': ret.lastValue = value; break;
+			case 'T': ret.lastValue = java.sql.Timestamp.valueOf(value); break;
+			case 'd': ret.lastValue = java.sql.Date.valueOf(value); break;
+			case 'D': ret.lastValue = new java.util.Date(Long.parseLong(value)); break;
+			default : throw new ActiveRecordException("Invalid cursor: " + cursor);
+			}
+			return ret;
+		} catch (IllegalArgumentException e) {	// NumberFormatException 以及 Base64 解码异常
+			throw new ActiveRecordException("Invalid cursor: " + cursor, e);
+		}
+	}
+	
+	/**
+	 * 查找最外层（不在括号与字符串常量之内）的关键字，忽略大小写
+	 */
+	static int indexOfKeyword(String sql, String keyword) {
+		int parenDepth = 0;
+		boolean inString = false;
+		for (int i = 0, len = sql.length(), end = len - keyword.length(); i <= end; i++) {
+			char c = sql.charAt(i);
+			if (inString) {
+				if (c == '\'') {
+					inString = false;
+				}
+				continue ;
+			}
+			if (c == '\'') {
+				inString = true;
+			} else if (c == '(') {
+				parenDepth++;
+			} else if (c == ')') {
+				parenDepth--;
+			} else if (parenDepth == 0
+					&& sql.regionMatches(true, i, keyword, 0, keyword.length())
+					&& (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))
+					&& (i == end || !isIdentifierChar(sql.charAt(i + keyword.length())))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '`' || c == '$' || c == '.';
+	}
+}
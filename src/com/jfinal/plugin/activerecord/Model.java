@@ -19,6 +19,7 @@ package com.jfinal.plugin.activerecord;
 import com.jfinal.base.UserSession;
 import com.jfinal.ext.plugin.sql.Cnd;
 import com.jfinal.ext.plugin.tablebind.TableBind;
+import com.jfinal.interfaces.IDataLoader;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.activerecord.cache.ICache;
 
@@ -340,7 +341,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		Config config = _getConfig();
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			String totalRowSql = "select count(*) " + config.dialect.replaceOrderBy(sqlExceptSelect);
 			StringBuilder findSql = new StringBuilder();
 			findSql.append(select).append(' ').append(sqlExceptSelect);
@@ -391,11 +392,47 @@ public abstract class Model<M extends Model> implements Serializable {
 		return new Page<M>(list, pageNumber, pageSize, totalPage, (int)totalRow);
 	}
 	
+	/**
+	 * 基于排序键的 seek 分页，翻页耗时与页码无关，适用于大表深度翻页
+	 * @see DbPro#paginateByKeyset(String, int, String, boolean, KeysetPage.CountMode, String, String, Object...)
+	 */
+	public KeysetPage<M> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, String select, String sqlExceptSelect, Object... paras) {
+		if (pageSize < 1) {
+			throw new ActiveRecordException("pageSize must more than 0");
+		}
+		KeysetSqlKit.checkOrderKey(orderKey);
+		
+		KeysetSqlKit.Cursor c = KeysetSqlKit.decodeCursor(orderKey, cursor);
+		Config config = _getConfig();
+		Connection conn = null;
+		try {
+			conn = config.getReadConnection();
+			paras = KeysetSqlKit.trimParas(sqlExceptSelect, paras);
+			sqlExceptSelect = KeysetSqlKit.trimSqlExceptSelect(sqlExceptSelect);
+			long totalRow = (c != null) ? c.totalRow : KeysetSqlKit.getTotalRow(config, conn, countMode, sqlExceptSelect, paras);
+			String sql = KeysetSqlKit.forKeysetPaginate(config.dialect, select, sqlExceptSelect, orderKey, desc, c != null, pageSize);
+			List<M> list = find(conn, sql, (c != null) ? KeysetSqlKit.appendPara(paras, c.lastValue) : paras);
+			return KeysetSqlKit.buildPage(list, pageSize, orderKey, (c != null) ? c.pageNumber : 1, totalRow);
+		} catch (Exception e) {
+			throw new ActiveRecordException(e);
+		} finally {
+			config.close(conn);
+		}
+	}
+	
+	/**
+	 * 以主键作为排序键的 seek 分页
+	 * @see #paginateByKeyset(String, int, String, boolean, KeysetPage.CountMode, String, String, Object...)
+	 */
+	public KeysetPage<M> paginateByKeyset(String cursor, int pageSize, boolean desc, KeysetPage.CountMode countMode, String select, String sqlExceptSelect, Object... paras) {
+		return paginateByKeyset(cursor, pageSize, getPkName(), desc, countMode, select, sqlExceptSelect, paras);
+	}
+	
 	private Page<M> doPaginateByFullSql(int pageNumber, int pageSize, Boolean isGroupBySql, String totalRowSql, String findSql, Object... paras) {
 		Config config = _getConfig();
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			StringBuilder findSqlBuf = new StringBuilder().append(findSql);
 			return doPaginateByFullSql(config, conn, pageNumber, pageSize, isGroupBySql, totalRowSql, findSqlBuf, paras);
 		} catch (Exception e) {
@@ -439,13 +476,12 @@ public abstract class Model<M extends Model> implements Serializable {
 		Config config = _getConfig();
 		Table table = getTable();
 		
-		StringBuilder sql = new StringBuilder();
 		List<Object> paras = new ArrayList<Object>();
 		// before save
 		if(!beforeSave()){
 			return false;
 		}
-		config.dialect.forModelSave(table, attrs, sql, paras);
+		String sql = config.dialect.getModelSaveSql(table, attrs, paras);
 		// if (paras.size() == 0)	return false;	// The sql "insert into tableName() values()" works fine, so delete this line
 		
 		// --------
@@ -455,13 +491,14 @@ public abstract class Model<M extends Model> implements Serializable {
 		try {
 			conn = config.getConnection();
 			if (config.dialect.isOracle()) {
-				pst = conn.prepareStatement(sql.toString(), table.getPrimaryKey());
+				pst = conn.prepareStatement(sql, table.getPrimaryKey());
 			} else {
-				pst = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+				pst = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 			}
 			config.dialect.fillStatement(pst, paras);
 			result = pst.executeUpdate();
 			config.dialect.getModelGeneratedKey(this, pst, table);
+			config.invalidateQueryCacheTable(table.getName());
 			if(result >= 1){
 				//after save
 				afterSave();
@@ -521,7 +558,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		Connection conn = null;
 		try {
 			conn = config.getConnection();
-			String sql = config.dialect.forModelDeleteById(table);
+			String sql = config.dialect.getModelDeleteByIdSql(table);
 			return Db.update(config, conn, sql, idValues) >= 1;
 		} catch (Exception e) {
 			throw new ActiveRecordException(e);
@@ -549,13 +586,12 @@ public abstract class Model<M extends Model> implements Serializable {
 		}
 		
 		Config config = _getConfig();
-		StringBuilder sql = new StringBuilder();
 		List<Object> paras = new ArrayList<Object>();
 		// before update
 		if(!beforeUpdate()){
 			return false;
 		}
-		config.dialect.forModelUpdate(table, attrs, getModifyFlag(), sql, paras);
+		String sql = config.dialect.getModelUpdateSql(table, attrs, getModifyFlag(), paras);
 		
 		if (paras.size() <= 1) {	// Needn't update
 			return false;
@@ -565,7 +601,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		Connection conn = null;
 		try {
 			conn = config.getConnection();
-			int result = Db.update(config, conn, sql.toString(), paras.toArray());
+			int result = Db.update(config, conn, sql, paras.toArray());
 			if (result >= 1) {
 				//after update
 				afterUpdate();
@@ -589,6 +625,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		config.dialect.fillStatement(pst, paras);
 		ResultSet rs = pst.executeQuery();
 		List<M> result = config.dialect.buildModelList(rs, getUsefulClass());	// ModelBuilder.build(rs, getUsefulClass());
+		SqlMetricsStatement.addRows(pst, result.size());
 		DbKit.close(rs, pst);
 		return result;
 	}
@@ -603,7 +640,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		Config config = _getConfig();
 		Connection conn = null;
 		try {
-			conn = config.getConnection();
+			conn = config.getReadConnection();
 			return find(conn, sql, paras);
 		} catch (Exception e) {
 			throw new ActiveRecordException(e);
@@ -619,6 +656,53 @@ public abstract class Model<M extends Model> implements Serializable {
 		return find(sql, NULL_PARA_ARRAY);
 	}
 	
+	/**
+	 * 流式遍历查询结果，每读取一行即构建一个 Model 并回调 consumer，不会将整个结果集载入内存
+	 * <pre>
+	 * 例子：
+	 * Blog.dao.each(blog -> {
+	 *     exporter.write(blog);
+	 *     return true;
+	 * }, 1000, "select * from blog where user_id = ?", userId);
+	 * </pre>
+	 * @see DbPro#each(IRowConsumer, int, String, Object...)
+	 * @param consumer 行回调，返回 false 时终止遍历
+	 * @param fetchSize 驱动每次从数据库拉取的行数
+	 * @return 回调处理的行数
+	 */
+	public long each(IRowConsumer<M> consumer, int fetchSize, String sql, Object... paras) {
+		Config config = _getConfig();
+		Connection conn = null;
+		boolean autoCommitSwitched = false;
+		PreparedStatement pst = null;
+		ResultSet rs = null;
+		try {
+			conn = config.getReadConnection();
+			autoCommitSwitched = DbKit.beginStreaming(config, conn);
+			try {
+				pst = config.dialect.prepareStreamingStatement(conn, sql, fetchSize);
+				config.dialect.fillStatement(pst, paras);
+				rs = pst.executeQuery();
+				long ret = config.dialect.eachModel(rs, getUsefulClass(), consumer);
+				SqlMetricsStatement.addRows(pst, ret);
+				return ret;
+			} finally {
+				DbKit.endStreaming(conn, autoCommitSwitched, rs, pst);
+			}
+		} catch (Exception e) {
+			throw new ActiveRecordException(e);
+		} finally {
+			config.close(conn);
+		}
+	}
+	
+	/**
+	 * @see #each(IRowConsumer, int, String, Object...)
+	 */
+	public long each(IRowConsumer<M> consumer, String sql, Object... paras) {
+		return each(consumer, DbKit.DEFAULT_FETCH_SIZE, sql, paras);
+	}
+	
 	/**
 	 * Find first model. I recommend add "limit 1" in your sql.
 	 * @param sql an SQL statement that may contain one or more '?' IN parameter placeholders
@@ -689,7 +773,7 @@ public abstract class Model<M extends Model> implements Serializable {
 		if (table.getPrimaryKey().length != idValues.length)
 			throw new IllegalArgumentException("id values error, need " + table.getPrimaryKey().length + " id value");
 		
-		String sql = _getConfig().dialect.forModelFindById(table, columns);
+		String sql = _getConfig().dialect.getModelFindByIdSql(table, columns);
 		List<M> result = find(sql, idValues);
 		return result.size() > 0 ? result.get(0) : null;
 	}
@@ -1002,18 +1086,56 @@ public abstract class Model<M extends Model> implements Serializable {
 		return _getConfig().getSqlKit().getSqlPara(key, paras);
 	}
 	
-	public List<M> find(SqlPara sqlPara) {
+	public List<M> find(final SqlPara sqlPara) {
+		Config config = _getConfig();
+		if (config.queryCache != null) {
+			return config.queryCache.get(config, getUsefulClass().getName() + ":find", sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+				public Object load() {
+					return find(sqlPara.getSql(), sqlPara.getPara());
+				}
+			});
+		}
 		return find(sqlPara.getSql(), sqlPara.getPara());
 	}
 	
-	public M findFirst(SqlPara sqlPara) {
+	public M findFirst(final SqlPara sqlPara) {
+		Config config = _getConfig();
+		if (config.queryCache != null) {
+			return config.queryCache.get(config, getUsefulClass().getName() + ":first", sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+				public Object load() {
+					return findFirst(sqlPara.getSql(), sqlPara.getPara());
+				}
+			});
+		}
 		return findFirst(sqlPara.getSql(), sqlPara.getPara());
 	}
 	
-	public Page<M> paginate(int pageNumber, int pageSize, SqlPara sqlPara) {
+	public long each(IRowConsumer<M> consumer, int fetchSize, SqlPara sqlPara) {
+		return each(consumer, fetchSize, sqlPara.getSql(), sqlPara.getPara());
+	}
+	
+	public long each(IRowConsumer<M> consumer, SqlPara sqlPara) {
+		return each(consumer, DbKit.DEFAULT_FETCH_SIZE, sqlPara.getSql(), sqlPara.getPara());
+	}
+	
+	public Page<M> paginate(final int pageNumber, final int pageSize, final SqlPara sqlPara) {
+		Config config = _getConfig();
+		if (config.queryCache != null) {
+			return config.queryCache.get(config, getUsefulClass().getName() + ":page:" + pageNumber + ":" + pageSize, sqlPara.getSql(), sqlPara.getPara(), new IDataLoader() {
+				public Object load() {
+					String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
+					return doPaginate(pageNumber, pageSize, null, sqls[0], sqls[1], sqlPara.getPara());
+				}
+			});
+		}
 		String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
 		return doPaginate(pageNumber, pageSize, null, sqls[0], sqls[1], sqlPara.getPara());
 	}
+	
+	public KeysetPage<M> paginateByKeyset(String cursor, int pageSize, String orderKey, boolean desc, KeysetPage.CountMode countMode, SqlPara sqlPara) {
+		String[] sqls = PageSqlKit.parsePageSql(sqlPara.getSql());
+		return paginateByKeyset(cursor, pageSize, orderKey, desc, countMode, sqls[0], sqls[1], sqlPara.getPara());
+	}
 
 	/** diy mothed **/
 	private TableBind getTableBind(){
@@ -44,29 +44,98 @@ public class ModelBuilder {
 		String[] labelNames = new String[columnCount + 1];
 		int[] types = new int[columnCount + 1];
 		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
 		while (rs.next()) {
 			Model<?> ar = modelClass.newInstance();
 			Map<String, Object> attrs = ar._getAttrs();
-			for (int i=1; i<=columnCount; i++) {
-				Object value;
-				if (types[i] < Types.BLOB)
-					value = rs.getObject(i);
-				else if (types[i] == Types.CLOB)
-					value = handleClob(rs.getClob(i));
-				else if (types[i] == Types.NCLOB)
-					value = handleClob(rs.getNClob(i));
-				else if (types[i] == Types.BLOB)
-					value = handleBlob(rs.getBlob(i));
-				else
-					value = rs.getObject(i);
-				
-				attrs.put(labelNames[i], value);
+			if (attrs instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)attrs).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					Object value;
+					if (types[i] < Types.BLOB)
+						value = rs.getObject(i);
+					else if (types[i] == Types.CLOB)
+						value = handleClob(rs.getClob(i));
+					else if (types[i] == Types.NCLOB)
+						value = handleClob(rs.getNClob(i));
+					else if (types[i] == Types.BLOB)
+						value = handleBlob(rs.getBlob(i));
+					else
+						value = rs.getObject(i);
+					
+					attrs.put(labelNames[i], value);
+				}
 			}
 			result.add((T)ar);
 		}
 		return result;
 	}
 	
+	/**
+	 * 流式构建 Model，labelNames 与 types 只在遍历开始前构建一次，所有行共享
+	 * @return 回调处理的行数
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public <T> long each(ResultSet rs, Class<? extends Model> modelClass, IRowConsumer<T> consumer) throws SQLException, InstantiationException, IllegalAccessException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int columnCount = rsmd.getColumnCount();
+		String[] labelNames = new String[columnCount + 1];
+		int[] types = new int[columnCount + 1];
+		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
+		long count = 0;
+		while (rs.next()) {
+			Model<?> ar = modelClass.newInstance();
+			Map<String, Object> attrs = ar._getAttrs();
+			if (attrs instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)attrs).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					attrs.put(labelNames[i], buildColumnValue(rs, types, i));
+				}
+			}
+			count++;
+			if (!consumer.accept((T)ar)) {
+				break;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * 读取当前行第 i 列的值，与 build(...) 中的类型转换规则一致
+	 * 覆盖 build(...) 的子类应同时覆盖此方法，使 each(...) 保持同样的转换规则
+	 */
+	public Object buildColumnValue(ResultSet rs, int[] types, int i) throws SQLException {
+		if (types[i] < Types.BLOB)
+			return rs.getObject(i);
+		else if (types[i] == Types.CLOB)
+			return handleClob(rs.getClob(i));
+		else if (types[i] == Types.NCLOB)
+			return handleClob(rs.getNClob(i));
+		else if (types[i] == Types.BLOB)
+			return handleBlob(rs.getBlob(i));
+		else
+			return rs.getObject(i);
+	}
+	
 	public void buildLabelNamesAndTypes(ResultSetMetaData rsmd, String[] labelNames, int[] types) throws SQLException {
 		for (int i=1; i<labelNames.length; i++) {
 			labelNames[i] = rsmd.getColumnLabel(i);
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.sql.Connection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import com.jfinal.log.Log;
+import com.jfinal.plugin.IPlugin;
+
+/**
+ * PoolMonitor 为任意连接池提供统一的运行时统计，并在后台采样输出连接池饱和日志
+ * 
+ * 配置方式：
+ * <pre>
+ * DruidPlugin dp = new DruidPlugin(url, username, password);
+ * me.add(dp);
+ * PoolMonitor pm = new PoolMonitor("main", dp).setSaturationWaitMillis(50);
+ * me.add(pm);
+ * me.add(new ActiveRecordPlugin(pm));
+ * </pre>
+ * 
+ * 1: PoolMonitor 包装被监控的 IDataSourceProvider，通过 PoolMonitorDataSource 统计 getConnection() 的等待耗时，
+ *    以及连接从借出到 close() 归还的持有时长，均记录次数、总耗时、最大耗时与按 2 的幂分桶的直方图
+ * 2: active、idle、total、pending、maxPoolSize 来自实现了 IPoolMetrics 的连接池插件，
+ *    C3p0Plugin、DruidPlugin、HikariCpPlugin 均已实现，其它连接池以 PoolMonitor 自身统计的借出数、等待数代替，
+ *    无法获取的值为 -1
+ * 3: 后台线程按 sampleIntervalMillis 采样，采样周期内最大等待耗时超过 saturationWaitMillis，
+ *    或有线程在等待且连接已全部借出时，以 warn 级别输出连接池饱和日志
+ * 4: PoolMonitor 须在被监控的连接池插件之后、ActiveRecordPlugin 之前启动
+ */
+public class PoolMonitor implements IPlugin, IDataSourceProvider, IPoolMetrics {
+	
+	private static final Log log = Log.getLog(PoolMonitor.class);
+	
+	private final String name;
+	private final IDataSourceProvider dataSourceProvider;
+	private long sampleIntervalMillis = 10000;
+	private long saturationWaitMillis = 100;
+	
+	private volatile DataSource dataSource = null;
+	private ScheduledExecutorService sampler = null;
+	
+	private final TimeStat waitStat = new TimeStat();
+	private final TimeStat leaseStat = new TimeStat();
+	private final AtomicInteger leased = new AtomicInteger();
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicLong intervalMaxWaitNanos = new AtomicLong();
+	private final LongAdder saturationCount = new LongAdder();
+	private volatile int peakActive = 0;
+	private volatile int peakPending = 0;
+	
+	public PoolMonitor(String name, IDataSourceProvider dataSourceProvider) {
+		if (dataSourceProvider == null) {
+			throw new IllegalArgumentException("dataSourceProvider can not be null");
+		}
+		this.name = name;
+		this.dataSourceProvider = dataSourceProvider;
+	}
+	
+	public PoolMonitor(IDataSourceProvider dataSourceProvider) {
+		this(DbKit.MAIN_CONFIG_NAME, dataSourceProvider);
+	}
+	
+	/**
+	 * 采样周期，单位毫秒，默认 10000
+	 */
+	public PoolMonitor setSampleIntervalMillis(long sampleIntervalMillis) {
+		if (sampleIntervalMillis < 1) {
+			throw new IllegalArgumentException("sampleIntervalMillis must be greater than 0");
+		}
+		this.sampleIntervalMillis = sampleIntervalMillis;
+		return this;
+	}
+	
+	/**
+	 * 获取连接的等待耗时超过该值时视为连接池饱和，单位毫秒，默认 100
+	 */
+	public PoolMonitor setSaturationWaitMillis(long saturationWaitMillis) {
+		this.saturationWaitMillis = saturationWaitMillis;
+		return this;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public DataSource getDataSource() {
+		DataSource ret = dataSource;
+		if (ret == null) {
+			synchronized (this) {
+				ret = dataSource;
+				if (ret == null) {
+					DataSource target = dataSourceProvider.getDataSource();
+					if (target == null) {
+						return null;
+					}
+					ret = dataSource = new PoolMonitorDataSource(target, this);
+				}
+			}
+		}
+		return ret;
+	}
+	
+	public synchronized boolean start() {
+		if (sampler != null) {
+			return true;
+		}
+		final String threadName = "PoolMonitor-" + name;
+		sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		sampler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					sample();
+				} catch (Exception e) {
+					log.error("PoolMonitor sample error", e);
+				}
+			}
+		}, sampleIntervalMillis, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+		return true;
+	}
+	
+	public synchronized boolean stop() {
+		if (sampler != null) {
+			sampler.shutdownNow();
+			sampler = null;
+		}
+		dataSource = null;
+		return true;
+	}
+	
+	/**
+	 * 采样一次并在连接池饱和时输出日志，由后台线程调用，也可在测试中直接调用
+	 */
+	public void sample() {
+		long maxWaitNanos = intervalMaxWaitNanos.getAndSet(0);
+		int active = getActiveConnections();
+		int pending = getPendingThreads();
+		int max = getMaxPoolSize();
+		if (active > peakActive) {
+			peakActive = active;
+		}
+		if (pending > peakPending) {
+			peakPending = pending;
+		}
+		
+		boolean slowWait = saturationWaitMillis >= 0 && maxWaitNanos >= saturationWaitMillis * 1000000L;
+		boolean exhausted = pending > 0 && (max < 0 || active >= max);
+		if (slowWait || exhausted) {
+			saturationCount.increment();
+			log.warn("Pool saturation [" + name + "]: active=" + active + ", idle=" + getIdleConnections() + ", pending=" + pending
+				+ ", max=" + max + ", maxWait=" + (maxWaitNanos / 1000000L) + "ms, waitP99<=" + waitStat.getPercentileMillis(99) + "ms");
+		}
+	}
+	
+	// --------- IPoolMetrics
+	
+	private IPoolMetrics getPoolMetrics() {
+		return dataSourceProvider instanceof IPoolMetrics ? (IPoolMetrics)dataSourceProvider : null;
+	}
+	
+	public int getActiveConnections() {
+		IPoolMetrics pm = getPoolMetrics();
+		int ret = pm != null ? pm.getActiveConnections() : -1;
+		return ret >= 0 ? ret : leased.get();
+	}
+	
+	public int getIdleConnections() {
+		IPoolMetrics pm = getPoolMetrics();
+		return pm != null ? pm.getIdleConnections() : -1;
+	}
+	
+	public int getTotalConnections() {
+		IPoolMetrics pm = getPoolMetrics();
+		return pm != null ? pm.getTotalConnections() : -1;
+	}
+	
+	public int getPendingThreads() {
+		IPoolMetrics pm = getPoolMetrics();
+		int ret = pm != null ? pm.getPendingThreads() : -1;
+		return ret >= 0 ? ret : waiting.get();
+	}
+	
+	public int getMaxPoolSize() {
+		IPoolMetrics pm = getPoolMetrics();
+		return pm != null ? pm.getMaxPoolSize() : -1;
+	}
+	
+	// --------- 统计
+	
+	/**
+	 * getConnection() 的等待耗时
+	 */
+	public TimeStat getWaitStat() {
+		return waitStat;
+	}
+	
+	/**
+	 * 连接从借出到归还的持有时长
+	 */
+	public TimeStat getLeaseStat() {
+		return leaseStat;
+	}
+	
+	public int getPeakActive() {
+		return peakActive;
+	}
+	
+	public int getPeakPending() {
+		return peakPending;
+	}
+	
+	/**
+	 * 采样时判定为饱和的次数
+	 */
+	public long getSaturationCount() {
+		return saturationCount.sum();
+	}
+	
+	public void reset() {
+		waitStat.reset();
+		leaseStat.reset();
+		saturationCount.reset();
+		peakActive = 0;
+		peakPending = 0;
+	}
+	
+	public String toString() {
+		return "PoolMonitor [" + name + "]: active=" + getActiveConnections() + ", idle=" + getIdleConnections()
+			+ ", total=" + getTotalConnections() + ", pending=" + getPendingThreads() + ", max=" + getMaxPoolSize()
+			+ ", wait={" + waitStat + "}, lease={" + leaseStat + "}";
+	}
+	
+	// --------- 由 PoolMonitorDataSource、PoolMonitorConnection 调用
+	
+	long beginWait() {
+		waiting.incrementAndGet();
+		return System.nanoTime();
+	}
+	
+	void endWait(long start) {
+		waiting.decrementAndGet();
+		long nanos = System.nanoTime() - start;
+		waitStat.record(nanos);
+		intervalMaxWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+	
+	Connection lease(Connection conn) {
+		leased.incrementAndGet();
+		return new PoolMonitorConnection(conn, this);
+	}
+	
+	void release(long leaseStart) {
+		leased.decrementAndGet();
+		leaseStat.record(System.nanoTime() - leaseStart);
+	}
+}
+
+
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * PoolMonitorConnection 由 PoolMonitorDataSource 借出连接时创建，close() 时记录连接的持有时长，其余方法直接委托
+ */
+class PoolMonitorConnection implements Connection {
+	
+	private final Connection conn;
+	private final PoolMonitor monitor;
+	private final long leaseStart = System.nanoTime();
+	private boolean closed = false;
+	
+	PoolMonitorConnection(Connection conn, PoolMonitor monitor) {
+		this.conn = conn;
+		this.monitor = monitor;
+	}
+	
+	public void close() throws SQLException {
+		if (!closed) {
+			closed = true;
+			monitor.release(leaseStart);
+		}
+		conn.close();
+	}
+	
+	// --------- 以下方法直接委托
+	
+	public void abort(Executor executor) throws SQLException {
+		conn.abort(executor);
+	}
+	
+	public void clearWarnings() throws SQLException {
+		conn.clearWarnings();
+	}
+	
+	public void commit() throws SQLException {
+		conn.commit();
+	}
+	
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return conn.createArrayOf(typeName, elements);
+	}
+	
+	public Blob createBlob() throws SQLException {
+		return conn.createBlob();
+	}
+	
+	public Clob createClob() throws SQLException {
+		return conn.createClob();
+	}
+	
+	public NClob createNClob() throws SQLException {
+		return conn.createNClob();
+	}
+	
+	public SQLXML createSQLXML() throws SQLException {
+		return conn.createSQLXML();
+	}
+	
+	public Statement createStatement() throws SQLException {
+		return conn.createStatement();
+	}
+	
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return conn.createStatement(resultSetType, resultSetConcurrency);
+	}
+	
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return conn.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+	
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return conn.createStruct(typeName, attributes);
+	}
+	
+	public boolean getAutoCommit() throws SQLException {
+		return conn.getAutoCommit();
+	}
+	
+	public String getCatalog() throws SQLException {
+		return conn.getCatalog();
+	}
+	
+	public Properties getClientInfo() throws SQLException {
+		return conn.getClientInfo();
+	}
+	
+	public String getClientInfo(String name) throws SQLException {
+		return conn.getClientInfo(name);
+	}
+	
+	public int getHoldability() throws SQLException {
+		return conn.getHoldability();
+	}
+	
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return conn.getMetaData();
+	}
+	
+	public int getNetworkTimeout() throws SQLException {
+		return conn.getNetworkTimeout();
+	}
+	
+	public String getSchema() throws SQLException {
+		return conn.getSchema();
+	}
+	
+	public int getTransactionIsolation() throws SQLException {
+		return conn.getTransactionIsolation();
+	}
+	
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return conn.getTypeMap();
+	}
+	
+	public SQLWarning getWarnings() throws SQLException {
+		return conn.getWarnings();
+	}
+	
+	public boolean isClosed() throws SQLException {
+		return conn.isClosed();
+	}
+	
+	public boolean isReadOnly() throws SQLException {
+		return conn.isReadOnly();
+	}
+	
+	public boolean isValid(int timeout) throws SQLException {
+		return conn.isValid(timeout);
+	}
+	
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return conn.isWrapperFor(iface);
+	}
+	
+	public String nativeSQL(String sql) throws SQLException {
+		return conn.nativeSQL(sql);
+	}
+	
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return conn.prepareCall(sql);
+	}
+	
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return conn.prepareCall(sql, resultSetType, resultSetConcurrency);
+	}
+	
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return conn.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+	
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return conn.prepareStatement(sql);
+	}
+	
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return conn.prepareStatement(sql, columnIndexes);
+	}
+	
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return conn.prepareStatement(sql, columnNames);
+	}
+	
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return conn.prepareStatement(sql, autoGeneratedKeys);
+	}
+	
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+	
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return conn.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+	
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		conn.releaseSavepoint(savepoint);
+	}
+	
+	public void rollback() throws SQLException {
+		conn.rollback();
+	}
+	
+	public void rollback(Savepoint savepoint) throws SQLException {
+		conn.rollback(savepoint);
+	}
+	
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		conn.setAutoCommit(autoCommit);
+	}
+	
+	public void setCatalog(String catalog) throws SQLException {
+		conn.setCatalog(catalog);
+	}
+	
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		conn.setClientInfo(properties);
+	}
+	
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		conn.setClientInfo(name, value);
+	}
+	
+	public void setHoldability(int holdability) throws SQLException {
+		conn.setHoldability(holdability);
+	}
+	
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		conn.setNetworkTimeout(executor, milliseconds);
+	}
+	
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		conn.setReadOnly(readOnly);
+	}
+	
+	public Savepoint setSavepoint() throws SQLException {
+		return conn.setSavepoint();
+	}
+	
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return conn.setSavepoint(name);
+	}
+	
+	public void setSchema(String schema) throws SQLException {
+		conn.setSchema(schema);
+	}
+	
+	public void setTransactionIsolation(int level) throws SQLException {
+		conn.setTransactionIsolation(level);
+	}
+	
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		conn.setTypeMap(map);
+	}
+	
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return conn.unwrap(iface);
+	}
+}
+
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * PoolMonitorDataSource 统计 getConnection() 的等待耗时，并将借出的连接包装为 PoolMonitorConnection，其余方法直接委托
+ */
+class PoolMonitorDataSource implements DataSource {
+	
+	private final DataSource target;
+	private final PoolMonitor monitor;
+	
+	PoolMonitorDataSource(DataSource target, PoolMonitor monitor) {
+		this.target = target;
+		this.monitor = monitor;
+	}
+	
+	public Connection getConnection() throws SQLException {
+		long start = monitor.beginWait();
+		Connection conn;
+		try {
+			conn = target.getConnection();
+		} finally {
+			monitor.endWait(start);
+		}
+		return monitor.lease(conn);
+	}
+	
+	public Connection getConnection(String username, String password) throws SQLException {
+		long start = monitor.beginWait();
+		Connection conn;
+		try {
+			conn = target.getConnection(username, password);
+		} finally {
+			monitor.endWait(start);
+		}
+		return monitor.lease(conn);
+	}
+	
+	// --------- 以下方法直接委托
+	
+	public PrintWriter getLogWriter() throws SQLException {
+		return target.getLogWriter();
+	}
+	
+	public int getLoginTimeout() throws SQLException {
+		return target.getLoginTimeout();
+	}
+	
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return target.getParentLogger();
+	}
+	
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return target.isWrapperFor(iface);
+	}
+	
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		target.setLogWriter(out);
+	}
+	
+	public void setLoginTimeout(int seconds) throws SQLException {
+		target.setLoginTimeout(seconds);
+	}
+	
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return target.unwrap(iface);
+	}
+}
+
@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import com.jfinal.interfaces.IDataLoader;
+import com.jfinal.plugin.activerecord.cache.ICache;
+
+/**
+ * QueryCache 自动缓存 SqlPara 查询结果，并在写入相关表时自动失效
+ * 
+ * 配置方式：
+ * <pre>
+ * arp.setQueryCache(new QueryCache());
+ * 
+ * // 集群环境下使用 TwoLevelCache，失效消息通过 redis 广播到所有节点
+ * arp.setQueryCache(new QueryCache(new TwoLevelCache(Redis.use())));
+ * </pre>
+ * 
+ * 1: 开启后 Db、Model 的 find(SqlPara)、findFirst(SqlPara)、paginate(pageNumber, pageSize, SqlPara) 使用缓存，
+ *    缓存 key 由去除多余空白后的 sql、参数值及参数类型、sql 中 from、join 之后的表在缓存中的版本号组成
+ * 2: Model.save()、update()、delete()，Db.update()、save()、delete()，以及 batch、batchSave、batchUpdate、
+ *    batchInsert、batchParallel 执行后更新被写入表的版本号，旧版本的缓存不再被命中，由缓存自身的 ttl、容量淘汰，
+ *    因此 cacheName 需要配置 ttl 或容量上限
+ * 3: 无法从写操作 sql 中识别被写入的表时更新全局版本号，所有缓存失效；无法从查询 sql 中识别表时不使用缓存
+ * 4: 事务中的查询不使用缓存，事务中的写操作在写入时以及事务结束时各更新一次版本号，
+ *    避免其它线程在事务提交前读到旧数据并以新版本号缓存
+ * 5: Db.execute(ICallback) 等直接使用 Connection 的写操作无法被识别，需要调用 invalidate(config, tableName)
+ */
+public class QueryCache {
+	
+	public static final String DEFAULT_CACHE_NAME = "_jfinal_query_cache";
+	
+	private static final String ALL_TABLES = "*";
+	private static final int MAX_TABLES_CACHE_SIZE = 4096;
+	private static final String[] NO_TABLES = new String[0];
+	
+	private final ICache cache;
+	private final String cacheName;
+	private final String versionCacheName;
+	
+	private final ConcurrentHashMap<String, String[]> readTablesCache = new ConcurrentHashMap<String, String[]>();
+	private final ConcurrentHashMap<String, String[]> writeTablesCache = new ConcurrentHashMap<String, String[]>();
+	private final ThreadLocal<Set<String>> pendingTables = new ThreadLocal<Set<String>>();
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder invalidationCount = new LongAdder();
+	
+	/**
+	 * 使用 Config 中配置的 ICache
+	 */
+	public QueryCache() {
+		this(null, DEFAULT_CACHE_NAME);
+	}
+	
+	public QueryCache(ICache cache) {
+		this(cache, DEFAULT_CACHE_NAME);
+	}
+	
+	/**
+	 * @param cache 为 null 时使用 Config 中配置的 ICache
+	 * @param cacheName 缓存查询结果的 cacheName，表的版本号保存在 cacheName + "_version" 中
+	 */
+	public QueryCache(ICache cache, String cacheName) {
+		if (cacheName == null || cacheName.trim().isEmpty()) {
+			throw new IllegalArgumentException("cacheName can not be blank");
+		}
+		this.cache = cache;
+		this.cacheName = cacheName.trim();
+		this.versionCacheName = this.cacheName + "_version";
+	}
+	
+	private ICache getCache(Config config) {
+		return cache != null ? cache : config.cache;
+	}
+	
+	/**
+	 * 从缓存中获取查询结果，未命中时调用 dataLoader 查询并放入缓存
+	 * @param type 区分同一 sql 不同结果类型的前缀，例如 "find"、"first"、Model 类名等
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Config config, String type, String sql, Object[] paras, IDataLoader dataLoader) {
+		if (config.isInTransaction()) {
+			return (T)dataLoader.load();
+		}
+		String[] tables = getTables(readTablesCache, sql, false);
+		if (tables.length == 0) {
+			return (T)dataLoader.load();
+		}
+		
+		ICache cache = getCache(config);
+		StringBuilder key = new StringBuilder(sql.length() + 64);
+		key.append(type).append('|').append(getVersion(cache, ALL_TABLES));
+		for (String table : tables) {
+			key.append('|').append(table).append(':').append(getVersion(cache, table));
+		}
+		key.append('|').append(normalize(sql));
+		if (paras != null) {
+			for (Object para : paras) {
+				key.append('|');
+				if (para != null) {
+					key.append(para.getClass().getName()).append(':').append(para);
+				}
+			}
+		}
+		
+		String k = key.toString();
+		Object ret = cache.get(cacheName, k);
+		if (ret != null) {
+			hitCount.increment();
+			return (T)ret;
+		}
+		missCount.increment();
+		ret = dataLoader.load();
+		if (ret != null) {
+			cache.put(cacheName, k, ret);
+		}
+		return (T)ret;
+	}
+	
+	private Object getVersion(ICache cache, String table) {
+		Object ret = cache.get(versionCacheName, table);
+		if (ret == null) {		// 版本号被淘汰时生成新的版本号，避免重新命中淘汰前的旧缓存
+			ret = newVersion();
+			cache.put(versionCacheName, table, ret);
+		}
+		return ret;
+	}
+	
+	private static Long newVersion() {
+		return ThreadLocalRandom.current().nextLong();
+	}
+	
+	/**
+	 * 根据写操作 sql 使被写入表的缓存失效
+	 */
+	public void invalidateBySql(Config config, String sql) {
+		String[] tables = getTables(writeTablesCache, sql, true);
+		if (tables.length == 0) {
+			invalidate(config, ALL_TABLES);
+		} else {
+			for (String table : tables) {
+				invalidate(config, table);
+			}
+		}
+	}
+	
+	/**
+	 * 使表 tableName 相关的所有缓存失效
+	 */
+	public void invalidate(Config config, String tableName) {
+		String table = normalizeTableName(tableName);
+		getCache(config).put(versionCacheName, table, newVersion());
+		invalidationCount.increment();
+		
+		if (config.isInTransaction()) {
+			Set<String> pending = pendingTables.get();
+			if (pending == null) {
+				pending = new LinkedHashSet<String>();
+				pendingTables.set(pending);
+			}
+			pending.add(table);
+		}
+	}
+	
+	/**
+	 * 使所有缓存失效
+	 */
+	public void invalidateAll(Config config) {
+		invalidate(config, ALL_TABLES);
+	}
+	
+	/**
+	 * 事务结束时由 Config.removeThreadLocalConnection() 调用
+	 */
+	void onTransactionEnd(Config config) {
+		Set<String> pending = pendingTables.get();
+		if (pending != null) {
+			pendingTables.remove();
+			ICache cache = getCache(config);
+			for (String table : pending) {
+				cache.put(versionCacheName, table, newVersion());
+			}
+		}
+	}
+	
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	public long getMissCount() {
+		return missCount.sum();
+	}
+	
+	public long getInvalidationCount() {
+		return invalidationCount.sum();
+	}
+	
+	public double getHitRatio() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return total == 0 ? 0 : (double)hit / total;
+	}
+	
+	public String toString() {
+		return "QueryCache [hit=" + getHitCount() + ", miss=" + getMissCount() + ", invalidation=" + getInvalidationCount() + "]";
+	}
+	
+	// --------- sql 解析
+	
+	private static String[] getTables(ConcurrentHashMap<String, String[]> tablesCache, String sql, boolean isWrite) {
+		String[] ret = tablesCache.get(sql);
+		if (ret == null) {
+			List<String> tables = isWrite ? parseWriteTables(tokenize(sql)) : parseReadTables(tokenize(sql));
+			ret = tables.size() > 0 ? tables.toArray(new String[tables.size()]) : NO_TABLES;
+			if (tablesCache.size() >= MAX_TABLES_CACHE_SIZE) {
+				tablesCache.clear();
+			}
+			tablesCache.put(sql, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * 查询 sql 中 from、join 之后的表，包括 "from a, b" 形式，子查询中的表同样被识别
+	 */
+	static List<String> parseReadTables(List<String> tokens) {
+		Set<String> ret = new LinkedHashSet<String>();
+		for (int i=0, n=tokens.size(); i<n; i++) {
+			String t = tokens.get(i);
+			if ("from".equalsIgnoreCase(t) || "join".equalsIgnoreCase(t)) {
+				boolean isFrom = "from".equalsIgnoreCase(t);
+				for (i++; i<n; ) {
+					String table = tokens.get(i);
+					if (!isName(table)) {
+						break;		// 子查询 "from (select ..." 由后续的 from 识别
+					}
+					ret.add(normalizeTableName(table));
+					if (!isFrom) {
+						break;
+					}
+					// 跳过别名，遇到 "," 时继续读取下一个表
+					int j = i + 1;
+					while (j < n && isName(tokens.get(j)) && !isClauseKeyword(tokens.get(j))) {
+						j++;
+					}
+					if (j < n && ",".equals(tokens.get(j))) {
+						i = j + 1;
+					} else {
+						i = j - 1;
+						break;
+					}
+				}
+			}
+		}
+		return new ArrayList<String>(ret);
+	}
+	
+	/**
+	 * 写操作 sql 中被写入的表：update t、insert into t、replace into t、merge into t、delete from t、truncate table t，
+	 * 无法识别时返回空 List
+	 */
+	static List<String> parseWriteTables(List<String> tokens) {
+		List<String> ret = new ArrayList<String>(1);
+		int n = tokens.size();
+		if (n == 0) {
+			return ret;
+		}
+		
+		String first = tokens.get(0).toLowerCase();
+		int i = 1;
+		if ("update".equals(first)) {
+			while (i < n && isModifier(tokens.get(i))) {
+				i++;
+			}
+			// "update a, b set ..." 与 "update a join b ..." 为多表更新，无法确定被写入的表
+			if (i + 1 < n && isName(tokens.get(i)) && hasSingleTarget(tokens, i + 1, "set")) {
+				ret.add(normalizeTableName(tokens.get(i)));
+			}
+		} else if ("insert".equals(first) || "replace".equals(first) || "merge".equals(first)) {
+			while (i < n && isModifier(tokens.get(i))) {
+				i++;
+			}
+			if (i + 1 < n && "into".equalsIgnoreCase(tokens.get(i)) && isName(tokens.get(i + 1))) {
+				ret.add(normalizeTableName(tokens.get(i + 1)));
+			}
+		} else if ("delete".equals(first)) {
+			while (i < n && isModifier(tokens.get(i))) {
+				i++;
+			}
+			// 只识别单表删除 "delete from t where ..."
+			if (i + 1 < n && "from".equalsIgnoreCase(tokens.get(i)) && isName(tokens.get(i + 1)) && hasSingleTarget(tokens, i + 2, "where")) {
+				ret.add(normalizeTableName(tokens.get(i + 1)));
+			}
+		} else if ("truncate".equals(first)) {
+			if (i < n && "table".equalsIgnoreCase(tokens.get(i))) {
+				i++;
+			}
+			if (i < n && isName(tokens.get(i))) {
+				ret.add(normalizeTableName(tokens.get(i)));
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * 表名之后直到 keyword（或 sql 结束）之间只有别名，不存在 "," 与 join
+	 */
+	private static boolean hasSingleTarget(List<String> tokens, int from, String keyword) {
+		for (int i=from, n=tokens.size(); i<n; i++) {
+			String t = tokens.get(i);
+			if (keyword.equalsIgnoreCase(t)) {
+				return true;
+			}
+			if (!isName(t) || "join".equalsIgnoreCase(t) || "using".equalsIgnoreCase(t)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isModifier(String token) {
+		String t = token.toLowerCase();
+		return "low_priority".equals(t) || "delayed".equals(t) || "high_priority".equals(t) || "ignore".equals(t) || "quick".equals(t) || "only".equals(t);
+	}
+	
+	private static boolean isClauseKeyword(String token) {
+		switch (token.toLowerCase()) {
+		case "where": case "group": case "order": case "having": case "limit": case "offset":
+		case "join": case "inner": case "left": case "right": case "full": case "cross": case "natural":
+		case "on": case "using": case "union": case "for": case "set": case "values": case "straight_join": case "window":
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private static boolean isName(String token) {
+		char c = token.charAt(0);
+		return Character.isLetter(c) || c == '_' || c == '`' || c == '"' || c == '[';
+	}
+	
+	/**
+	 * 去除引号、方括号及 schema 前缀并转为小写，与 Table.getName() 使用同一规则比较
+	 */
+	static String normalizeTableName(String name) {
+		if (ALL_TABLES.equals(name)) {
+			return name;
+		}
+		int dot = name.lastIndexOf('.');
+		if (dot != -1) {
+			name = name.substring(dot + 1);
+		}
+		StringBuilder ret = new StringBuilder(name.length());
+		for (int i=0; i<name.length(); i++) {
+			char c = name.charAt(i);
+			if (c != '`' && c != '"' && c != '[' && c != ']') {
+				ret.append(Character.toLowerCase(c));
+			}
+		}
+		return ret.toString();
+	}
+	
+	/**
+	 * 切分为名称（含 schema 前缀与引号）与单字符符号，跳过字符串常量与注释
+	 */
+	static List<String> tokenize(String sql) {
+		List<String> ret = new ArrayList<String>();
+		int n = sql.length();
+		for (int i=0; i<n; ) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				i = skipQuoted(sql, i, '\'');
+			} else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i);
+				i = end == -1 ? n : end + 1;
+			} else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end == -1 ? n : end + 2;
+			} else if (Character.isLetterOrDigit(c) || c == '_' || c == '`' || c == '"' || c == '[' || c == '$') {
+				int start = i;
+				while (i < n) {
+					c = sql.charAt(i);
+					if (c == '`' || c == '"') {
+						i = skipQuoted(sql, i, c);
+					} else if (c == '[') {
+						int end = sql.indexOf(']', i);
+						i = end == -1 ? n : end + 1;
+					} else if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$') {
+						i++;
+					} else {
+						break;
+					}
+				}
+				ret.add(sql.substring(start, i));
+			} else {
+				ret.add(String.valueOf(c));
+				i++;
+			}
+		}
+		return ret;
+	}
+	
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		int n = sql.length();
+		while (i < n) {
+			char c = sql.charAt(i++);
+			if (c == quote) {
+				if (i < n && sql.charAt(i) == quote) {
+					i++;		// 转义的引号
+				} else {
+					return i;
+				}
+			} else if (c == '\\' && quote == '\'') {
+				i++;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * 将字符串常量之外的连续空白压缩为一个空格
+	 */
+	static String normalize(String sql) {
+		StringBuilder ret = new StringBuilder(sql.length());
+		boolean space = false;
+		for (int i=0, n=sql.length(); i<n; ) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = true;
+				i++;
+				continue;
+			}
+			if (space && ret.length() > 0) {
+				ret.append(' ');
+			}
+			space = false;
+			if (c == '\'' || c == '"' || c == '`') {
+				int end = skipQuoted(sql, i, c);
+				ret.append(sql, i, end);
+				i = end;
+			} else {
+				ret.append(c);
+				i++;
+			}
+		}
+		return ret.toString();
+	}
+}
+
+
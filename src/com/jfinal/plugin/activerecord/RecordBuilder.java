@@ -39,30 +39,91 @@ public class RecordBuilder {
 		String[] labelNames = new String[columnCount + 1];
 		int[] types = new int[columnCount + 1];
 		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
 		while (rs.next()) {
 			Record record = new Record();
 			record.setColumnsMap(config.containerFactory.getColumnsMap());
 			Map<String, Object> columns = record.getColumns();
-			for (int i=1; i<=columnCount; i++) {
-				Object value;
-				if (types[i] < Types.BLOB)
-					value = rs.getObject(i);
-				else if (types[i] == Types.CLOB)
-					value = ModelBuilder.me.handleClob(rs.getClob(i));
-				else if (types[i] == Types.NCLOB)
-					value = ModelBuilder.me.handleClob(rs.getNClob(i));
-				else if (types[i] == Types.BLOB)
-					value = ModelBuilder.me.handleBlob(rs.getBlob(i));
-				else
-					value = rs.getObject(i);
-				
-				columns.put(labelNames[i], value);
+			if (columns instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)columns).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					Object value;
+					if (types[i] < Types.BLOB)
+						value = rs.getObject(i);
+					else if (types[i] == Types.CLOB)
+						value = ModelBuilder.me.handleClob(rs.getClob(i));
+					else if (types[i] == Types.NCLOB)
+						value = ModelBuilder.me.handleClob(rs.getNClob(i));
+					else if (types[i] == Types.BLOB)
+						value = ModelBuilder.me.handleBlob(rs.getBlob(i));
+					else
+						value = rs.getObject(i);
+					
+					columns.put(labelNames[i], value);
+				}
 			}
 			result.add(record);
 		}
 		return result;
 	}
 	
+	/**
+	 * 流式构建 Record，labelNames 与 types 只在遍历开始前构建一次，所有行共享
+	 * @return 回调处理的行数
+	 */
+	@SuppressWarnings("unchecked")
+	public long each(Config config, ResultSet rs, IRowConsumer<Record> consumer) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int columnCount = rsmd.getColumnCount();
+		String[] labelNames = new String[columnCount + 1];
+		int[] types = new int[columnCount + 1];
+		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
+		long count = 0;
+		while (rs.next()) {
+			Record record = new Record();
+			record.setColumnsMap(config.containerFactory.getColumnsMap());
+			Map<String, Object> columns = record.getColumns();
+			if (columns instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)columns).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					columns.put(labelNames[i], buildColumnValue(rs, types, i));
+				}
+			}
+			count++;
+			if (!consumer.accept(record)) {
+				break;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * 读取当前行第 i 列的值，与 build(...) 中的类型转换规则一致
+	 * 覆盖 build(...) 的子类应同时覆盖此方法，使 each(...) 保持同样的转换规则
+	 */
+	public Object buildColumnValue(ResultSet rs, int[] types, int i) throws SQLException {
+		return ModelBuilder.me.buildColumnValue(rs, types, i);
+	}
+	
 	public void buildLabelNamesAndTypes(ResultSetMetaData rsmd, String[] labelNames, int[] types) throws SQLException {
 		for (int i=1; i<labelNames.length; i++) {
 			labelNames[i] = rsmd.getColumnLabel(i);
@@ -0,0 +1,383 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import com.jfinal.log.Log;
+
+/**
+ * ReplicaRouter 实现读写分离，将读操作路由到按权重选取的只读从库，写操作仍然使用 Config 的主库
+ * 
+ * 配置方式：
+ * <pre>
+ * ReplicaRouter router = new ReplicaRouter()
+ * 		.addReplica("replica1", druidPlugin1, 2)
+ * 		.addReplica("replica2", druidPlugin2, 1)
+ * 		.setLagSql("show slave status", "Seconds_Behind_Master", 10);
+ * arp.setReplicaRouter(router);
+ * </pre>
+ * 
+ * 1: DbPro、Model 的 find、query、paginate、each 系列方法通过 Config.getReadConnection() 获取连接，
+ *    其余方法（update、save、delete、batch、execute、tx 等）仍然使用主库
+ * 2: 以下情况读操作使用主库：
+ *    当前线程处于 Tx、Db.tx() 事务中；
+ *    当前线程调用 forcePrimary() 且尚未调用 clearForcePrimary()；
+ *    设置了 setReadYourWritesMillis(millis) 且当前线程在 millis 毫秒内获取过主库连接；
+ *    没有可用的从库
+ * 3: 后台线程按 healthCheckIntervalMillis 检查每个从库，连接失败或复制延迟超过 maxLagSeconds 时摘除，
+ *    恢复后重新加入，从库获取连接失败时也会被立即摘除
+ * 4: 从库由 ActiveRecordPlugin.start() 启动健康检查，stop() 时停止
+ */
+public class ReplicaRouter {
+	
+	private static final Log log = Log.getLog(ReplicaRouter.class);
+	
+	private final List<Replica> replicas = new ArrayList<Replica>();
+	private final ThreadLocal<long[]> primaryState = new ThreadLocal<long[]>();	// [0]: forcePrimary 次数，[1]: 最近获取主库连接的时间
+	
+	private long readYourWritesMillis = 0;
+	private long healthCheckIntervalMillis = 5000;
+	private String lagSql = null;
+	private String lagColumn = null;
+	private int maxLagSeconds = Integer.MAX_VALUE;
+	
+	private ScheduledExecutorService healthChecker = null;
+	
+	public ReplicaRouter addReplica(String name, DataSource dataSource, int weight) {
+		if (dataSource == null) {
+			throw new IllegalArgumentException("dataSource can not be null");
+		}
+		return addReplica(new Replica(name, dataSource, null, weight));
+	}
+	
+	/**
+	 * 添加从库，dataSourceProvider 在 ActiveRecordPlugin.start() 时才获取 DataSource，
+	 * 可直接传入未启动的 DruidPlugin、C3p0Plugin、HikariCpPlugin
+	 */
+	public ReplicaRouter addReplica(String name, IDataSourceProvider dataSourceProvider, int weight) {
+		if (dataSourceProvider == null) {
+			throw new IllegalArgumentException("dataSourceProvider can not be null");
+		}
+		return addReplica(new Replica(name, null, dataSourceProvider, weight));
+	}
+	
+	private ReplicaRouter addReplica(Replica replica) {
+		if (replica.weight < 1) {
+			throw new IllegalArgumentException("weight must be greater than 0");
+		}
+		if (healthChecker != null) {
+			throw new IllegalStateException("Can not add replica after ActiveRecordPlugin started");
+		}
+		replicas.add(replica);
+		return this;
+	}
+	
+	/**
+	 * 设置复制延迟查询，健康检查时在从库上执行 lagSql，读取 lagColumn 列（为 null 时读取第一列）作为延迟秒数，
+	 * 延迟超过 maxLagSeconds 或值为 null（复制已停止）时摘除该从库，查询结果为空时视为无延迟
+	 * <pre>
+	 * MySQL: setLagSql("show slave status", "Seconds_Behind_Master", 10)
+	 * PostgreSQL: setLagSql("select extract(epoch from now() - pg_last_xact_replay_timestamp())", null, 10)
+	 * </pre>
+	 */
+	public ReplicaRouter setLagSql(String lagSql, String lagColumn, int maxLagSeconds) {
+		if (maxLagSeconds < 0) {
+			throw new IllegalArgumentException("maxLagSeconds can not be less than 0");
+		}
+		this.lagSql = lagSql;
+		this.lagColumn = lagColumn;
+		this.maxLagSeconds = maxLagSeconds;
+		return this;
+	}
+	
+	public ReplicaRouter setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+		if (healthCheckIntervalMillis < 1) {
+			throw new IllegalArgumentException("healthCheckIntervalMillis must be greater than 0");
+		}
+		this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+		return this;
+	}
+	
+	/**
+	 * 当前线程获取主库连接（即执行写操作）后的 millis 毫秒内，读操作也使用主库，保证能读到自己刚写入的数据，
+	 * 默认为 0 不开启
+	 */
+	public ReplicaRouter setReadYourWritesMillis(long readYourWritesMillis) {
+		this.readYourWritesMillis = readYourWritesMillis;
+		return this;
+	}
+	
+	/**
+	 * 当前线程的读操作强制使用主库，直到调用 clearForcePrimary()，可嵌套调用，必须在 finally 块中配对调用
+	 */
+	public void forcePrimary() {
+		getPrimaryState()[0]++;
+	}
+	
+	public void clearForcePrimary() {
+		long[] state = primaryState.get();
+		if (state != null && state[0] > 0 && --state[0] == 0 && state[1] == 0) {
+			primaryState.remove();
+		}
+	}
+	
+	private long[] getPrimaryState() {
+		long[] state = primaryState.get();
+		if (state == null) {
+			state = new long[2];
+			primaryState.set(state);
+		}
+		return state;
+	}
+	
+	/**
+	 * Config.getConnection() 获取主库连接时回调
+	 */
+	void onPrimaryConnection() {
+		if (readYourWritesMillis > 0) {
+			getPrimaryState()[1] = System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * 当前线程的读操作是否需要使用主库
+	 */
+	public boolean isReadFromPrimary() {
+		long[] state = primaryState.get();
+		if (state == null) {
+			return false;
+		}
+		if (state[0] > 0) {
+			return true;
+		}
+		if (state[1] != 0) {
+			if (System.currentTimeMillis() - state[1] < readYourWritesMillis) {
+				return true;
+			}
+			primaryState.remove();
+		}
+		return false;
+	}
+	
+	/**
+	 * 按权重随机选取健康的从库并获取连接，没有可用从库时返回 null，由调用方使用主库
+	 */
+	Connection getConnection() {
+		if (isReadFromPrimary()) {
+			return null;
+		}
+		
+		List<Replica> tried = null;
+		for (;;) {
+			Replica replica = select(tried);
+			if (replica == null) {
+				return null;
+			}
+			try {
+				return replica.dataSource.getConnection();
+			} catch (SQLException e) {
+				replica.eject("getConnection error: " + e.getMessage());
+				if (tried == null) {
+					tried = new ArrayList<Replica>(replicas.size());
+				}
+				tried.add(replica);
+			}
+		}
+	}
+	
+	private Replica select(List<Replica> excludes) {
+		int totalWeight = 0;
+		for (Replica r : replicas) {
+			if (r.healthy && (excludes == null || !excludes.contains(r))) {
+				totalWeight += r.weight;
+			}
+		}
+		if (totalWeight == 0) {
+			return null;
+		}
+		
+		int n = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (Replica r : replicas) {
+			if (r.healthy && (excludes == null || !excludes.contains(r))) {
+				if ((n -= r.weight) < 0) {
+					return r;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 由 ActiveRecordPlugin.start() 调用，获取 DataSource 并启动健康检查
+	 */
+	synchronized void start(String configName) {
+		if (healthChecker != null) {
+			return ;
+		}
+		for (Replica r : replicas) {
+			if (r.dataSource == null) {
+				r.dataSource = r.dataSourceProvider.getDataSource();
+				if (r.dataSource == null) {
+					throw new RuntimeException("ReplicaRouter start error: can not get DataSource of replica " + r.name);
+				}
+			}
+		}
+		
+		final String threadName = "ReplicaRouter-" + configName;
+		healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		healthChecker.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				checkHealth();
+			}
+		}, 0, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	synchronized void stop() {
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+			healthChecker = null;
+		}
+	}
+	
+	/**
+	 * 检查所有从库，可在测试中直接调用以立即生效
+	 */
+	public void checkHealth() {
+		for (Replica r : replicas) {
+			try {
+				long lag = getLagSeconds(r.dataSource);
+				r.lagSeconds = lag;
+				if (lag > maxLagSeconds) {
+					r.eject("replication lag " + lag + "s exceeds " + maxLagSeconds + "s");
+				} else {
+					r.recover();
+				}
+			} catch (Exception e) {
+				r.eject("health check error: " + e.getMessage());
+			}
+		}
+	}
+	
+	private long getLagSeconds(DataSource dataSource) throws SQLException {
+		Connection conn = dataSource.getConnection();
+		Statement st = null;
+		ResultSet rs = null;
+		try {
+			if (lagSql == null) {
+				if (!conn.isValid(5)) {
+					throw new SQLException("connection is not valid");
+				}
+				return 0;
+			}
+			
+			st = conn.createStatement();
+			rs = st.executeQuery(lagSql);
+			if (!rs.next()) {
+				return 0;
+			}
+			Object value = lagColumn != null ? rs.getObject(lagColumn) : rs.getObject(1);
+			if (value == null) {
+				throw new SQLException("replication is not running");
+			}
+			return value instanceof Number ? ((Number)value).longValue() : (long)Double.parseDouble(value.toString());
+		} finally {
+			DbKit.close(rs, st);
+			conn.close();
+		}
+	}
+	
+	/**
+	 * 所有从库的状态，用于监控
+	 */
+	public List<Replica> getReplicas() {
+		return Collections.unmodifiableList(replicas);
+	}
+	
+	public static class Replica {
+		
+		private final String name;
+		private final IDataSourceProvider dataSourceProvider;
+		private final int weight;
+		private volatile DataSource dataSource;
+		private volatile boolean healthy = true;
+		private volatile long lagSeconds = 0;
+		
+		Replica(String name, DataSource dataSource, IDataSourceProvider dataSourceProvider, int weight) {
+			this.name = name;
+			this.dataSource = dataSource;
+			this.dataSourceProvider = dataSourceProvider;
+			this.weight = weight;
+		}
+		
+		void eject(String reason) {
+			if (healthy) {
+				healthy = false;
+				log.warn("Replica " + name + " ejected, " + reason);
+			}
+		}
+		
+		void recover() {
+			if (!healthy) {
+				healthy = true;
+				log.info("Replica " + name + " recovered");
+			}
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public int getWeight() {
+			return weight;
+		}
+		
+		public DataSource getDataSource() {
+			return dataSource;
+		}
+		
+		public boolean isHealthy() {
+			return healthy;
+		}
+		
+		/**
+		 * 最近一次健康检查得到的复制延迟秒数
+		 */
+		public long getLagSeconds() {
+			return lagSeconds;
+		}
+	}
+}
+
+
@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import com.jfinal.log.Log;
+
+/**
+ * SqlMetrics 记录每条 sql 的执行耗时与行数，按 sql 形态汇总，并输出慢 sql 日志
+ * 
+ * 配置方式：
+ * <pre>
+ * arp.setSqlMetrics(new SqlMetrics().setSlowSqlMillis(500));
+ * 
+ * // 在 Controller 中输出统计，或通过 JMX 查看 "com.jfinal:type=SqlMetrics,name=main"
+ * renderJson(Db.use().getConfig().getSqlMetrics().getTopByTotalTime(20));
+ * </pre>
+ * 
+ * 1: Config.getConnection() 返回的连接被 SqlMetricsConnection 包装，其创建的 Statement、PreparedStatement 的
+ *    execute 系列方法被计时，executeUpdate、executeBatch 记录影响的行数。ResultSet 不做包装，查询读取的行数由
+ *    DbPro、Model 在构建结果后补充记录，通过 Db.execute(ICallback) 自行读取的 ResultSet 不记录行数
+ * 2: sql 形态由 sql 去除多余空白、将字符串与数字常量替换为 ?、将 (?, ?, ...) 合并为 (?+) 后得到，
+ *    形态数量超过 maxStatements 后新的形态汇总到 OTHER_SQL 中，内存占用有上限
+ * 3: 每个形态记录错误数、行数，以及 TimeStat 的次数、总耗时、最大耗时与按 2 的幂分桶的耗时直方图，用于估算 p50、p99
+ * 4: 执行耗时超过 slowSqlMillis 时以 warn 级别输出 sql 与绑定的参数，slowSqlMillis 小于 0 时关闭慢 sql 日志
+ * 5: 统计使用 LongAdder，不加锁，可在生产环境中长期开启
+ */
+public class SqlMetrics implements SqlMetricsMBean {
+	
+	private static final Log log = Log.getLog(SqlMetrics.class);
+	
+	public static final String OTHER_SQL = "<other>";
+	private static final int MAX_SHAPE_CACHE_SIZE = 4096;
+	
+	private final int maxStatements;
+	private volatile long slowSqlMillis = 1000;
+	
+	private final ConcurrentHashMap<String, SqlStat> stats = new ConcurrentHashMap<String, SqlStat>();
+	private final ConcurrentHashMap<String, String> shapeCache = new ConcurrentHashMap<String, String>();
+	private ObjectName objectName;
+	
+	public SqlMetrics() {
+		this(1000);
+	}
+	
+	/**
+	 * @param maxStatements 最多单独统计的 sql 形态数量
+	 */
+	public SqlMetrics(int maxStatements) {
+		if (maxStatements < 1) {
+			throw new IllegalArgumentException("maxStatements must be greater than 0");
+		}
+		this.maxStatements = maxStatements;
+	}
+	
+	/**
+	 * 慢 sql 阈值，单位毫秒，小于 0 时关闭慢 sql 日志，默认 1000
+	 */
+	public SqlMetrics setSlowSqlMillis(long slowSqlMillis) {
+		this.slowSqlMillis = slowSqlMillis;
+		return this;
+	}
+	
+	public long getSlowSqlMillis() {
+		return slowSqlMillis;
+	}
+	
+	public void changeSlowSqlMillis(long slowSqlMillis) {
+		this.slowSqlMillis = slowSqlMillis;
+	}
+	
+	// --------- 统计查询
+	
+	public SqlStat getStat(String sql) {
+		return stats.get(getShape(sql));
+	}
+	
+	public List<SqlStat> getStats() {
+		return new ArrayList<SqlStat>(stats.values());
+	}
+	
+	public List<SqlStat> getTopByTotalTime(int n) {
+		return top(n, new Comparator<SqlStat>() {
+			public int compare(SqlStat a, SqlStat b) {
+				return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+			}
+		});
+	}
+	
+	public List<SqlStat> getTopByCount(int n) {
+		return top(n, new Comparator<SqlStat>() {
+			public int compare(SqlStat a, SqlStat b) {
+				return Long.compare(b.getCount(), a.getCount());
+			}
+		});
+	}
+	
+	public List<SqlStat> getTopByMaxTime(int n) {
+		return top(n, new Comparator<SqlStat>() {
+			public int compare(SqlStat a, SqlStat b) {
+				return Long.compare(b.getMaxNanos(), a.getMaxNanos());
+			}
+		});
+	}
+	
+	private List<SqlStat> top(int n, Comparator<SqlStat> comparator) {
+		List<SqlStat> ret = getStats();
+		Collections.sort(ret, comparator);
+		return ret.size() > n ? new ArrayList<SqlStat>(ret.subList(0, n)) : ret;
+	}
+	
+	public int getStatementCount() {
+		return stats.size();
+	}
+	
+	public long getTotalExecuteCount() {
+		long ret = 0;
+		for (SqlStat s : stats.values()) {
+			ret += s.getCount();
+		}
+		return ret;
+	}
+	
+	public long getTotalErrorCount() {
+		long ret = 0;
+		for (SqlStat s : stats.values()) {
+			ret += s.getErrorCount();
+		}
+		return ret;
+	}
+	
+	public String[] topByTotalTime(int n) {
+		return toStrings(getTopByTotalTime(n));
+	}
+	
+	public String[] topByCount(int n) {
+		return toStrings(getTopByCount(n));
+	}
+	
+	public String[] topByMaxTime(int n) {
+		return toStrings(getTopByMaxTime(n));
+	}
+	
+	private static String[] toStrings(List<SqlStat> list) {
+		String[] ret = new String[list.size()];
+		for (int i=0; i<ret.length; i++) {
+			ret[i] = list.get(i).toString();
+		}
+		return ret;
+	}
+	
+	public void reset() {
+		stats.clear();
+	}
+	
+	// --------- JMX
+	
+	/**
+	 * 由 ActiveRecordPlugin.start() 调用
+	 */
+	synchronized void registerMBean(String configName) {
+		if (objectName != null) {
+			return ;
+		}
+		try {
+			ObjectName name = new ObjectName("com.jfinal:type=SqlMetrics,name=" + ObjectName.quote(configName));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+				objectName = name;
+			}
+		} catch (Exception e) {
+			log.warn("Can not register SqlMetrics MBean: " + e.getMessage());
+		}
+	}
+	
+	synchronized void unregisterMBean() {
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (Exception e) {
+				log.warn("Can not unregister SqlMetrics MBean: " + e.getMessage());
+			}
+			objectName = null;
+		}
+	}
+	
+	// --------- 记录
+	
+	private SqlStat getOrCreateStat(String sql) {
+		String shape = getShape(sql);
+		SqlStat ret = stats.get(shape);
+		if (ret == null) {
+			if (stats.size() >= maxStatements) {
+				shape = OTHER_SQL;
+				ret = stats.get(shape);
+				if (ret != null) {
+					return ret;
+				}
+			}
+			ret = new SqlStat(shape);
+			SqlStat old = stats.putIfAbsent(shape, ret);
+			if (old != null) {
+				ret = old;
+			}
+		}
+		return ret;
+	}
+	
+	SqlStat record(String sql, long nanos, long rows, boolean error, Object[] paras) {
+		SqlStat stat = getOrCreateStat(sql);
+		stat.record(nanos, rows, error);
+		long slow = slowSqlMillis;
+		if (slow >= 0 && nanos >= slow * 1000000L) {
+			log.warn("Slow sql " + (nanos / 1000000L) + "ms: " + sql + (paras != null ? " Paras: " + Arrays.toString(paras) : ""));
+		}
+		return stat;
+	}
+	
+	/**
+	 * sql 形态：去除多余空白，字符串与数字常量替换为 ?，(?, ?, ...) 合并为 (?+)，连续的 (?+) 合并为一个
+	 */
+	public String getShape(String sql) {
+		if (sql == null) {
+			return OTHER_SQL;
+		}
+		String ret = shapeCache.get(sql);
+		if (ret == null) {
+			ret = buildShape(sql);
+			if (shapeCache.size() >= MAX_SHAPE_CACHE_SIZE) {
+				shapeCache.clear();
+			}
+			shapeCache.put(sql, ret);
+		}
+		return ret;
+	}
+	
+	static String buildShape(String sql) {
+		StringBuilder ret = new StringBuilder(sql.length());
+		boolean space = false;
+		for (int i=0, n=sql.length(); i<n; ) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = true;
+				i++;
+				continue;
+			}
+			if (space && ret.length() > 0) {
+				char last = ret.charAt(ret.length() - 1);
+				if (last != '(' && c != ')' && c != ',') {
+					ret.append(' ');
+				}
+			}
+			space = false;
+			
+			if (c == '\'') {					// 字符串常量
+				i++;
+				while (i < n) {
+					char q = sql.charAt(i++);
+					if (q == '\\') {
+						i++;
+					} else if (q == '\'') {
+						if (i < n && sql.charAt(i) == '\'') {
+							i++;
+						} else {
+							break;
+						}
+					}
+				}
+				ret.append('?');
+			} else if (Character.isDigit(c) && (ret.length() == 0 || !isIdentifierChar(ret.charAt(ret.length() - 1)))) {
+				while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				ret.append('?');
+			} else if (Character.isLetter(c) || c == '_' || c == '"' || c == '`') {
+				int start = i++;
+				while (i < n && (isIdentifierChar(sql.charAt(i)) || sql.charAt(i) == '"' || sql.charAt(i) == '`')) {
+					i++;
+				}
+				ret.append(sql, start, i);
+			} else {
+				ret.append(c);
+				i++;
+				if (c == ')') {
+					collapseParaList(ret);
+				}
+			}
+		}
+		return ret.toString();
+	}
+	
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+	}
+	
+	/**
+	 * ret 以 ")" 结尾时，将 "(?,?,?)" 合并为 "(?+)"，将 "(?+),(?+)" 合并为 "(?+)"
+	 */
+	private static void collapseParaList(StringBuilder ret) {
+		int end = ret.length() - 1;
+		int i = end - 1;
+		boolean onlyParas = false;
+		while (i >= 0) {
+			char c = ret.charAt(i);
+			if (c == '?') {
+				onlyParas = true;
+			} else if (c == '(') {
+				break;
+			} else if (c != ',' && c != ' ' && c != '+') {
+				return;
+			}
+			i--;
+		}
+		if (i < 0 || !onlyParas) {
+			return;
+		}
+		ret.setLength(i);
+		ret.append("(?+)");
+		
+		// 多行 values: "(?+),(?+)" -> "(?+)"
+		int len = ret.length();
+		if (len >= 9 && ret.substring(len - 9).equals("(?+),(?+)")) {
+			ret.setLength(len - 5);
+		} else if (len >= 10 && ret.substring(len - 10).equals("(?+), (?+)")) {
+			ret.setLength(len - 6);
+		}
+	}
+	
+	// --------- JDBC 包装
+	
+	Connection wrap(Connection conn) {
+		return new SqlMetricsConnection(conn, this);
+	}
+	
+	/**
+	 * 一种 sql 形态的统计数据
+	 */
+	public static class SqlStat extends TimeStat {
+		
+		private final String sql;
+		private final LongAdder errorCount = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		
+		SqlStat(String sql) {
+			this.sql = sql;
+		}
+		
+		void record(long nanos, long rows, boolean error) {
+			record(nanos);
+			if (rows > 0) {
+				this.rows.add(rows);
+			}
+			if (error) {
+				errorCount.increment();
+			}
+		}
+		
+		void addRows(long rows) {
+			if (rows > 0) {
+				this.rows.add(rows);
+			}
+		}
+		
+		public String getSql() {
+			return sql;
+		}
+		
+		public long getErrorCount() {
+			return errorCount.sum();
+		}
+		
+		public long getRows() {
+			return rows.sum();
+		}
+		
+		public String toString() {
+			return String.format("count=%d, errors=%d, rows=%d, total=%.1fms, avg=%.3fms, p50<=%.3fms, p99<=%.3fms, max=%.3fms, sql=%s",
+				getCount(), getErrorCount(), getRows(), getTotalMillis(), getAvgMillis(), getP50Millis(), getP99Millis(), getMaxMillis(), sql);
+		}
+	}
+}
+
+
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+/**
+ * SqlMetrics 的 JMX 接口，ObjectName 为 "com.jfinal:type=SqlMetrics,name=configName"
+ */
+public interface SqlMetricsMBean {
+	
+	int getStatementCount();
+	
+	long getTotalExecuteCount();
+	
+	long getTotalErrorCount();
+	
+	long getSlowSqlMillis();
+	
+	/**
+	 * 修改慢 sql 阈值，单位毫秒，小于 0 时关闭慢 sql 日志
+	 */
+	void changeSlowSqlMillis(long slowSqlMillis);
+	
+	/**
+	 * 总耗时最长的 n 条 sql 形态
+	 */
+	String[] topByTotalTime(int n);
+	
+	/**
+	 * 执行次数最多的 n 条 sql 形态
+	 */
+	String[] topByCount(int n);
+	
+	/**
+	 * 单次最大耗时最长的 n 条 sql 形态
+	 */
+	String[] topByMaxTime(int n);
+	
+	void reset();
+}
+
+
@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * SqlMetricsPreparedStatement 对 execute 系列方法计时，并在开启慢 sql 日志时记录绑定的参数，
+ * 用于输出慢 sql 日志
+ */
+class SqlMetricsPreparedStatement extends SqlMetricsStatement implements PreparedStatement {
+	
+	private final PreparedStatement pst;
+	private Object[] paras = null;
+	
+	SqlMetricsPreparedStatement(PreparedStatement pst, String sql, SqlMetrics metrics) {
+		super(pst, sql, metrics);
+		this.pst = pst;
+	}
+	
+	Object[] getParas() {
+		return paras;
+	}
+	
+	private void setPara(int index, Object value) {
+		if (index < 1 || index > 65536 || metrics.getSlowSqlMillis() < 0) {
+			return ;
+		}
+		if (paras == null) {
+			paras = new Object[Math.max(index, 8)];
+		} else if (index > paras.length) {
+			paras = Arrays.copyOf(paras, Math.max(index, paras.length * 2));
+		}
+		paras[index - 1] = value;
+	}
+	
+	public void clearParameters() throws SQLException {
+		pst.clearParameters();
+		paras = null;
+	}
+	
+	public ResultSet executeQuery() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return queried(sql, start, pst.executeQuery());
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int executeUpdate() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int ret = pst.executeUpdate();
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long executeLargeUpdate() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long ret = pst.executeLargeUpdate();
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public boolean execute() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = pst.execute();
+			updated(sql, start, 0);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public void addBatch() throws SQLException {
+		pst.addBatch();
+	}
+	
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return pst.getMetaData();
+	}
+	
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		return pst.getParameterMetaData();
+	}
+	
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		pst.setArray(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		pst.setAsciiStream(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pst.setAsciiStream(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		pst.setAsciiStream(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		pst.setBigDecimal(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		pst.setBinaryStream(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pst.setBinaryStream(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		pst.setBinaryStream(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+		pst.setBlob(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		pst.setBlob(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+		pst.setBlob(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		pst.setBoolean(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		pst.setByte(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		pst.setBytes(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		pst.setCharacterStream(parameterIndex, reader);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		pst.setCharacterStream(parameterIndex, reader, length);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		pst.setCharacterStream(parameterIndex, reader, length);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		pst.setClob(parameterIndex, reader);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		pst.setClob(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		pst.setClob(parameterIndex, reader, length);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		pst.setDate(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		pst.setDate(parameterIndex, x, cal);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		pst.setDouble(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		pst.setFloat(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		pst.setInt(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		pst.setLong(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setNCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		pst.setNCharacterStream(parameterIndex, reader);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setNCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		pst.setNCharacterStream(parameterIndex, reader, length);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		pst.setNClob(parameterIndex, reader);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setNClob(int parameterIndex, NClob x) throws SQLException {
+		pst.setNClob(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		pst.setNClob(parameterIndex, reader, length);
+		setPara(parameterIndex, reader);
+	}
+	
+	public void setNString(int parameterIndex, String x) throws SQLException {
+		pst.setNString(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		pst.setNull(parameterIndex, sqlType);
+		setPara(parameterIndex, null);
+	}
+	
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		pst.setNull(parameterIndex, sqlType, typeName);
+		setPara(parameterIndex, null);
+	}
+	
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		pst.setObject(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		pst.setObject(parameterIndex, x, targetSqlType);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+		pst.setObject(parameterIndex, x, targetSqlType);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		pst.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		pst.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		pst.setRef(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		pst.setRowId(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+		pst.setSQLXML(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		pst.setShort(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setString(int parameterIndex, String x) throws SQLException {
+		pst.setString(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		pst.setTime(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		pst.setTime(parameterIndex, x, cal);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		pst.setTimestamp(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		pst.setTimestamp(parameterIndex, x, cal);
+		setPara(parameterIndex, x);
+	}
+	
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		pst.setURL(parameterIndex, x);
+		setPara(parameterIndex, x);
+	}
+	
+	@SuppressWarnings("deprecation")
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		pst.setUnicodeStream(parameterIndex, x, length);
+		setPara(parameterIndex, x);
+	}
+}
+
@@ -0,0 +1,420 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * SqlMetricsStatement 对 execute 系列方法计时并记录到 SqlMetrics，其余方法直接委托
+ * 
+ * executeQuery 返回的 ResultSet 不做包装，读取的行数由 DbPro、Model 在构建结果后
+ * 通过 addRows(Statement, long) 补充记录
+ */
+class SqlMetricsStatement implements Statement {
+	
+	private final Statement st;
+	protected final String sql;
+	protected final SqlMetrics metrics;
+	private SqlMetrics.SqlStat queryStat;
+	
+	SqlMetricsStatement(Statement st, String sql, SqlMetrics metrics) {
+		this.st = st;
+		this.sql = sql;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * 为 st 最近一次 executeQuery 补充记录读取的行数，st 未被 SqlMetrics 包装时忽略
+	 */
+	static void addRows(Statement st, long rows) {
+		if (st instanceof SqlMetricsStatement) {
+			SqlMetricsStatement ms = (SqlMetricsStatement)st;
+			if (ms.queryStat != null) {
+				ms.queryStat.addRows(rows);
+				ms.queryStat = null;
+			}
+		}
+	}
+	
+	Object[] getParas() {
+		return null;
+	}
+	
+	final ResultSet queried(String sql, long start, ResultSet rs) {
+		queryStat = metrics.record(sql, System.nanoTime() - start, 0, false, getParas());
+		return rs;
+	}
+	
+	final void updated(String sql, long start, long rows) {
+		metrics.record(sql != null ? sql : "<batch>", System.nanoTime() - start, rows, false, getParas());
+	}
+	
+	final void failed(String sql, long start) {
+		metrics.record(sql != null ? sql : "<batch>", System.nanoTime() - start, 0, true, getParas());
+	}
+	
+	private static long sum(int[] rows) {
+		long ret = 0;
+		for (int r : rows) {
+			if (r > 0) {
+				ret += r;
+			}
+		}
+		return ret;
+	}
+	
+	private static long sum(long[] rows) {
+		long ret = 0;
+		for (long r : rows) {
+			if (r > 0) {
+				ret += r;
+			}
+		}
+		return ret;
+	}
+	
+	public ResultSet executeQuery(String sql) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return queried(sql, start, st.executeQuery(sql));
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int executeUpdate(String sql) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int ret = st.executeUpdate(sql);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int ret = st.executeUpdate(sql, autoGeneratedKeys);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int ret = st.executeUpdate(sql, columnIndexes);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int ret = st.executeUpdate(sql, columnNames);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long executeLargeUpdate(String sql) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long ret = st.executeLargeUpdate(sql);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long ret = st.executeLargeUpdate(sql, autoGeneratedKeys);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long ret = st.executeLargeUpdate(sql, columnIndexes);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long ret = st.executeLargeUpdate(sql, columnNames);
+			updated(sql, start, ret);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public boolean execute(String sql) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = st.execute(sql);
+			updated(sql, start, 0);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = st.execute(sql, autoGeneratedKeys);
+			updated(sql, start, 0);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = st.execute(sql, columnIndexes);
+			updated(sql, start, 0);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = st.execute(sql, columnNames);
+			updated(sql, start, 0);
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public int[] executeBatch() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			int[] ret = st.executeBatch();
+			updated(sql, start, sum(ret));
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public long[] executeLargeBatch() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			long[] ret = st.executeLargeBatch();
+			updated(sql, start, sum(ret));
+			return ret;
+		} catch (SQLException | RuntimeException e) {
+			failed(sql, start);
+			throw e;
+		}
+	}
+	
+	public void addBatch(String sql) throws SQLException {
+		st.addBatch(sql);
+	}
+	
+	public void cancel() throws SQLException {
+		st.cancel();
+	}
+	
+	public void clearBatch() throws SQLException {
+		st.clearBatch();
+	}
+	
+	public void clearWarnings() throws SQLException {
+		st.clearWarnings();
+	}
+	
+	public void close() throws SQLException {
+		st.close();
+	}
+	
+	public void closeOnCompletion() throws SQLException {
+		st.closeOnCompletion();
+	}
+	
+	public Connection getConnection() throws SQLException {
+		return st.getConnection();
+	}
+	
+	public int getFetchDirection() throws SQLException {
+		return st.getFetchDirection();
+	}
+	
+	public int getFetchSize() throws SQLException {
+		return st.getFetchSize();
+	}
+	
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return st.getGeneratedKeys();
+	}
+	
+	public long getLargeMaxRows() throws SQLException {
+		return st.getLargeMaxRows();
+	}
+	
+	public long getLargeUpdateCount() throws SQLException {
+		return st.getLargeUpdateCount();
+	}
+	
+	public int getMaxFieldSize() throws SQLException {
+		return st.getMaxFieldSize();
+	}
+	
+	public int getMaxRows() throws SQLException {
+		return st.getMaxRows();
+	}
+	
+	public boolean getMoreResults() throws SQLException {
+		return st.getMoreResults();
+	}
+	
+	public boolean getMoreResults(int current) throws SQLException {
+		return st.getMoreResults(current);
+	}
+	
+	public int getQueryTimeout() throws SQLException {
+		return st.getQueryTimeout();
+	}
+	
+	public ResultSet getResultSet() throws SQLException {
+		return st.getResultSet();
+	}
+	
+	public int getResultSetConcurrency() throws SQLException {
+		return st.getResultSetConcurrency();
+	}
+	
+	public int getResultSetHoldability() throws SQLException {
+		return st.getResultSetHoldability();
+	}
+	
+	public int getResultSetType() throws SQLException {
+		return st.getResultSetType();
+	}
+	
+	public int getUpdateCount() throws SQLException {
+		return st.getUpdateCount();
+	}
+	
+	public SQLWarning getWarnings() throws SQLException {
+		return st.getWarnings();
+	}
+	
+	public boolean isCloseOnCompletion() throws SQLException {
+		return st.isCloseOnCompletion();
+	}
+	
+	public boolean isClosed() throws SQLException {
+		return st.isClosed();
+	}
+	
+	public boolean isPoolable() throws SQLException {
+		return st.isPoolable();
+	}
+	
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return st.isWrapperFor(iface);
+	}
+	
+	public void setCursorName(String cursorName) throws SQLException {
+		st.setCursorName(cursorName);
+	}
+	
+	public void setEscapeProcessing(boolean escapeProcessing) throws SQLException {
+		st.setEscapeProcessing(escapeProcessing);
+	}
+	
+	public void setFetchDirection(int direction) throws SQLException {
+		st.setFetchDirection(direction);
+	}
+	
+	public void setFetchSize(int rows) throws SQLException {
+		st.setFetchSize(rows);
+	}
+	
+	public void setLargeMaxRows(long largeMaxRows) throws SQLException {
+		st.setLargeMaxRows(largeMaxRows);
+	}
+	
+	public void setMaxFieldSize(int maxFieldSize) throws SQLException {
+		st.setMaxFieldSize(maxFieldSize);
+	}
+	
+	public void setMaxRows(int maxRows) throws SQLException {
+		st.setMaxRows(maxRows);
+	}
+	
+	public void setPoolable(boolean poolable) throws SQLException {
+		st.setPoolable(poolable);
+	}
+	
+	public void setQueryTimeout(int seconds) throws SQLException {
+		st.setQueryTimeout(seconds);
+	}
+	
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return st.unwrap(iface);
+	}
+}
+
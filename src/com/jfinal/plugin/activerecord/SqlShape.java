@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SqlShape 是 Model 增删改查 sql 的预编译形状，缓存在 Table 中
+ * 
+ * 同一张表上参与 save/update 的列集合相同时，生成的 sql 完全相同，
+ * 因此以列集合的 BitSet 为 key 缓存 sql 与参数列名顺序，
+ * 热路径上只需查表并按 paraNames 从 attrs 中取值，不再拼接 sql
+ */
+public final class SqlShape {
+	
+	public static final char SAVE = 'S';
+	public static final char UPDATE = 'U';
+	
+	private final String sql;
+	private final String[] paraNames;
+	
+	public SqlShape(String sql, String[] paraNames) {
+		this.sql = sql;
+		this.paraNames = paraNames;
+	}
+	
+	public String getSql() {
+		return sql;
+	}
+	
+	public String[] getParaNames() {
+		return paraNames;
+	}
+	
+	/**
+	 * 按 paraNames 的顺序从 attrs 中取出参数值
+	 */
+	public void fillParas(Map<String, Object> attrs, List<Object> paras) {
+		for (String name : paraNames) {
+			paras.add(attrs.get(name));
+		}
+	}
+	
+	/**
+	 * 创建以列集合区分的缓存 key，columns 为 Table.getColumnIndex(...) 对应的位
+	 */
+	public static Object key(char type, BitSet columns) {
+		return new Key(type, columns);
+	}
+	
+	private static final class Key {
+		
+		final char type;
+		final BitSet columns;
+		final int hash;
+		
+		Key(char type, BitSet columns) {
+			this.type = type;
+			this.columns = columns;
+			this.hash = 31 * type + columns.hashCode();
+		}
+		
+		public int hashCode() {
+			return hash;
+		}
+		
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key)o;
+			return type == k.type && hash == k.hash && columns.equals(k.columns);
+		}
+	}
+	
+	public String toString() {
+		return sql + " " + Arrays.toString(paraNames);
+	}
+}
@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import com.jfinal.log.Log;
+
+/**
+ * StatementCache 在框架层缓存 PreparedStatement，与连接池无关，C3p0Plugin、DruidPlugin、HikariCpPlugin 表现一致
+ * 
+ * 配置方式：
+ * <pre>
+ * arp.setStatementCacheSize(64);
+ * </pre>
+ * 
+ * 1: Config.getConnection() 返回的连接被代理，prepareStatement(sql) 与 prepareStatement(sql, autoGeneratedKeys)
+ *    优先从缓存中取出 PreparedStatement，调用其 close() 时清空参数后放回缓存而非真正关闭
+ * 2: 缓存按物理连接划分，物理连接通过 Connection.unwrap(Connection.class) 获取，
+ *    连接池每次借出的代理连接不同，但同一物理连接上的 PreparedStatement 可以跨借出复用
+ * 3: 每个物理连接上的缓存按 LRU 淘汰，超出 maxSize 时关闭最久未使用的 PreparedStatement
+ * 4: 同一 sql 的 PreparedStatement 正在使用中（例如遍历 ResultSet 时再次查询同一 sql），
+ *    新建不缓存的 PreparedStatement
+ * 5: 物理连接被连接池关闭后，其缓存在下次登记新物理连接时被清理
+ */
+public class StatementCache {
+	
+	private static final Log log = Log.getLog(StatementCache.class);
+	
+	private final int maxSize;
+	private final Map<Connection, ConnectionStatements> connections = new IdentityHashMap<Connection, ConnectionStatements>();
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	
+	/**
+	 * @param maxSize 每个物理连接上最多缓存的 PreparedStatement 数量
+	 */
+	public StatementCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		}
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * 代理连接池借出的连接，无法获取物理连接时原样返回
+	 */
+	Connection wrap(Connection conn) {
+		Connection physical;
+		try {
+			physical = getPhysicalConnection(conn);
+		} catch (Exception e) {
+			return conn;
+		}
+		if (physical == null || physical == conn) {
+			return conn;
+		}
+		
+		ConnectionStatements statements = getConnectionStatements(physical);
+		return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new ConnectionHandler(conn, statements));
+	}
+	
+	/**
+	 * 获取连接池代理连接背后的物理连接，同一物理连接每次借出都必须返回同一对象
+	 * 
+	 * DruidPooledConnection.getConnection() 返回的是经过 filter（stat、wall 等）代理的连接，
+	 * 优先使用该方法，使缓存的 PreparedStatement 仍然经过 druid filter，
+	 * 其余连接池使用 Connection.unwrap(Connection.class)
+	 */
+	protected Connection getPhysicalConnection(Connection conn) throws Exception {
+		Method getter = getConnectionGetter(conn.getClass());
+		if (getter != null) {
+			return (Connection)getter.invoke(conn);
+		}
+		return conn.unwrap(Connection.class);
+	}
+	
+	private static final Map<Class<?>, Method> getterCache = new ConcurrentHashMap<Class<?>, Method>();
+	private static final Method NO_GETTER;
+	static {
+		try {
+			NO_GETTER = Object.class.getMethod("toString");
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	private static Method getConnectionGetter(Class<?> clazz) {
+		Method ret = getterCache.get(clazz);
+		if (ret == null) {
+			ret = NO_GETTER;
+			try {
+				Method m = clazz.getMethod("getConnection");
+				if (Connection.class.isAssignableFrom(m.getReturnType())) {
+					ret = m;
+				}
+			} catch (NoSuchMethodException e) {
+				// not druid
+			}
+			getterCache.put(clazz, ret);
+		}
+		return ret != NO_GETTER ? ret : null;
+	}
+	
+	private ConnectionStatements getConnectionStatements(Connection physical) {
+		synchronized (connections) {
+			ConnectionStatements ret = connections.get(physical);
+			if (ret == null) {
+				removeClosedConnections();
+				ret = new ConnectionStatements(physical);
+				connections.put(physical, ret);
+			}
+			return ret;
+		}
+	}
+	
+	/**
+	 * 新物理连接出现时通常意味着连接池关闭过旧的物理连接，在此时清理
+	 */
+	private void removeClosedConnections() {
+		for (Iterator<ConnectionStatements> it = connections.values().iterator(); it.hasNext();) {
+			ConnectionStatements statements = it.next();
+			boolean closed;
+			try {
+				closed = statements.physical.isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * 从缓存中取到 PreparedStatement 的次数
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	/**
+	 * 缓存中无可用 PreparedStatement 而新建的次数
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+	
+	/**
+	 * 超出 maxSize 被淘汰关闭的次数
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+	
+	public double getHitRatio() {
+		long hit = hitCount.sum();
+		long total = hit + missCount.sum();
+		return total == 0 ? 0 : (double)hit / total;
+	}
+	
+	/**
+	 * 当前所有物理连接上缓存的 PreparedStatement 总数
+	 */
+	public int size() {
+		int ret = 0;
+		synchronized (connections) {
+			for (ConnectionStatements statements : connections.values()) {
+				ret += statements.size();
+			}
+		}
+		return ret;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public String toString() {
+		return "StatementCache [maxSize=" + maxSize + ", hit=" + getHitCount() + ", miss=" + getMissCount() + ", eviction=" + getEvictionCount() + "]";
+	}
+	
+	/**
+	 * 一个物理连接上的 LRU 缓存，物理连接同一时刻只会被一个线程借出，同步只用于保证可见性
+	 */
+	private final class ConnectionStatements extends LinkedHashMap<String, CachedStatement> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final Connection physical;
+		
+		ConnectionStatements(Connection physical) {
+			super(16, 0.75F, true);
+			this.physical = physical;
+		}
+		
+		protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+			if (size() > maxSize) {
+				evictionCount.increment();
+				eldest.getValue().evict();
+				return true;
+			}
+			return false;
+		}
+		
+		synchronized PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+			String key = autoGeneratedKeys == Statement.NO_GENERATED_KEYS ? sql : "\u0001".concat(sql);
+			CachedStatement cached = get(key);
+			if (cached != null) {
+				if (cached.inUse) {
+					missCount.increment();
+					return conn.prepareStatement(sql, autoGeneratedKeys);	// 由连接池管理，不缓存
+				}
+				if (!cached.pst.isClosed()) {
+					hitCount.increment();
+					return cached.checkout();
+				}
+				remove(key);
+			}
+			
+			missCount.increment();
+			cached = new CachedStatement(this, physical.prepareStatement(sql, autoGeneratedKeys));
+			put(key, cached);
+			return cached.checkout();
+		}
+		
+		synchronized void checkin(CachedStatement cached) {
+			cached.inUse = false;
+			if (cached.evicted) {
+				cached.close();
+			}
+		}
+	}
+	
+	/**
+	 * 被缓存的 PreparedStatement，借出时返回代理对象，代理对象的 close() 将其归还
+	 */
+	private static final class CachedStatement implements InvocationHandler {
+		
+		final ConnectionStatements owner;
+		final PreparedStatement pst;
+		final PreparedStatement proxy;
+		boolean inUse = false;
+		boolean evicted = false;
+		boolean batched = false;
+		
+		CachedStatement(ConnectionStatements owner, PreparedStatement pst) {
+			this.owner = owner;
+			this.pst = pst;
+			this.proxy = (PreparedStatement)Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+		}
+		
+		PreparedStatement checkout() {
+			inUse = true;
+			return proxy;
+		}
+		
+		void evict() {
+			evicted = true;
+			if (!inUse) {
+				close();
+			}
+		}
+		
+		void close() {
+			try {
+				pst.close();
+			} catch (SQLException e) {
+				log.warn(e.getMessage(), e);
+			}
+		}
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name) && args == null) {
+				if (inUse) {
+					try {
+						pst.clearParameters();
+						if (batched) {
+							pst.clearBatch();
+							batched = false;
+						}
+					} finally {
+						owner.checkin(this);
+					}
+				}
+				return null;
+			}
+			if ("isClosed".equals(name) && args == null) {
+				return !inUse || pst.isClosed();
+			}
+			if ("addBatch".equals(name)) {
+				batched = true;
+			}
+			
+			try {
+				return method.invoke(pst, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+	
+	/**
+	 * 拦截 prepareStatement(String)、prepareStatement(String, int)，其余方法原样交给连接池的连接
+	 */
+	private static final class ConnectionHandler implements InvocationHandler {
+		
+		final Connection conn;
+		final ConnectionStatements statements;
+		
+		ConnectionHandler(Connection conn, ConnectionStatements statements) {
+			this.conn = conn;
+			this.statements = statements;
+		}
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("prepareStatement".equals(method.getName()) && args != null) {
+				if (args.length == 1) {
+					return statements.prepare(conn, (String)args[0], Statement.NO_GENERATED_KEYS);
+				}
+				if (args.length == 2 && args[1] instanceof Integer) {
+					return statements.prepare(conn, (String)args[0], (Integer)args[1]);
+				}
+			}
+			
+			try {
+				return method.invoke(conn, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+}
@@ -17,9 +17,11 @@
 package com.jfinal.plugin.activerecord;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import com.jfinal.kit.StrKit;
 
 /**
@@ -33,6 +35,11 @@ public class Table {
 	
 	private Class<? extends Model<?>> modelClass;
 	
+	private volatile String[] columnNames;					// 列序号到列名，首次使用时由 columnTypeMap 生成
+	private volatile Map<String, Integer> columnIndexMap;	// 列名到列序号，区分大小写
+	private final ConcurrentHashMap<Object, Object> sqlShapeCache = new ConcurrentHashMap<Object, Object>();
+	private static final int MAX_SQL_SHAPE_SIZE = 1024;		// 防止动态拼接的 columns 等使缓存无限增长
+	
 	public Table(String name, Class<? extends Model<?>> modelClass) {
 		if (StrKit.isBlank(name))
 			throw new IllegalArgumentException("Table name can not be blank.");
@@ -68,6 +75,7 @@ public class Table {
 			throw new IllegalArgumentException("columnTypeMap can not be null");
 		
 		this.columnTypeMap = columnTypeMap;
+		clearSqlShapeCache();
 	}
 	
 	public String getName() {
@@ -76,6 +84,7 @@ public class Table {
 	
 	void setColumnType(String columnLabel, Class<?> columnType) {
 		columnTypeMap.put(columnLabel, columnType);
+		clearSqlShapeCache();
 	}
 	
 	public Class<?> getColumnType(String columnLabel) {
@@ -108,6 +117,65 @@ public class Table {
 	public Set<Entry<String, Class<?>>> getColumnTypeMapEntrySet() {
 		return columnTypeMap.entrySet();
 	}
+	
+	/**
+	 * 返回列序号，用于构建 SqlShape 的缓存 key。
+	 * 只做区分大小写的精确匹配，columnLabel 不是列名原样时返回 -1
+	 */
+	public int getColumnIndex(String columnLabel) {
+		Map<String, Integer> map = columnIndexMap;
+		if (map == null) {
+			map = buildColumnIndex();
+		}
+		Integer index = map.get(columnLabel);
+		return index != null ? index : -1;
+	}
+	
+	public String getColumnName(int columnIndex) {
+		String[] names = columnNames;
+		if (names == null) {
+			buildColumnIndex();
+			names = columnNames;
+		}
+		return names[columnIndex];
+	}
+	
+	private synchronized Map<String, Integer> buildColumnIndex() {
+		if (columnIndexMap != null) {
+			return columnIndexMap;
+		}
+		String[] names = columnTypeMap.keySet().toArray(new String[columnTypeMap.size()]);
+		Map<String, Integer> map = new HashMap<String, Integer>(names.length * 2);
+		for (int i=0; i<names.length; i++) {
+			map.put(names[i], i);
+		}
+		columnNames = names;
+		columnIndexMap = map;
+		return map;
+	}
+	
+	/**
+	 * 获取 Dialect 缓存在本表上的 sql，key 为 SqlShape.key(...) 或 Dialect 自定义的对象
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getSqlShape(Object key) {
+		return (T)sqlShapeCache.get(key);
+	}
+	
+	public void putSqlShape(Object key, Object sqlShape) {
+		if (sqlShapeCache.size() < MAX_SQL_SHAPE_SIZE) {
+			sqlShapeCache.putIfAbsent(key, sqlShape);
+		}
+	}
+	
+	/**
+	 * 列信息变化时清除列序号与已缓存的 sql
+	 */
+	synchronized void clearSqlShapeCache() {
+		columnIndexMap = null;
+		columnNames = null;
+		sqlShapeCache.clear();
+	}
 }
 
 
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TimeStat 耗时统计，记录次数、总耗时、最大耗时，以及按 2 的幂分桶的耗时直方图，用于估算 p50、p99
+ * 
+ * 直方图第 i 个桶的范围为 [2^i, 2^(i+1)) 微秒，最后一个桶为 2^27 微秒以上。
+ * 统计使用 LongAdder，不加锁，被 SqlMetrics 与 PoolMonitor 共用
+ */
+public class TimeStat {
+	
+	private static final int BUCKET_COUNT = 28;
+	
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	
+	TimeStat() {
+		for (int i=0; i<BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	void record(long nanos) {
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		long micros = nanos / 1000;
+		int bucket = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+		buckets[Math.min(bucket, BUCKET_COUNT - 1)].increment();
+	}
+	
+	void reset() {
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+		for (LongAdder b : buckets) {
+			b.reset();
+		}
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+	
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+	
+	public double getAvgMillis() {
+		long c = getCount();
+		return c == 0 ? 0 : getTotalNanos() / 1000000.0 / c;
+	}
+	
+	public double getMaxMillis() {
+		return getMaxNanos() / 1000000.0;
+	}
+	
+	public double getTotalMillis() {
+		return getTotalNanos() / 1000000.0;
+	}
+	
+	/**
+	 * 直方图各桶的计数，第 i 个桶的范围为 [2^i, 2^(i+1)) 微秒
+	 */
+	public long[] getHistogram() {
+		long[] ret = new long[BUCKET_COUNT];
+		for (int i=0; i<BUCKET_COUNT; i++) {
+			ret[i] = buckets[i].sum();
+		}
+		return ret;
+	}
+	
+	/**
+	 * 根据直方图估算的百分位耗时，取所在桶的上界，单位毫秒
+	 * @param percentile 0 到 100 之间
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] h = getHistogram();
+		long total = 0;
+		for (long c : h) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = (long)Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i=0; i<h.length; i++) {
+			seen += h[i];
+			if (seen >= target) {
+				return Math.min((1L << (i + 1)) / 1000.0, getMaxMillis());
+			}
+		}
+		return getMaxMillis();
+	}
+	
+	public double getP50Millis() {
+		return getPercentileMillis(50);
+	}
+	
+	public double getP99Millis() {
+		return getPercentileMillis(99);
+	}
+	
+	public String toString() {
+		return String.format("count=%d, avg=%.3fms, p50<=%.3fms, p99<=%.3fms, max=%.3fms",
+			getCount(), getAvgMillis(), getP50Millis(), getP99Millis(), getMaxMillis());
+	}
+}
+
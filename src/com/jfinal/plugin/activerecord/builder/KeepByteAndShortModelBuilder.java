@@ -23,6 +23,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import com.jfinal.plugin.activerecord.ArrayContainerFactory;
 import com.jfinal.plugin.activerecord.CPI;
 import com.jfinal.plugin.activerecord.Model;
 import com.jfinal.plugin.activerecord.ModelBuilder;
@@ -49,32 +50,54 @@ public class KeepByteAndShortModelBuilder extends ModelBuilder {
 		String[] labelNames = new String[columnCount + 1];
 		int[] types = new int[columnCount + 1];
 		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
 		while (rs.next()) {
 			Model<?> ar = modelClass.newInstance();
 			Map<String, Object> attrs = CPI.getAttrs(ar);
-			for (int i=1; i<=columnCount; i++) {
-				Object value;
-				if (types[i] == Types.TINYINT)
-					value = rs.getByte(i);
-				else if (types[i] == Types.SMALLINT)
-					value = rs.getShort(i);
-				else if (types[i] < Types.BLOB)
-					value = rs.getObject(i);
-				else if (types[i] == Types.CLOB)
-					value = handleClob(rs.getClob(i));
-				else if (types[i] == Types.NCLOB)
-					value = handleClob(rs.getNClob(i));
-				else if (types[i] == Types.BLOB)
-					value = handleBlob(rs.getBlob(i));
-				else
-					value = rs.getObject(i);
-				
-				attrs.put(labelNames[i], value);
+			if (attrs instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)attrs).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					Object value;
+					if (types[i] == Types.TINYINT)
+						value = rs.getByte(i);
+					else if (types[i] == Types.SMALLINT)
+						value = rs.getShort(i);
+					else if (types[i] < Types.BLOB)
+						value = rs.getObject(i);
+					else if (types[i] == Types.CLOB)
+						value = handleClob(rs.getClob(i));
+					else if (types[i] == Types.NCLOB)
+						value = handleClob(rs.getNClob(i));
+					else if (types[i] == Types.BLOB)
+						value = handleBlob(rs.getBlob(i));
+					else
+						value = rs.getObject(i);
+					
+					attrs.put(labelNames[i], value);
+				}
 			}
 			result.add((T)ar);
 		}
 		return result;
 	}
+	
+	public Object buildColumnValue(ResultSet rs, int[] types, int i) throws SQLException {
+		if (types[i] == Types.TINYINT)
+			return rs.getByte(i);
+		else if (types[i] == Types.SMALLINT)
+			return rs.getShort(i);
+		else
+			return super.buildColumnValue(rs, types, i);
+	}
 }
 
 
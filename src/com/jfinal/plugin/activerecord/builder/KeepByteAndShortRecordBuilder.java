@@ -23,6 +23,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import com.jfinal.plugin.activerecord.ArrayContainerFactory;
 import com.jfinal.plugin.activerecord.CPI;
 import com.jfinal.plugin.activerecord.Config;
 import com.jfinal.plugin.activerecord.ModelBuilder;
@@ -51,33 +52,50 @@ public class KeepByteAndShortRecordBuilder extends RecordBuilder {
 		String[] labelNames = new String[columnCount + 1];
 		int[] types = new int[columnCount + 1];
 		buildLabelNamesAndTypes(rsmd, labelNames, types);
+		ArrayContainerFactory.Layout layout = null;
+		int[] slots = null;
 		while (rs.next()) {
 			Record record = new Record();
 			CPI.setColumnsMap(record, config.getContainerFactory().getColumnsMap());
 			Map<String, Object> columns = record.getColumns();
-			for (int i=1; i<=columnCount; i++) {
-				Object value;
-				if (types[i] == Types.TINYINT)
-					value = rs.getByte(i);
-				else if (types[i] == Types.SMALLINT)
-					value = rs.getShort(i);
-				else if (types[i] < Types.BLOB)
-					value = rs.getObject(i);
-				else if (types[i] == Types.CLOB)
-					value = ModelBuilder.me.handleClob(rs.getClob(i));
-				else if (types[i] == Types.NCLOB)
-					value = ModelBuilder.me.handleClob(rs.getNClob(i));
-				else if (types[i] == Types.BLOB)
-					value = ModelBuilder.me.handleBlob(rs.getBlob(i));
-				else
-					value = rs.getObject(i);
-				
-				columns.put(labelNames[i], value);
+			if (columns instanceof ArrayContainerFactory.AttrMap) {
+				if (slots == null) {
+					layout = ArrayContainerFactory.Layout.of(labelNames);
+					slots = layout.getSlots(labelNames);
+				}
+				Object[] values = ((ArrayContainerFactory.AttrMap)columns).reset(layout);
+				for (int i=1; i<=columnCount; i++) {
+					values[slots[i]] = buildColumnValue(rs, types, i);
+				}
+			} else {
+				for (int i=1; i<=columnCount; i++) {
+					Object value;
+					if (types[i] == Types.TINYINT)
+						value = rs.getByte(i);
+					else if (types[i] == Types.SMALLINT)
+						value = rs.getShort(i);
+					else if (types[i] < Types.BLOB)
+						value = rs.getObject(i);
+					else if (types[i] == Types.CLOB)
+						value = ModelBuilder.me.handleClob(rs.getClob(i));
+					else if (types[i] == Types.NCLOB)
+						value = ModelBuilder.me.handleClob(rs.getNClob(i));
+					else if (types[i] == Types.BLOB)
+						value = ModelBuilder.me.handleBlob(rs.getBlob(i));
+					else
+						value = rs.getObject(i);
+					
+					columns.put(labelNames[i], value);
+				}
 			}
 			result.add(record);
 		}
 		return result;
 	}
+	
+	public Object buildColumnValue(ResultSet rs, int[] types, int i) throws SQLException {
+		return KeepByteAndShortModelBuilder.me.buildColumnValue(rs, types, i);
+	}
 }
 
 
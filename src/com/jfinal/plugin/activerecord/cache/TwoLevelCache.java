@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord.cache;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import com.jfinal.log.Log;
+import com.jfinal.plugin.redis.Cache;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * TwoLevelCache.
+ * 进程内有界 near cache + redis 的二级缓存，用于集群环境下的 ActiveRecordPlugin:
+ * <pre>
+ * TwoLevelCache cache = new TwoLevelCache(Redis.use());
+ * cache.setTtl("hotList", 60).setMaxSize("hotList", 2000);
+ * arp.setCache(cache);
+ *
+ * cache.start();		// RedisPlugin 启动之后订阅失效消息
+ * </pre>
+ *
+ * 1: redis 中每个 cacheName 对应一个 hash，key 为 hash 的 field，removeAll 即删除该 hash
+ * 2: put、remove、removeAll 通过 redis pub/sub 广播，其它节点收到后清除各自的 near cache
+ * 3: ttl 对每个 key 单独生效，redis 中每个 field 的值之前保存了过期时间，读取时检查，
+ *    hash 本身的 expire 只用于回收长时间没有写入的 hash
+ * 4: 可通过继承并覆盖 remoteXxx() 与 publish() 方法替换 redis，例如测试时使用内存实现
+ */
+public class TwoLevelCache implements ICache {
+
+	private static final Log log = Log.getLog(TwoLevelCache.class);
+
+	private static final char OP_REMOVE = 'r';
+	private static final char OP_REMOVE_ALL = 'a';
+
+	// redis 中 field 值的头部：1 字节格式标记 + 8 字节过期时间(毫秒，0 表示不过期)
+	private static final byte VALUE_MAGIC = 'T';
+	private static final int VALUE_HEADER_LEN = 9;
+
+	protected final Cache redis;
+	protected final String channel;
+	protected final String nodeId = UUID.randomUUID().toString();
+
+	private int defaultMaxSize = 1000;
+	private int defaultTtl = 0;		// 秒，0 表示不过期
+	private final Map<String, Integer> maxSizeMap = new ConcurrentHashMap<String, Integer>();
+	private final Map<String, Integer> ttlMap = new ConcurrentHashMap<String, Integer>();
+
+	private final ConcurrentHashMap<String, NearCache> nearCaches = new ConcurrentHashMap<String, NearCache>();
+	private final ConcurrentHashMap<String, Stats> statsMap = new ConcurrentHashMap<String, Stats>();
+
+	private volatile JedisPubSub subscriber;
+	private volatile boolean running = false;
+
+	public TwoLevelCache(Cache redis) {
+		this(redis, "_jfinal_two_level_cache");
+	}
+
+	public TwoLevelCache(Cache redis, String channel) {
+		this.redis = redis;
+		this.channel = channel;
+	}
+
+	public TwoLevelCache setDefaultMaxSize(int defaultMaxSize) {
+		if (defaultMaxSize < 1)
+			throw new IllegalArgumentException("defaultMaxSize must be greater than 0");
+		this.defaultMaxSize = defaultMaxSize;
+		return this;
+	}
+
+	public TwoLevelCache setDefaultTtl(int seconds) {
+		this.defaultTtl = seconds;
+		return this;
+	}
+
+	/**
+	 * 设置 cacheName 在 near cache 中最多保存的 key 数量
+	 */
+	public TwoLevelCache setMaxSize(String cacheName, int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		maxSizeMap.put(cacheName, maxSize);
+		return this;
+	}
+
+	/**
+	 * 设置 cacheName 的生存时间，单位为秒，0 表示不过期
+	 */
+	public TwoLevelCache setTtl(String cacheName, int seconds) {
+		ttlMap.put(cacheName, seconds);
+		return this;
+	}
+
+	private int getTtl(String cacheName) {
+		Integer ret = ttlMap.get(cacheName);
+		return ret != null ? ret : defaultTtl;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(String cacheName, Object key) {
+		Stats stats = getStats(cacheName);
+		NearCache nearCache = getNearCache(cacheName);
+		Object value = nearCache.get(key);
+		if (value != null) {
+			stats.nearHit.increment();
+			return (T)value;
+		}
+
+		// 读取 redis 期间若收到失效消息或本地写入，回填的可能是旧值，此时放弃回填
+		long version = nearCache.version();
+		value = remoteGet(cacheName, key);
+		if (value != null) {
+			stats.remoteHit.increment();
+			nearCache.putIfUnchanged(key, value, version);
+		} else {
+			stats.miss.increment();
+		}
+		return (T)value;
+	}
+
+	public void put(String cacheName, Object key, Object value) {
+		remotePut(cacheName, key, value, getTtl(cacheName));
+		getNearCache(cacheName).put(key, value);
+		publish(OP_REMOVE, cacheName, key);
+	}
+
+	public void remove(String cacheName, Object key) {
+		remoteRemove(cacheName, key);
+		getNearCache(cacheName).remove(key);
+		publish(OP_REMOVE, cacheName, key);
+	}
+
+	public void removeAll(String cacheName) {
+		remoteRemoveAll(cacheName);
+		getNearCache(cacheName).clear();
+		publish(OP_REMOVE_ALL, cacheName, null);
+	}
+
+	// --------- near cache
+
+	private NearCache getNearCache(String cacheName) {
+		NearCache ret = nearCaches.get(cacheName);
+		if (ret == null) {
+			Integer maxSize = maxSizeMap.get(cacheName);
+			ret = new NearCache(maxSize != null ? maxSize : defaultMaxSize, getTtl(cacheName));
+			NearCache old = nearCaches.putIfAbsent(cacheName, ret);
+			if (old != null) {
+				ret = old;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 清除本节点所有 near cache，订阅连接重建时调用，避免遗漏断线期间的失效消息
+	 */
+	public void clearNearCaches() {
+		for (NearCache nearCache : nearCaches.values()) {
+			nearCache.clear();
+		}
+	}
+
+	// --------- remote，子类可覆盖以替换 redis
+
+	protected Object remoteGet(String cacheName, Object key) {
+		byte[] data;
+		Jedis jedis = redis.getJedis();
+		try {
+			data = jedis.hget(hashKeyToBytes(cacheName), redis.getSerializer().fieldToBytes(key));
+		}
+		finally {redis.close(jedis);}
+
+		// 格式不符（例如旧版本写入的数据）或已过期均视为未命中，过期的 field 由后续 put 覆盖
+		if (data == null || data.length < VALUE_HEADER_LEN || data[0] != VALUE_MAGIC) {
+			return null;
+		}
+		long expireAt = 0;
+		for (int i = 1; i < VALUE_HEADER_LEN; i++) {
+			expireAt = (expireAt << 8) | (data[i] & 0xFF);
+		}
+		if (expireAt != 0 && expireAt < System.currentTimeMillis()) {
+			return null;
+		}
+		return redis.getSerializer().valueFromBytes(Arrays.copyOfRange(data, VALUE_HEADER_LEN, data.length));
+	}
+
+	protected void remotePut(String cacheName, Object key, Object value, int ttl) {
+		byte[] valueBytes = redis.getSerializer().valueToBytes(value);
+		byte[] data = new byte[VALUE_HEADER_LEN + valueBytes.length];
+		data[0] = VALUE_MAGIC;
+		long expireAt = ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : 0;
+		for (int i = VALUE_HEADER_LEN - 1; i > 0; i--) {
+			data[i] = (byte)expireAt;
+			expireAt >>>= 8;
+		}
+		System.arraycopy(valueBytes, 0, data, VALUE_HEADER_LEN, valueBytes.length);
+
+		byte[] hashKey = hashKeyToBytes(cacheName);
+		Jedis jedis = redis.getJedis();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			pipeline.hset(hashKey, redis.getSerializer().fieldToBytes(key), data);
+			if (ttl > 0) {
+				// 仅用于回收长时间没有写入的 hash，单个 key 的过期由 expireAt 保证
+				pipeline.expire(hashKey, ttl);
+			}
+			pipeline.sync();
+		}
+		finally {redis.close(jedis);}
+	}
+
+	protected void remoteRemove(String cacheName, Object key) {
+		redis.hdel(cacheName, key);
+	}
+
+	protected void remoteRemoveAll(String cacheName) {
+		redis.del(cacheName);
+	}
+
+	private byte[] hashKeyToBytes(String cacheName) {
+		return redis.getSerializer().keyToBytes(redis.getKeyNamingPolicy().getKeyName(cacheName));
+	}
+
+	// --------- invalidation bus
+
+	protected void publish(char op, String cacheName, Object key) {
+		String message = buildMessage(op, cacheName, key);
+		Jedis jedis = redis.getJedis();
+		try {
+			jedis.publish(channel, message);
+		}
+		finally {redis.close(jedis);}
+	}
+
+	/**
+	 * 失效消息格式：op|nodeId|Base64(key)|cacheName，与 onMessage() 对应
+	 */
+	String buildMessage(char op, String cacheName, Object key) {
+		String keyStr = key != null ? Base64.getEncoder().encodeToString(redis.getSerializer().fieldToBytes(key)) : "";
+		return op + "|" + nodeId + "|" + keyStr + "|" + cacheName;
+	}
+
+	/**
+	 * 处理其它节点广播的失效消息
+	 */
+	protected void onMessage(String message) {
+		String[] arr = message.split("\\|", 4);
+		if (arr.length != 4 || arr[0].length() != 1 || nodeId.equals(arr[1])) {
+			return ;
+		}
+
+		NearCache nearCache = nearCaches.get(arr[3]);
+		if (nearCache == null) {
+			return ;
+		}
+
+		if (arr[0].charAt(0) == OP_REMOVE_ALL) {
+			nearCache.clear();
+		} else {
+			nearCache.remove(redis.getSerializer().fieldFromBytes(Base64.getDecoder().decode(arr[2])));
+		}
+	}
+
+	/**
+	 * 启动订阅线程，接收其它节点的失效消息
+	 */
+	public synchronized void start() {
+		if (running) {
+			return ;
+		}
+		running = true;
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				subscribeLoop();
+			}
+		}, "TwoLevelCache-subscriber");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		running = false;
+		JedisPubSub s = subscriber;
+		if (s != null && s.isSubscribed()) {
+			s.unsubscribe();
+		}
+	}
+
+	private void subscribeLoop() {
+		while (running) {
+			Jedis jedis = null;
+			try {
+				jedis = redis.getJedis();
+				subscriber = new JedisPubSub() {
+					public void onSubscribe(String channel, int subscribedChannels) {
+						clearNearCaches();
+					}
+					public void onMessage(String channel, String message) {
+						TwoLevelCache.this.onMessage(message);
+					}
+				};
+				jedis.subscribe(subscriber, channel);		// 阻塞直到 unsubscribe 或连接断开
+			} catch (Exception e) {
+				if (running) {
+					log.error("TwoLevelCache subscriber disconnected, retry after 1 second", e);
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						return ;
+					}
+				}
+			} finally {
+				subscriber = null;
+				if (jedis != null) {
+					jedis.close();
+				}
+			}
+		}
+	}
+
+	// --------- metrics
+
+	public Stats getStats(String cacheName) {
+		Stats ret = statsMap.get(cacheName);
+		if (ret == null) {
+			ret = new Stats();
+			Stats old = statsMap.putIfAbsent(cacheName, ret);
+			if (old != null) {
+				ret = old;
+			}
+		}
+		return ret;
+	}
+
+	public Map<String, Stats> getAllStats() {
+		return Collections.unmodifiableMap(statsMap);
+	}
+
+	/**
+	 * 每个 cacheName 的命中统计
+	 */
+	public static class Stats {
+
+		private final LongAdder nearHit = new LongAdder();
+		private final LongAdder remoteHit = new LongAdder();
+		private final LongAdder miss = new LongAdder();
+
+		public long getNearHitCount() {
+			return nearHit.sum();
+		}
+
+		public long getRemoteHitCount() {
+			return remoteHit.sum();
+		}
+
+		public long getMissCount() {
+			return miss.sum();
+		}
+
+		/**
+		 * near cache 命中率
+		 */
+		public double getNearHitRatio() {
+			long near = getNearHitCount();
+			long total = near + getRemoteHitCount() + getMissCount();
+			return total == 0 ? 0 : (double)near / total;
+		}
+
+		/**
+		 * near cache 与 redis 的总命中率
+		 */
+		public double getHitRatio() {
+			long hit = getNearHitCount() + getRemoteHitCount();
+			long total = hit + getMissCount();
+			return total == 0 ? 0 : (double)hit / total;
+		}
+
+		public String toString() {
+			return "nearHit=" + getNearHitCount() + ", remoteHit=" + getRemoteHitCount() + ", miss=" + getMissCount();
+		}
+	}
+
+	/**
+	 * 基于 LinkedHashMap access order 实现的 LRU，每个 key 单独计算过期时间
+	 * version 在每次 put、remove、clear 时递增，用于丢弃读取 redis 期间已失效的回填
+	 */
+	private static class NearCache {
+
+		private final int ttlMillis;
+		private final LinkedHashMap<Object, NearEntry> map;
+		private long version = 0;
+
+		NearCache(final int maxSize, int ttl) {
+			this.ttlMillis = ttl > 0 ? ttl * 1000 : 0;
+			this.map = new LinkedHashMap<Object, NearEntry>(16, 0.75F, true) {
+				private static final long serialVersionUID = 1L;
+				protected boolean removeEldestEntry(Map.Entry<Object, NearEntry> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized Object get(Object key) {
+			NearEntry e = map.get(key);
+			if (e == null) {
+				return null;
+			}
+			if (e.expireAt != 0 && e.expireAt < System.currentTimeMillis()) {
+				map.remove(key);
+				return null;
+			}
+			return e.value;
+		}
+
+		synchronized long version() {
+			return version;
+		}
+
+		synchronized void put(Object key, Object value) {
+			version++;
+			map.put(key, new NearEntry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+		}
+
+		/**
+		 * 仅当 version 自读取后未发生变化时回填
+		 */
+		synchronized void putIfUnchanged(Object key, Object value, long expectedVersion) {
+			if (version == expectedVersion) {
+				map.put(key, new NearEntry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+			}
+		}
+
+		synchronized void remove(Object key) {
+			version++;
+			map.remove(key);
+		}
+
+		synchronized void clear() {
+			version++;
+			map.clear();
+		}
+	}
+
+	private static class NearEntry {
+
+		final Object value;
+		final long expireAt;
+
+		NearEntry(Object value, long expireAt) {
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+}
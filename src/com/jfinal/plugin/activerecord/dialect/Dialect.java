@@ -21,16 +21,21 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 import com.jfinal.plugin.activerecord.Config;
+import com.jfinal.plugin.activerecord.IRowConsumer;
 import com.jfinal.plugin.activerecord.Model;
 import com.jfinal.plugin.activerecord.ModelBuilder;
 import com.jfinal.plugin.activerecord.Page;
 import com.jfinal.plugin.activerecord.Record;
 import com.jfinal.plugin.activerecord.RecordBuilder;
+import com.jfinal.plugin.activerecord.SqlShape;
 import com.jfinal.plugin.activerecord.Table;
 import com.jfinal.plugin.activerecord.builder.KeepByteAndShortModelBuilder;
 import com.jfinal.plugin.activerecord.builder.KeepByteAndShortRecordBuilder;
@@ -61,6 +66,113 @@ public abstract class Dialect {
 	public abstract void forDbSave(String tableName, String[] pKeys, Record record, StringBuilder sql, List<Object> paras);
 	public abstract void forDbUpdate(String tableName, String[] pKeys, Object[] ids, Record record, StringBuilder sql, List<Object> paras);
 	
+	// Methods for Model with SqlShape cached in Table, all dialects share these methods
+	private static final String FIND_BY_ID_KEY_PREFIX = "findById:";
+	private static final String DELETE_BY_ID_KEY = "deleteById";
+	
+	public String getModelFindByIdSql(Table table, String columns) {
+		String key = FIND_BY_ID_KEY_PREFIX.concat(columns);
+		String sql = table.getSqlShape(key);
+		if (sql == null) {
+			sql = forModelFindById(table, columns);
+			table.putSqlShape(key, sql);
+		}
+		return sql;
+	}
+	
+	public String getModelDeleteByIdSql(Table table) {
+		String sql = table.getSqlShape(DELETE_BY_ID_KEY);
+		if (sql == null) {
+			sql = forModelDeleteById(table);
+			table.putSqlShape(DELETE_BY_ID_KEY, sql);
+		}
+		return sql;
+	}
+	
+	/**
+	 * 与 forModelSave(...) 生成相同的 sql 与参数，sql 按参与 insert 的列集合缓存在 Table 中
+	 * @return the sql, paras 中按顺序填入参数值
+	 */
+	public String getModelSaveSql(Table table, Map<String, Object> attrs, List<Object> paras) {
+		BitSet columns = new BitSet();
+		for (String colName : attrs.keySet()) {
+			int index = table.getColumnIndex(colName);
+			if (index >= 0) {
+				columns.set(index);
+			} else if (table.hasColumnLabel(colName)) {		// 大小写与列名不一致，无法按列名取值
+				return forModelSaveDirectly(table, attrs, paras);
+			}
+		}
+		
+		Object key = SqlShape.key(SqlShape.SAVE, columns);
+		SqlShape shape = table.getSqlShape(key);
+		if (shape == null) {
+			Map<String, Object> shapeAttrs = buildShapeAttrs(table, columns);
+			StringBuilder sql = new StringBuilder();
+			List<Object> paraNames = new ArrayList<Object>(shapeAttrs.size());
+			forModelSave(table, shapeAttrs, sql, paraNames);
+			shape = new SqlShape(sql.toString(), paraNames.toArray(new String[paraNames.size()]));
+			table.putSqlShape(key, shape);
+		}
+		shape.fillParas(attrs, paras);
+		return shape.getSql();
+	}
+	
+	/**
+	 * 与 forModelUpdate(...) 生成相同的 sql 与参数，sql 按被修改的列集合缓存在 Table 中
+	 * @return the sql, paras 中按顺序填入参数值
+	 */
+	public String getModelUpdateSql(Table table, Map<String, Object> attrs, Set<String> modifyFlag, List<Object> paras) {
+		String[] pKeys = table.getPrimaryKey();
+		BitSet columns = new BitSet();
+		for (String colName : modifyFlag) {
+			int index = table.getColumnIndex(colName);
+			if (index >= 0) {
+				if (attrs.containsKey(colName) && !isPrimaryKey(colName, pKeys)) {
+					columns.set(index);
+				}
+			} else if (table.hasColumnLabel(colName)) {
+				StringBuilder sql = new StringBuilder();
+				forModelUpdate(table, attrs, modifyFlag, sql, paras);
+				return sql.toString();
+			}
+		}
+		
+		Object key = SqlShape.key(SqlShape.UPDATE, columns);
+		SqlShape shape = table.getSqlShape(key);
+		if (shape == null) {
+			Map<String, Object> shapeAttrs = buildShapeAttrs(table, columns);
+			for (String pKey : pKeys) {
+				shapeAttrs.put(pKey, pKey);
+			}
+			StringBuilder sql = new StringBuilder();
+			List<Object> paraNames = new ArrayList<Object>(shapeAttrs.size());
+			forModelUpdate(table, shapeAttrs, shapeAttrs.keySet(), sql, paraNames);
+			shape = new SqlShape(sql.toString(), paraNames.toArray(new String[paraNames.size()]));
+			table.putSqlShape(key, shape);
+		}
+		shape.fillParas(attrs, paras);
+		return shape.getSql();
+	}
+	
+	protected String forModelSaveDirectly(Table table, Map<String, Object> attrs, List<Object> paras) {
+		StringBuilder sql = new StringBuilder();
+		forModelSave(table, attrs, sql, paras);
+		return sql.toString();
+	}
+	
+	/**
+	 * 以列名作为参数值调用 forModelSave(...)、forModelUpdate(...)，得到的 paras 即为参数列名顺序
+	 */
+	private Map<String, Object> buildShapeAttrs(Table table, BitSet columns) {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+		for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+			String colName = table.getColumnName(i);
+			ret.put(colName, colName);
+		}
+		return ret;
+	}
+	
 	/**
 	 * 指示 Generator、ModelBuilder、RecordBuilder 是否保持住 Byte、Short 类型
 	 */
@@ -134,6 +246,15 @@ public abstract class Dialect {
 		return recordBuilder.build(config, rs);
 	}
 	
+	@SuppressWarnings("rawtypes")
+	public <T> long eachModel(ResultSet rs, Class<? extends Model> modelClass, IRowConsumer<T> consumer) throws SQLException, InstantiationException, IllegalAccessException {
+		return modelBuilder.each(rs, modelClass, consumer);
+	}
+	
+	public long eachRecord(Config config, ResultSet rs, IRowConsumer<Record> consumer) throws SQLException {
+		return recordBuilder.each(config, rs, consumer);
+	}
+	
 	/**
 	 * 用于获取 Model.save() 以后自动生成的主键值，可通过覆盖此方法实现更精细的控制
 	 * 目前只有 PostgreSqlDialect，覆盖过此方法
@@ -194,6 +315,72 @@ public abstract class Dialect {
 		rs.close();
 	}
 	
+	/**
+	 * 多行 values 批量插入时单条 sql 允许的最大参数个数，返回 0 表示不支持多行 values 插入，
+	 * 目前 MysqlDialect、PostgreSqlDialect、Sqlite3Dialect 覆盖了此方法
+	 */
+	public int getMaxParameterCount() {
+		return 0;
+	}
+	
+	public boolean isMultiValuesInsertSupported() {
+		return getMaxParameterCount() > 0;
+	}
+	
+	/**
+	 * 将单行 insert 语句 "insert into t(a, b) values(?, ?)" 扩展为 rows 行：
+	 * "insert into t(a, b) values(?, ?), (?, ?), ..."
+	 */
+	public String forMultiValuesInsert(String singleRowSql, int rows) {
+		int index = singleRowSql.lastIndexOf("values(");
+		if (index == -1) {
+			throw new IllegalArgumentException("Can not find \"values(\" in sql: " + singleRowSql);
+		}
+		String group = singleRowSql.substring(index + "values".length());
+		StringBuilder ret = new StringBuilder(singleRowSql.length() + (group.length() + 2) * (rows - 1));
+		ret.append(singleRowSql);
+		for (int i=1; i<rows; i++) {
+			ret.append(", ").append(group);
+		}
+		return ret.toString();
+	}
+	
+	/**
+	 * 多行 values 批量插入后按顺序为 list 中 [from, to) 范围内的 Model 或 Record 填充自增主键
+	 */
+	public void getBatchGeneratedKeys(PreparedStatement pst, List<?> list, int from, int to, String pKey, Class<?> colType) throws SQLException {
+		ResultSet rs = pst.getGeneratedKeys();
+		try {
+			for (int i=from; i<to && rs.next(); i++) {
+				setGeneratedKey(list.get(i), pKey, colType, getGeneratedKey(rs, pKey));
+			}
+		} finally {
+			rs.close();
+		}
+	}
+	
+	protected Object getGeneratedKey(ResultSet rs, String pKey) throws SQLException {
+		return rs.getObject(1);
+	}
+	
+	protected void setGeneratedKey(Object modelOrRecord, String pKey, Class<?> colType, Object value) {
+		if (value instanceof Number && colType != null) {
+			Number n = (Number)value;
+			if (colType == Integer.class || colType == int.class) {
+				value = n.intValue();
+			} else if (colType == Long.class || colType == long.class) {
+				value = n.longValue();
+			} else if (colType == BigInteger.class && !(value instanceof BigInteger)) {
+				value = BigInteger.valueOf(n.longValue());
+			}
+		}
+		if (modelOrRecord instanceof Model) {
+			((Model<?>)modelOrRecord).set(pKey, value);
+		} else {
+			((Record)modelOrRecord).set(pKey, value);
+		}
+	}
+	
 	public boolean isOracle() {
 		return false;
 	}
@@ -215,6 +402,39 @@ public abstract class Dialect {
 		throw new RuntimeException("You should implements this method in " + getClass().getName());
 	}
 	
+	/**
+	 * 为 DbPro.each(...)、Model.each(...) 创建流式查询所用的 PreparedStatement，
+	 * 使用只进只读游标，驱动按 fetchSize 分批从数据库拉取数据
+	 */
+	public PreparedStatement prepareStreamingStatement(Connection conn, String sql, int fetchSize) throws SQLException {
+		PreparedStatement pst = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		pst.setFetchSize(getStreamingFetchSize(fetchSize));
+		return pst;
+	}
+	
+	/**
+	 * 流式查询实际传给驱动的 fetchSize，不同数据库驱动开启游标的方式不同，可在子类中覆盖
+	 */
+	public int getStreamingFetchSize(int fetchSize) {
+		return fetchSize;
+	}
+	
+	/**
+	 * 驱动是否只在非 autoCommit 状态下才使用游标分批读取，例如 PostgreSQL，
+	 * 返回 true 时 DbPro.each(...) 会在 autoCommit 连接上临时关闭 autoCommit
+	 */
+	public boolean isStreamingRequireTransaction() {
+		return false;
+	}
+	
+	/**
+	 * 用于 KeysetPage.CountMode.ESTIMATED，从执行计划中取得 "select * " + sqlExceptSelect 的估算行数，
+	 * 返回 -1 表示不支持估算，目前 MysqlDialect 与 PostgreSqlDialect 覆盖了此方法
+	 */
+	public long estimateRowCount(Connection conn, String sqlExceptSelect, Object... paras) throws SQLException {
+		return -1;
+	}
+	
 	public void fillStatement(PreparedStatement pst, List<Object> paras) throws SQLException {
 		for (int i=0, size=paras.size(); i<size; i++) {
 			pst.setObject(i + 1, paras.get(i));
@@ -16,6 +16,10 @@
 
 package com.jfinal.plugin.activerecord.dialect;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -199,4 +203,35 @@ public class MysqlDialect extends Dialect {
 		findSql.append(" limit ").append(offset).append(", ").append(pageSize);	// limit can use one or two '?' to pass paras
 		return findSql.toString();
 	}
+	
+	/**
+	 * MySQL 驱动默认一次性读取全部结果集，只有 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取
+	 * 注意：流式读取未结束前，同一连接上不能执行其它 sql
+	 */
+	public int getStreamingFetchSize(int fetchSize) {
+		return Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * MySQL 协议中参数个数为 2 字节无符号整数
+	 */
+	public int getMaxParameterCount() {
+		return 65535;
+	}
+	
+	/**
+	 * 取 explain 结果第一行（驱动表）的 rows 列作为估算行数
+	 */
+	public long estimateRowCount(Connection conn, String sqlExceptSelect, Object... paras) throws SQLException {
+		PreparedStatement pst = conn.prepareStatement("explain select * " + sqlExceptSelect);
+		ResultSet rs = null;
+		try {
+			fillStatement(pst, paras);
+			rs = pst.executeQuery();
+			return rs.next() ? rs.getLong("rows") : -1;
+		} finally {
+			if (rs != null) rs.close();
+			pst.close();
+		}
+	}
 }
@@ -60,6 +60,19 @@ public class OracleDialect extends Dialect {
 		sql.append(temp.toString()).append(')');
 	}
 	
+	/**
+	 * 主键值为 "xxx.nextval" 时该值直接拼接在 sql 中，此时 sql 随值变化，不使用缓存
+	 */
+	public String getModelSaveSql(Table table, Map<String, Object> attrs, List<Object> paras) {
+		for (String pKey : table.getPrimaryKey()) {
+			Object value = attrs.get(pKey);
+			if (value instanceof String && ((String)value).endsWith(".nextval")) {
+				return forModelSaveDirectly(table, attrs, paras);
+			}
+		}
+		return super.getModelSaveSql(table, attrs, paras);
+	}
+	
 	public String forModelDeleteById(Table table) {
 		String[] pKeys = table.getPrimaryKey();
 		StringBuilder sql = new StringBuilder(45);
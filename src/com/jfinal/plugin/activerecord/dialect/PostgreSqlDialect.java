@@ -17,6 +17,7 @@
 package com.jfinal.plugin.activerecord.dialect;
 
 import java.math.BigInteger;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -202,6 +203,54 @@ public class PostgreSqlDialect extends Dialect {
 		return findSql.toString();
 	}
 	
+	/**
+	 * PostgreSQL 驱动只在 autoCommit 为 false 时才按 fetchSize 使用游标分批读取
+	 */
+	public boolean isStreamingRequireTransaction() {
+		return true;
+	}
+	
+	/**
+	 * PostgreSQL 驱动中参数个数为 2 字节有符号整数
+	 */
+	public int getMaxParameterCount() {
+		return 32767;
+	}
+	
+	protected Object getGeneratedKey(ResultSet rs, String pKey) throws SQLException {
+		return rs.getObject(pKey);
+	}
+	
+	/**
+	 * 取 explain 输出第一行 "(cost=... rows=N width=...)" 中的 N 作为估算行数
+	 */
+	public long estimateRowCount(Connection conn, String sqlExceptSelect, Object... paras) throws SQLException {
+		PreparedStatement pst = conn.prepareStatement("explain select * " + sqlExceptSelect);
+		ResultSet rs = null;
+		try {
+			fillStatement(pst, paras);
+			rs = pst.executeQuery();
+			if (rs.next()) {
+				String plan = rs.getString(1);
+				int start = plan.indexOf(" rows=");
+				if (start != -1) {
+					start += " rows=".length();
+					int end = start;
+					while (end < plan.length() && Character.isDigit(plan.charAt(end))) {
+						end++;
+					}
+					if (end > start) {
+						return Long.parseLong(plan.substring(start, end));
+					}
+				}
+			}
+			return -1;
+		} finally {
+			if (rs != null) rs.close();
+			pst.close();
+		}
+	}
+	
 	public void fillStatement(PreparedStatement pst, List<Object> paras) throws SQLException {
 		fillStatementHandleDateType(pst, paras);
 	}
@@ -17,6 +17,7 @@
 package com.jfinal.plugin.activerecord.dialect;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
@@ -184,6 +185,30 @@ public class Sqlite3Dialect extends Dialect {
 		return findSql.toString();
 	}
 	
+	/**
+	 * 兼容 SQLITE_MAX_VARIABLE_NUMBER 在 3.32.0 之前的默认值
+	 */
+	public int getMaxParameterCount() {
+		return 999;
+	}
+	
+	/**
+	 * sqlite 驱动只返回最后一行的 rowid，单条 insert 语句写入的 rowid 连续，由此倒推前面各行的 rowid
+	 */
+	public void getBatchGeneratedKeys(PreparedStatement pst, List<?> list, int from, int to, String pKey, Class<?> colType) throws SQLException {
+		ResultSet rs = pst.getGeneratedKeys();
+		try {
+			if (rs.next()) {
+				long last = rs.getLong(1);
+				for (int i=from; i<to; i++) {
+					setGeneratedKey(list.get(i), pKey, colType, last - (to - 1 - i));
+				}
+			}
+		} finally {
+			rs.close();
+		}
+	}
+	
 	public void fillStatement(PreparedStatement pst, List<Object> paras) throws SQLException {
 		fillStatementHandleDateType(pst, paras);
 	}
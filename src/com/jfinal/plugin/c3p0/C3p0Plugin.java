@@ -20,18 +20,20 @@ import java.beans.PropertyVetoException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Properties;
 import javax.sql.DataSource;
 import com.jfinal.kit.LogKit;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.IPlugin;
 import com.jfinal.plugin.activerecord.IDataSourceProvider;
+import com.jfinal.plugin.activerecord.IPoolMetrics;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 /**
  * The c3p0 datasource plugin.
  */
-public class C3p0Plugin implements IPlugin, IDataSourceProvider {
+public class C3p0Plugin implements IPlugin, IDataSourceProvider, IPoolMetrics {
 	
 	private String jdbcUrl;
 	private String user;
@@ -183,5 +185,48 @@ public class C3p0Plugin implements IPlugin, IDataSourceProvider {
 		isStarted = false;
 		return true;
 	}
+	
+	// --------- IPoolMetrics
+	
+	public int getActiveConnections() {
+		ComboPooledDataSource ds = dataSource;
+		try {
+			return ds != null ? ds.getNumBusyConnectionsDefaultUser() : -1;
+		} catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	public int getIdleConnections() {
+		ComboPooledDataSource ds = dataSource;
+		try {
+			return ds != null ? ds.getNumIdleConnectionsDefaultUser() : -1;
+		} catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	public int getTotalConnections() {
+		ComboPooledDataSource ds = dataSource;
+		try {
+			return ds != null ? ds.getNumConnectionsDefaultUser() : -1;
+		} catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	public int getPendingThreads() {
+		ComboPooledDataSource ds = dataSource;
+		try {
+			return ds != null ? ds.getNumThreadsAwaitingCheckoutDefaultUser() : -1;
+		} catch (SQLException e) {
+			return -1;
+		}
+	}
+	
+	public int getMaxPoolSize() {
+		ComboPooledDataSource ds = dataSource;
+		return ds != null ? ds.getMaxPoolSize() : maxPoolSize;
+	}
 }
 
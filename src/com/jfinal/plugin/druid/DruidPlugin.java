@@ -25,11 +25,12 @@ import com.alibaba.druid.pool.DruidDataSource;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.IPlugin;
 import com.jfinal.plugin.activerecord.IDataSourceProvider;
+import com.jfinal.plugin.activerecord.IPoolMetrics;
 
 /**
  * DruidPlugin.
  */
-public class DruidPlugin implements IPlugin, IDataSourceProvider {
+public class DruidPlugin implements IPlugin, IDataSourceProvider, IPoolMetrics {
 	//连接池的名称
 	private String name = null;
 	
@@ -273,6 +274,32 @@ public class DruidPlugin implements IPlugin, IDataSourceProvider {
 		return ds;
 	}
 	
+	// --------- IPoolMetrics
+	
+	public int getActiveConnections() {
+		DruidDataSource ds = this.ds;
+		return ds != null ? ds.getActiveCount() : -1;
+	}
+	
+	public int getIdleConnections() {
+		DruidDataSource ds = this.ds;
+		return ds != null ? ds.getPoolingCount() : -1;
+	}
+	
+	public int getTotalConnections() {
+		DruidDataSource ds = this.ds;
+		return ds != null ? ds.getActiveCount() + ds.getPoolingCount() : -1;
+	}
+	
+	public int getPendingThreads() {
+		DruidDataSource ds = this.ds;
+		return ds != null ? ds.getWaitThreadCount() : -1;
+	}
+	
+	public int getMaxPoolSize() {
+		return maxActive;
+	}
+	
 	public DruidPlugin set(int initialSize, int minIdle, int maxActive) {
 		this.initialSize = initialSize;
 		this.minIdle = minIdle;
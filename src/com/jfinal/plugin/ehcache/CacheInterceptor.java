@@ -22,7 +22,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.servlet.http.HttpServletRequest;
@@ -33,35 +32,42 @@ import com.jfinal.render.Render;
 
 /**
  * CacheInterceptor.
+ * <p>
+ * Cache miss is loaded by only one thread per cacheName + cacheKey, locks are striped
+ * and bounded. Stale-while-revalidate mode can be enabled by CacheRefresh annotation.
  */
 public class CacheInterceptor implements Interceptor {
 	
 	private static final String renderKey = "_renderKey";
-	private static ConcurrentHashMap<String, ReentrantLock> lockMap = new ConcurrentHashMap<String, ReentrantLock>();
+	private static final String cacheTimeKey = "_cacheTime";
 	
-	private ReentrantLock getLock(String key) {
-		ReentrantLock lock = lockMap.get(key);
-		if (lock != null)
-			return lock;
-		
-		lock = new ReentrantLock();
-		ReentrantLock previousLock = lockMap.putIfAbsent(key, lock);
-		return previousLock == null ? lock : previousLock;
+	private static final int LOCK_STRIPES = 1024;	// must be power of 2
+	private static final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+	static {
+		for (int i=0; i<LOCK_STRIPES; i++)
+			locks[i] = new ReentrantLock();
+	}
+	
+	private ReentrantLock getLock(String cacheName, String cacheKey) {
+		int h = cacheName.hashCode() * 31 + cacheKey.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (LOCK_STRIPES - 1)];
 	}
 	
 	final public void intercept(Invocation inv) {
 		Controller controller = inv.getController();
 		String cacheName = buildCacheName(inv, controller);
 		String cacheKey = buildCacheKey(inv, controller);
+		int refreshSeconds = getRefreshSeconds(inv, controller);
 		Map<String, Object> cacheData = CacheKit.get(cacheName, cacheKey);
 		if (cacheData == null) {
-			Lock lock = getLock(cacheName);
+			Lock lock = getLock(cacheName, cacheKey);
 			lock.lock();					// prevent cache snowslide
 			try {
 				cacheData = CacheKit.get(cacheName, cacheKey);
 				if (cacheData == null) {
 					inv.invoke();
-					cacheAction(cacheName, cacheKey, controller);
+					cacheAction(cacheName, cacheKey, controller, refreshSeconds);
 					return ;
 				}
 			}
@@ -69,10 +75,44 @@ public class CacheInterceptor implements Interceptor {
 				lock.unlock();
 			}
 		}
+		else if (isStale(cacheData, refreshSeconds)) {
+			Lock lock = getLock(cacheName, cacheKey);
+			if (lock.tryLock()) {			// only one thread refresh, others use the stale data
+				try {
+					Map<String, Object> latest = CacheKit.get(cacheName, cacheKey);
+					if (latest == null || isStale(latest, refreshSeconds)) {
+						inv.invoke();
+						cacheAction(cacheName, cacheKey, controller, refreshSeconds);
+						return ;
+					}
+					cacheData = latest;
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
 		
 		useCacheDataAndRender(cacheData, controller);
 	}
 	
+	private boolean isStale(Map<String, Object> cacheData, int refreshSeconds) {
+		if (refreshSeconds <= 0)
+			return false;
+		Long cacheTime = (Long)cacheData.get(cacheTimeKey);
+		return cacheTime != null && System.currentTimeMillis() - cacheTime > refreshSeconds * 1000L;
+	}
+	
+	/**
+	 * Return the value of CacheRefresh annotation, 0 means stale-while-revalidate mode is disabled
+	 */
+	protected int getRefreshSeconds(Invocation inv, Controller controller) {
+		CacheRefresh cacheRefresh = inv.getMethod().getAnnotation(CacheRefresh.class);
+		if (cacheRefresh == null)
+			cacheRefresh = controller.getClass().getAnnotation(CacheRefresh.class);
+		return cacheRefresh != null ? cacheRefresh.value() : 0;
+	}
+	
 	// TODO 考虑与 EvictInterceptor 一样强制使用  @CacheName
 	protected String buildCacheName(Invocation inv, Controller controller) {
 		CacheName cacheName = inv.getMethod().getAnnotation(CacheName.class);
@@ -101,6 +141,21 @@ public class CacheInterceptor implements Interceptor {
 		return new RenderInfo(render);
 	}
 	
+	private void cacheAction(String cacheName, String cacheKey, Controller controller, int refreshSeconds) {
+		if (refreshSeconds <= 0) {
+			cacheAction(cacheName, cacheKey, controller);
+			return ;
+		}
+		
+		HttpServletRequest request = controller.getRequest();
+		request.setAttribute(cacheTimeKey, System.currentTimeMillis());
+		try {
+			cacheAction(cacheName, cacheKey, controller);
+		} finally {
+			request.removeAttribute(cacheTimeKey);
+		}
+	}
+	
 	protected void cacheAction(String cacheName, String cacheKey, Controller controller) {
 		HttpServletRequest request = controller.getRequest();
 		Map<String, Object> cacheData = new HashMap<String, Object>();
@@ -124,6 +179,7 @@ public class CacheInterceptor implements Interceptor {
 			request.setAttribute(entry.getKey(), entry.getValue());
 		}
 		request.removeAttribute(renderKey);
+		request.removeAttribute(cacheTimeKey);
 		
 		RenderInfo renderInfo = (RenderInfo)cacheData.get(renderKey);
 		if (renderInfo != null) {
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.ehcache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * CacheRefresh enable stale-while-revalidate mode of CacheInterceptor.
+ * <p>
+ * After value seconds the cached data is stale. The first request that finds it stale
+ * invokes the action again to refresh the cache, the other concurrent requests keep
+ * using the stale data without waiting.<br>
+ * The cache config of ehcache should keep the element alive longer than value seconds.
+ * <p>
+ * The order of CacheInterceptor searching for CacheRefresh annotation is the same as CacheName.
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface CacheRefresh {
+	int value();
+}
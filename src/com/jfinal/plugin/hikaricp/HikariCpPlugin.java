@@ -15,20 +15,26 @@
  */
 package com.jfinal.plugin.hikaricp;
 
+import java.lang.management.ManagementFactory;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.IPlugin;
 import com.jfinal.plugin.activerecord.IDataSourceProvider;
+import com.jfinal.plugin.activerecord.IPoolMetrics;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPoolMXBean;
 
 /** 
  * Fast, simple, reliable. HikariCP is a "zero-overhead" production ready JDBC connection pool. 
  * At roughly 130Kb, the library is very light 
  * @ClassName: HikaricpPlugin  
  */
-public class HikariCpPlugin implements IPlugin, IDataSourceProvider{
+public class HikariCpPlugin implements IPlugin, IDataSourceProvider, IPoolMetrics {
 	/**
 	 * jdbc Url
 	 */
@@ -133,11 +139,19 @@ public class HikariCpPlugin implements IPlugin, IDataSourceProvider{
 	 */
 	private long leakDetectionThreshold = 0;
 	
+	/**
+	 * register the pool MBean, required by IPoolMetrics
+	 * Default: true
+	 */
+	private boolean registerMbeans = true;
+	
 	/**
 	 * Hikari DataSource
 	 */
 	private HikariDataSource ds;
 	
+	private volatile HikariPoolMXBean poolMXBean;
+	
 	public HikariCpPlugin(String jdbcUrl, String username, String password) {
 		this.jdbcUrl = jdbcUrl;
 		this.username = username;
@@ -183,6 +197,8 @@ public class HikariCpPlugin implements IPlugin, IDataSourceProvider{
 			config.setTransactionIsolation(transactionIsolation);
 		}
 
+		config.setRegisterMbeans(registerMbeans);
+		
 		if(this.leakDetectionThreshold != 0){
 			config.setLeakDetectionThreshold(leakDetectionThreshold);
 		}
@@ -227,8 +243,51 @@ public class HikariCpPlugin implements IPlugin, IDataSourceProvider{
 	public boolean stop() {
 		if (ds != null)
 			ds.close();
+		poolMXBean = null;
 		return true;
 	}
+	
+	// --------- IPoolMetrics
+	
+	private HikariPoolMXBean getPoolMXBean() {
+		HikariPoolMXBean ret = poolMXBean;
+		if (ret == null && ds != null && registerMbeans) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName("com.zaxxer.hikari:type=Pool (" + ds.getPoolName() + ")");
+				if (server.isRegistered(name)) {
+					ret = poolMXBean = JMX.newMXBeanProxy(server, name, HikariPoolMXBean.class);
+				}
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		return ret;
+	}
+	
+	public int getActiveConnections() {
+		HikariPoolMXBean pool = getPoolMXBean();
+		return pool != null ? pool.getActiveConnections() : -1;
+	}
+	
+	public int getIdleConnections() {
+		HikariPoolMXBean pool = getPoolMXBean();
+		return pool != null ? pool.getIdleConnections() : -1;
+	}
+	
+	public int getTotalConnections() {
+		HikariPoolMXBean pool = getPoolMXBean();
+		return pool != null ? pool.getTotalConnections() : -1;
+	}
+	
+	public int getPendingThreads() {
+		HikariPoolMXBean pool = getPoolMXBean();
+		return pool != null ? pool.getThreadsAwaitingConnection() : -1;
+	}
+	
+	public int getMaxPoolSize() {
+		return maximumPoolSize;
+	}
 
 	/**  
 	 * 驱动类名
@@ -319,6 +378,14 @@ public class HikariCpPlugin implements IPlugin, IDataSourceProvider{
 		this.poolName = poolName;
 	}
 
+	/**  
+	 * 是否注册连接池 MBean，默认 true，关闭后 IPoolMetrics 的各项统计返回 -1
+	 * @param registerMbeans  
+	 */
+	public final void setRegisterMbeans(boolean registerMbeans) {
+		this.registerMbeans = registerMbeans;
+	}
+
 	/**  
 	 * 新连接生成后，添加到连接池前执行的初始化sql
 	 * @param connectionInitSql    
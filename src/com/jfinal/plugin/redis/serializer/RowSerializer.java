@@ -0,0 +1,631 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.redis.serializer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import com.jfinal.kit.LogKit;
+import com.jfinal.plugin.activerecord.Model;
+import com.jfinal.plugin.activerecord.Record;
+import com.jfinal.plugin.activerecord.Table;
+import com.jfinal.plugin.activerecord.TableMapping;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * RowSerializer.
+ * 针对 Model、Record 以及 RedisDb 存放的 Map 属性副本的紧凑二进制序列化：
+ * <pre>
+ * redisPlugin.setSerializer(RowSerializer.me);
+ * </pre>
+ *
+ * 1: 每个 Table 的列名单独构建字典，写入时使用字典下标代替列名，不在字典中的列名直接写入字符串，
+ *    Model 使用其映射的 Table，Map 与 Record 使用列名集合完全相同的 Table，找不到时不使用字典
+ * 2: 列值使用 1 字节类型标记 + 紧凑编码，整数使用变长编码，不支持的类型交给 FstSerializer
+ * 3: 负载中带有表名与该表的列名 hash，本节点没有相同的表结构时读取结果当作未命中返回 null，
+ *    某个表增加列只影响该表的缓存数据，不使用字典写入的数据在任何节点均可读取
+ * 4: readRow(bytes, columns) 读取时直接跳过未被选择的列，不做解码
+ * 5: 非本序列化器生成的数据（例如迁移前 FstSerializer 写入的数据）交给 FstSerializer 读取
+ */
+public class RowSerializer implements ISerializer {
+
+	public static final RowSerializer me = new RowSerializer();
+
+	private static final byte MAGIC = (byte)0xB7;
+
+	// 顶层数据类型
+	private static final byte KIND_MAP = 'M';
+	private static final byte KIND_RECORD = 'R';
+	private static final byte KIND_MODEL = 'D';
+	private static final byte KIND_VALUE = 'V';
+	private static final byte KIND_FST = 'F';
+
+	// 列值类型
+	private static final byte T_NULL = 0;
+	private static final byte T_STRING = 1;
+	private static final byte T_INT = 2;
+	private static final byte T_LONG = 3;
+	private static final byte T_DOUBLE = 4;
+	private static final byte T_FLOAT = 5;
+	private static final byte T_TRUE = 6;
+	private static final byte T_FALSE = 7;
+	private static final byte T_BIG_DECIMAL = 8;
+	private static final byte T_BIG_INTEGER = 9;
+	private static final byte T_DATE = 10;
+	private static final byte T_SQL_DATE = 11;
+	private static final byte T_TIME = 12;
+	private static final byte T_TIMESTAMP = 13;
+	private static final byte T_BYTES = 14;
+	private static final byte T_SHORT = 15;
+	private static final byte T_BYTE = 16;
+	private static final byte T_FST = 17;
+
+	private static final int MAX_POOLED_BUFFER = 64 * 1024;
+
+	private final ThreadLocal<Output> outputPool = new ThreadLocal<Output>() {
+		protected Output initialValue() {
+			return new Output();
+		}
+	};
+
+	private volatile Dictionaries dictionaries;
+
+	// 已经输出过警告日志的字典，避免每次读取都输出日志
+	private final Set<String> warnedDictionaries = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public byte[] keyToBytes(String key) {
+		return SafeEncoder.encode(key);
+	}
+
+	public String keyFromBytes(byte[] bytes) {
+		return SafeEncoder.encode(bytes);
+	}
+
+	public byte[] fieldToBytes(Object field) {
+		return valueToBytes(field);
+	}
+
+	public Object fieldFromBytes(byte[] bytes) {
+		return valueFromBytes(bytes);
+	}
+
+	@SuppressWarnings("unchecked")
+	public byte[] valueToBytes(Object value) {
+		if (value == null) {
+			return FstSerializer.me.valueToBytes(null);
+		}
+
+		Output out = outputPool.get();
+		out.reset();
+		out.write(MAGIC);
+		if (value instanceof Model) {
+			Model<?> model = (Model<?>)value;
+			out.write(KIND_MODEL);
+			out.writeString(model.getClass().getName());
+			writeColumns(out, getDictionaries().byModelClass.get(model.getClass()), model._getAttrsEntrySet());
+		}
+		else if (value instanceof Record) {
+			Map<String, Object> columns = ((Record)value).getColumns();
+			out.write(KIND_RECORD);
+			writeColumns(out, getDictionaries().byColumns.get(columns.keySet()), columns.entrySet());
+		}
+		else if (value instanceof HashMap && isStringKeyMap((Map<?, ?>)value)) {
+			Map<String, Object> map = (Map<String, Object>)value;
+			out.write(KIND_MAP);
+			writeColumns(out, getDictionaries().byColumns.get(map.keySet()), map.entrySet());
+		}
+		else if (isSimpleValue(value)) {
+			out.write(KIND_VALUE);
+			writeValue(out, value);
+		}
+		else {
+			out.write(KIND_FST);
+			out.writeBytes(FstSerializer.me.valueToBytes(value));
+		}
+		return out.toByteArray();
+	}
+
+	public Object valueFromBytes(byte[] bytes) {
+		return read(bytes, null);
+	}
+
+	/**
+	 * 读取 Map、Record、Model 数据时只解码 columns 中的列，其余列直接跳过
+	 * @param columns 需要的列，为 null 时读取所有列
+	 */
+	public Object readRow(byte[] bytes, Set<String> columns) {
+		return read(bytes, columns);
+	}
+
+	private Object read(byte[] bytes, Set<String> columns) {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		if (bytes[0] != MAGIC || bytes.length < 2) {
+			return FstSerializer.me.valueFromBytes(bytes);
+		}
+
+		Input in = new Input(bytes, 2);
+		switch (bytes[1]) {
+		case KIND_MAP:
+			return readColumns(in, columns, new HashMap<String, Object>());
+		case KIND_RECORD:
+			Map<String, Object> recordColumns = readColumns(in, columns, new HashMap<String, Object>());
+			return recordColumns != null ? new Record().setColumns(recordColumns) : null;
+		case KIND_MODEL:
+			return readModel(in, columns);
+		case KIND_VALUE:
+			return readValue(in);
+		case KIND_FST:
+			return FstSerializer.me.valueFromBytes(in.readBytes());
+		default:
+			return FstSerializer.me.valueFromBytes(bytes);
+		}
+	}
+
+	private Object readModel(Input in, Set<String> columns) {
+		String className = in.readString();
+		Model<?> model;
+		try {
+			model = (Model<?>)Class.forName(className).newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException("Can not create model: " + className, e);
+		}
+
+		Map<String, Object> attrs = readColumns(in, columns, new HashMap<String, Object>());
+		if (attrs == null) {
+			return null;
+		}
+		for (Entry<String, Object> e : attrs.entrySet()) {
+			model.put(e.getKey(), e.getValue());
+		}
+		return model;
+	}
+
+	// ---------
+
+	/**
+	 * @param dict 为 null 时不使用字典，所有列名直接写入字符串
+	 */
+	private void writeColumns(Output out, Dictionary dict, Set<Entry<String, Object>> entries) {
+		if (dict != null) {
+			out.writeString(dict.tableName);
+			out.writeInt(dict.hash);
+		} else {
+			out.writeString("");
+		}
+
+		out.writeVarInt(entries.size());
+		for (Entry<String, Object> e : entries) {
+			Integer index = dict != null ? dict.indexMap.get(e.getKey()) : null;
+			if (index != null) {
+				out.writeVarInt(index + 1);
+			} else {
+				out.writeVarInt(0);
+				out.writeString(e.getKey());
+			}
+			writeValue(out, e.getValue());
+		}
+	}
+
+	private Map<String, Object> readColumns(Input in, Set<String> columns, Map<String, Object> result) {
+		Dictionary dict = null;
+		String tableName = in.readString();
+		if (tableName.length() > 0) {
+			String id = Dictionary.id(tableName, in.readInt());
+			dict = getDictionaries().byId.get(id);
+			if (dict == null) {
+				if (warnedDictionaries.add(id)) {
+					LogKit.warn("RowSerializer can not find column dictionary " + id + ", the cached data of this table structure is ignored");
+				}
+				return null;
+			}
+		}
+
+		int size = in.readVarInt();
+		for (int i = 0; i < size; i++) {
+			int code = in.readVarInt();
+			String name = code == 0 ? in.readString() : dict.names[code - 1];
+			if (columns == null || columns.contains(name)) {
+				result.put(name, readValue(in));
+			} else {
+				skipValue(in);
+			}
+		}
+		return result;
+	}
+
+	private void writeValue(Output out, Object value) {
+		if (value == null) {
+			out.write(T_NULL);
+		} else if (value instanceof String) {
+			out.write(T_STRING);
+			out.writeString((String)value);
+		} else if (value instanceof Integer) {
+			out.write(T_INT);
+			out.writeVarLong((Integer)value);
+		} else if (value instanceof Long) {
+			out.write(T_LONG);
+			out.writeVarLong((Long)value);
+		} else if (value instanceof java.sql.Timestamp) {
+			java.sql.Timestamp ts = (java.sql.Timestamp)value;
+			out.write(T_TIMESTAMP);
+			out.writeVarLong(ts.getTime());
+			out.writeVarInt(ts.getNanos());
+		} else if (value instanceof java.sql.Date) {
+			out.write(T_SQL_DATE);
+			out.writeVarLong(((java.util.Date)value).getTime());
+		} else if (value instanceof java.sql.Time) {
+			out.write(T_TIME);
+			out.writeVarLong(((java.util.Date)value).getTime());
+		} else if (value.getClass() == java.util.Date.class) {
+			out.write(T_DATE);
+			out.writeVarLong(((java.util.Date)value).getTime());
+		} else if (value instanceof Boolean) {
+			out.write((Boolean)value ? T_TRUE : T_FALSE);
+		} else if (value instanceof BigDecimal) {
+			out.write(T_BIG_DECIMAL);
+			out.writeString(value.toString());
+		} else if (value instanceof Double) {
+			out.write(T_DOUBLE);
+			out.writeLong(Double.doubleToLongBits((Double)value));
+		} else if (value instanceof Float) {
+			out.write(T_FLOAT);
+			out.writeInt(Float.floatToIntBits((Float)value));
+		} else if (value instanceof BigInteger) {
+			out.write(T_BIG_INTEGER);
+			out.writeBytes(((BigInteger)value).toByteArray());
+		} else if (value instanceof byte[]) {
+			out.write(T_BYTES);
+			out.writeBytes((byte[])value);
+		} else if (value instanceof Short) {
+			out.write(T_SHORT);
+			out.writeVarLong((Short)value);
+		} else if (value instanceof Byte) {
+			out.write(T_BYTE);
+			out.write((Byte)value);
+		} else {
+			out.write(T_FST);
+			out.writeBytes(FstSerializer.me.valueToBytes(value));
+		}
+	}
+
+	private Object readValue(Input in) {
+		byte type = in.read();
+		switch (type) {
+		case T_NULL:
+			return null;
+		case T_STRING:
+			return in.readString();
+		case T_INT:
+			return (int)in.readVarLong();
+		case T_LONG:
+			return in.readVarLong();
+		case T_DOUBLE:
+			return Double.longBitsToDouble(in.readLong());
+		case T_FLOAT:
+			return Float.intBitsToFloat(in.readInt());
+		case T_TRUE:
+			return Boolean.TRUE;
+		case T_FALSE:
+			return Boolean.FALSE;
+		case T_BIG_DECIMAL:
+			return new BigDecimal(in.readString());
+		case T_BIG_INTEGER:
+			return new BigInteger(in.readBytes());
+		case T_DATE:
+			return new java.util.Date(in.readVarLong());
+		case T_SQL_DATE:
+			return new java.sql.Date(in.readVarLong());
+		case T_TIME:
+			return new java.sql.Time(in.readVarLong());
+		case T_TIMESTAMP:
+			java.sql.Timestamp ts = new java.sql.Timestamp(in.readVarLong());
+			ts.setNanos(in.readVarInt());
+			return ts;
+		case T_BYTES:
+			return in.readBytes();
+		case T_SHORT:
+			return (short)in.readVarLong();
+		case T_BYTE:
+			return in.read();
+		case T_FST:
+			return FstSerializer.me.valueFromBytes(in.readBytes());
+		default:
+			throw new IllegalStateException("Unknown value type: " + type);
+		}
+	}
+
+	private void skipValue(Input in) {
+		byte type = in.read();
+		switch (type) {
+		case T_NULL:
+		case T_TRUE:
+		case T_FALSE:
+			return ;
+		case T_INT:
+		case T_LONG:
+		case T_SHORT:
+		case T_DATE:
+		case T_SQL_DATE:
+		case T_TIME:
+			in.readVarLong();
+			return ;
+		case T_TIMESTAMP:
+			in.readVarLong();
+			in.readVarInt();
+			return ;
+		case T_DOUBLE:
+			in.skip(8);
+			return ;
+		case T_FLOAT:
+			in.skip(4);
+			return ;
+		case T_BYTE:
+			in.skip(1);
+			return ;
+		case T_STRING:
+		case T_BIG_DECIMAL:
+		case T_BIG_INTEGER:
+		case T_BYTES:
+		case T_FST:
+			in.skip(in.readVarInt());
+			return ;
+		default:
+			throw new IllegalStateException("Unknown value type: " + type);
+		}
+	}
+
+	private static boolean isSimpleValue(Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean
+			|| value instanceof java.util.Date || value instanceof byte[];
+	}
+
+	private static boolean isStringKeyMap(Map<?, ?> map) {
+		for (Object key : map.keySet()) {
+			if (!(key instanceof String)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ---------
+
+	private Dictionaries getDictionaries() {
+		Map<Class<? extends Model<?>>, Table> mappings = TableMapping.me().getMappings();
+		Dictionaries ret = dictionaries;
+		if (ret == null || ret.tableCount != mappings.size()) {
+			ret = new Dictionaries(mappings);
+			dictionaries = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * TableMapping 中每个 Table 的字典，TableMapping 变化时整体重建，
+	 * 字典内容只由表名与列名决定，重建不影响已写入的数据
+	 */
+	private static class Dictionaries {
+
+		final int tableCount;
+		final Map<Class<?>, Dictionary> byModelClass = new HashMap<Class<?>, Dictionary>();
+		final Map<String, Dictionary> byId = new HashMap<String, Dictionary>();
+		final Map<Set<String>, Dictionary> byColumns = new HashMap<Set<String>, Dictionary>();
+
+		Dictionaries(Map<Class<? extends Model<?>>, Table> mappings) {
+			List<Entry<Class<? extends Model<?>>, Table>> entries = new ArrayList<Entry<Class<? extends Model<?>>, Table>>(mappings.entrySet());
+			this.tableCount = entries.size();
+
+			for (Entry<Class<? extends Model<?>>, Table> e : entries) {
+
+				Dictionary dict = new Dictionary(e.getValue());
+				Dictionary existing = byId.get(dict.id);
+				if (existing != null) {
+					dict = existing;
+				} else {
+					byId.put(dict.id, dict);
+				}
+				byModelClass.put(e.getKey(), dict);
+				if (!byColumns.containsKey(dict.columns)) {
+					byColumns.put(dict.columns, dict);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 单个 Table 列名排序后的字典，各节点表名与列名一致时下标一致
+	 */
+	private static class Dictionary {
+
+		final String tableName;
+		final String[] names;
+		final Set<String> columns;
+		final Map<String, Integer> indexMap;
+		final int hash;
+		final String id;
+
+		Dictionary(Table table) {
+			TreeSet<String> set = new TreeSet<String>(table.getColumnTypeMap().keySet());
+			this.tableName = table.getName();
+			this.names = set.toArray(new String[set.size()]);
+			this.columns = new HashSet<String>(set);
+
+			Map<String, Integer> map = new HashMap<String, Integer>();
+			for (int i = 0; i < names.length; i++) {
+				map.put(names[i], i);
+			}
+			this.indexMap = Collections.unmodifiableMap(map);
+			this.hash = Arrays.hashCode(names);
+			this.id = id(tableName, hash);
+		}
+
+		static String id(String tableName, int hash) {
+			return tableName + "#" + Integer.toHexString(hash);
+		}
+	}
+
+	/**
+	 * 可复用的输出缓冲，每个线程一个
+	 */
+	private static class Output {
+
+		byte[] buf = new byte[512];
+		int count;
+
+		void reset() {
+			if (buf.length > MAX_POOLED_BUFFER) {
+				buf = new byte[512];
+			}
+			count = 0;
+		}
+
+		void ensure(int n) {
+			if (count + n > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+			}
+		}
+
+		void write(byte b) {
+			ensure(1);
+			buf[count++] = b;
+		}
+
+		void writeInt(int v) {
+			ensure(4);
+			buf[count++] = (byte)(v >>> 24);
+			buf[count++] = (byte)(v >>> 16);
+			buf[count++] = (byte)(v >>> 8);
+			buf[count++] = (byte)v;
+		}
+
+		void writeLong(long v) {
+			writeInt((int)(v >>> 32));
+			writeInt((int)v);
+		}
+
+		void writeVarInt(int v) {
+			ensure(5);
+			while ((v & ~0x7F) != 0) {
+				buf[count++] = (byte)((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buf[count++] = (byte)v;
+		}
+
+		void writeVarLong(long v) {
+			long zz = (v << 1) ^ (v >> 63);		// zigzag
+			ensure(10);
+			while ((zz & ~0x7FL) != 0) {
+				buf[count++] = (byte)((zz & 0x7F) | 0x80);
+				zz >>>= 7;
+			}
+			buf[count++] = (byte)zz;
+		}
+
+		void writeBytes(byte[] bytes) {
+			writeVarInt(bytes.length);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, count, bytes.length);
+			count += bytes.length;
+		}
+
+		void writeString(String s) {
+			writeBytes(s.getBytes(StandardCharsets.UTF_8));
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, count);
+		}
+	}
+
+	private static class Input {
+
+		final byte[] buf;
+		int pos;
+
+		Input(byte[] buf, int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		byte read() {
+			return buf[pos++];
+		}
+
+		void skip(int n) {
+			pos += n;
+		}
+
+		int readInt() {
+			return ((buf[pos++] & 0xFF) << 24) | ((buf[pos++] & 0xFF) << 16) | ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+		}
+
+		long readLong() {
+			return ((long)readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+		}
+
+		int readVarInt() {
+			int ret = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = buf[pos++];
+				ret |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return ret;
+				}
+			}
+		}
+
+		long readVarLong() {
+			long zz = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = buf[pos++];
+				zz |= (long)(b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					break;
+				}
+			}
+			return (zz >>> 1) ^ -(zz & 1);
+		}
+
+		byte[] readBytes() {
+			int len = readVarInt();
+			byte[] ret = Arrays.copyOfRange(buf, pos, pos + len);
+			pos += len;
+			return ret;
+		}
+
+		String readString() {
+			int len = readVarInt();
+			String ret = new String(buf, pos, len, StandardCharsets.UTF_8);
+			pos += len;
+			return ret;
+		}
+	}
+}
@@ -19,9 +19,11 @@ package com.jfinal.template;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import com.jfinal.kit.HashKit;
 import com.jfinal.kit.StrKit;
 import com.jfinal.template.expr.ast.MethodKit;
+import com.jfinal.template.ext.cache.IFragmentCache;
 import com.jfinal.template.source.ISource;
 import com.jfinal.template.source.ISourceFactory;
 import com.jfinal.template.source.StringSource;
@@ -53,7 +55,8 @@ public class Engine {
 	private EngineConfig config = new EngineConfig();
 	private ISourceFactory sourceFactory = config.getSourceFactory();
 	
-	private Map<String, Template> templateCache = new HashMap<String, Template>();
+	private TemplateCache templateCache = new TemplateCache(0);
+	private TemplateCache stringTemplateCache = new TemplateCache(1024);
 	
 	/**
 	 * Create engine without management of JFinal 
@@ -133,17 +136,12 @@ public class Engine {
 			fileName = new String(arr);
 		}
 		
-		Template template = templateCache.get(fileName);
-		if (template == null) {
-			template = buildTemplateBySourceFactory(fileName);
-			templateCache.put(fileName, template);
-		} else if (devMode) {
-			if (template.isModified()) {
-				template = buildTemplateBySourceFactory(fileName);
-				templateCache.put(fileName, template);
+		final String key = fileName;
+		return templateCache.get(key, devMode, new Callable<Template>() {
+			public Template call() {
+				return buildTemplateBySourceFactory(key);
 			}
-		}
-		return template;
+		});
 	}
 	
 	private Template buildTemplateBySourceFactory(String fileName) {
@@ -164,11 +162,11 @@ public class Engine {
 	 * 
 	 * 重要：StringSource 中的 key = HashKit.md5(content)，也即 key
 	 *     与 content 有紧密的对应关系，当 content 发生变化时 key 值也相应变化
-	 *     因此，原先 key 所对应的 Template 缓存对象已无法被获取，当 getTemplateByString(String)
-	 *     的 String 参数的数量不确定时会引发内存泄漏
+	 *     因此，原先 key 所对应的 Template 缓存对象已无法被获取，String 参数的数量不确定时
+	 *     缓存命中率很低，字符串模板缓存虽有数量上限不会引发内存泄漏，但会频繁淘汰
 	 *     
 	 *     当 getTemplateByString(String, boolean) 中的 String 参数的
-	 *     数量可控并且确定时，才可对其使用缓存 
+	 *     数量可控并且确定时，才建议对其使用缓存 
 	 */
 	public Template getTemplateByString(String content) {
 		return getTemplateByString(content, false);
@@ -176,48 +174,40 @@ public class Engine {
 	
 	/**
 	 * Get template by string content
+	 * 
+	 * cache 为 true 时 Template 缓存在数量有上限的独立缓存中，超出上限时淘汰最久未被使用的模板，
+	 * 上限通过 setStringTemplateCacheSize(int) 配置
+	 * 
 	 * @param content 模板内容
 	 * @param cache true 则缓存 Template，否则不缓存
 	 */
-	public Template getTemplateByString(String content, boolean cache) {
+	public Template getTemplateByString(final String content, boolean cache) {
 		if (!cache) {
 			return buildTemplateBySource(new StringSource(content, cache));
 		}
 		
 		String key = HashKit.md5(content);
-		Template template = templateCache.get(key);
-		if (template == null) {
-			template = buildTemplateBySource(new StringSource(content, cache));
-			templateCache.put(key, template);
-		} else if (devMode) {
-			if (template.isModified()) {
-				template = buildTemplateBySource(new StringSource(content, cache));
-				templateCache.put(key, template);
+		return stringTemplateCache.get(key, devMode, new Callable<Template>() {
+			public Template call() {
+				return buildTemplateBySource(new StringSource(content, true));
 			}
-		}
-		return template;
+		});
 	}
 	
 	/**
 	 * Get template with implementation of ISource
 	 */
-	public Template getTemplate(ISource source) {
+	public Template getTemplate(final ISource source) {
 		String key = source.getKey();
 		if (key == null) {	// key 为 null 则不缓存，详见 ISource.getKey() 注释
 			return buildTemplateBySource(source);
 		}
 		
-		Template template = templateCache.get(key);
-		if (template == null) {
-			template = buildTemplateBySource(source);
-			templateCache.put(key, template);
-		} else if (devMode) {
-			if (template.isModified()) {
-				template = buildTemplateBySource(source);
-				templateCache.put(key, template);
+		return templateCache.get(key, devMode, new Callable<Template>() {
+			public Template call() {
+				return buildTemplateBySource(source);
 			}
-		}
-		return template;
+		});
 	}
 	
 	private Template buildTemplateBySource(ISource source) {
@@ -360,6 +350,7 @@ public class Engine {
 	 */
 	public void removeTemplateCache(String templateKey) {
 		templateCache.remove(templateKey);
+		stringTemplateCache.remove(templateKey);
 	}
 	
 	/**
@@ -367,10 +358,64 @@ public class Engine {
 	 */
 	public void removeAllTemplateCache() {
 		templateCache.clear();
+		stringTemplateCache.clear();
 	}
 	
 	public int getTemplateCacheSize() {
-		return templateCache.size();
+		return templateCache.size() + stringTemplateCache.size();
+	}
+	
+	/**
+	 * 设置 getTemplateByString(content, true) 所使用缓存的数量上限，默认 1024，
+	 * 小于等于 0 表示不限制
+	 */
+	public Engine setStringTemplateCacheSize(int stringTemplateCacheSize) {
+		stringTemplateCache.setMaxSize(stringTemplateCacheSize);
+		return this;
+	}
+	
+	public int getStringTemplateCacheSize() {
+		return stringTemplateCache.getMaxSize();
+	}
+	
+	/**
+	 * 模板缓存命中次数
+	 */
+	public long getTemplateCacheHitCount() {
+		return templateCache.hitCount.sum() + stringTemplateCache.hitCount.sum();
+	}
+	
+	/**
+	 * 模板缓存未命中次数，包括 devMode 下模板被修改的情况
+	 */
+	public long getTemplateCacheMissCount() {
+		return templateCache.missCount.sum() + stringTemplateCache.missCount.sum();
+	}
+	
+	/**
+	 * 因缓存未命中而解析模板的次数，并发未命中同一模板时只解析一次
+	 */
+	public long getTemplateParseCount() {
+		return templateCache.parseCount.sum() + stringTemplateCache.parseCount.sum();
+	}
+	
+	/**
+	 * 因缓存未命中而解析模板的总耗时，单位毫秒
+	 */
+	public double getTemplateParseTotalMillis() {
+		return (templateCache.parseNanos.sum() + stringTemplateCache.parseNanos.sum()) / 1000000.0;
+	}
+	
+	/**
+	 * 字符串模板缓存超出上限而被淘汰的次数
+	 */
+	public long getTemplateCacheEvictionCount() {
+		return templateCache.evictionCount.sum() + stringTemplateCache.evictionCount.sum();
+	}
+	
+	public void resetTemplateCacheStat() {
+		templateCache.resetStat();
+		stringTemplateCache.resetStat();
 	}
 	
 	public String getName() {
@@ -404,6 +449,23 @@ public class Engine {
 		return devMode;
 	}
 	
+	/**
+	 * 设置 #cache 指令使用的缓存存储，默认为 LocalFragmentCache，多节点部署时可使用 RedisFragmentCache
+	 * <pre>
+	 * 例如：
+	 * engine.addDirective("cache", CacheDirective.class);
+	 * engine.setFragmentCache(new RedisFragmentCache(Redis.use()));
+	 * </pre>
+	 */
+	public Engine setFragmentCache(IFragmentCache fragmentCache) {
+		config.setFragmentCache(fragmentCache);
+		return this;
+	}
+	
+	public IFragmentCache getFragmentCache() {
+		return config.getFragmentCache();
+	}
+	
 	/**
 	 * 设置 ISourceFactory 用于为 engine 切换不同的 ISource 实现类
 	 * ISource 用于从不同的来源加载模板内容
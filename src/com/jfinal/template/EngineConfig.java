@@ -25,6 +25,8 @@ import java.util.Map.Entry;
 import com.jfinal.kit.StrKit;
 import com.jfinal.template.expr.ast.ExprList;
 import com.jfinal.template.expr.ast.SharedMethodKit;
+import com.jfinal.template.ext.cache.IFragmentCache;
+import com.jfinal.template.ext.cache.LocalFragmentCache;
 import com.jfinal.template.ext.directive.*;
 import com.jfinal.template.ext.sharedmethod.SharedMethodLib;
 import com.jfinal.template.io.EncoderFactory;
@@ -57,6 +59,7 @@ public class EngineConfig {
 	private ISourceFactory sourceFactory = new FileSourceFactory();
 	private Map<String, Class<? extends Directive>> directiveMap = new HashMap<String, Class<? extends Directive>>();
 	private SharedMethodKit sharedMethodKit = new SharedMethodKit();
+	private IFragmentCache fragmentCache = new LocalFragmentCache();
 	
 	private boolean devMode = false;
 	private boolean reloadModifiedSharedFunctionInDevMode = true;
@@ -232,6 +235,21 @@ public class EngineConfig {
 		return devMode;
 	}
 	
+	/**
+	 * 设置 #cache 指令使用的缓存存储，默认为 LocalFragmentCache
+	 * #cache 指令默认不注册，详见 CacheDirective
+	 */
+	public void setFragmentCache(IFragmentCache fragmentCache) {
+		if (fragmentCache == null) {
+			throw new IllegalArgumentException("fragmentCache can not be null");
+		}
+		this.fragmentCache = fragmentCache;
+	}
+	
+	public IFragmentCache getFragmentCache() {
+		return fragmentCache;
+	}
+	
 	/**
 	 * Invoked by Engine only
 	 */
@@ -18,8 +18,11 @@ package com.jfinal.template;
 
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 import com.jfinal.template.io.ByteWriter;
+import com.jfinal.template.io.ChannelWriter;
 import com.jfinal.template.io.CharWriter;
 import com.jfinal.template.io.FastStringWriter;
 import com.jfinal.template.stat.Scope;
@@ -66,6 +69,40 @@ public class Template {
 		render(null, outputStream);
 	}
 	
+	/**
+	 * 渲染到 WritableByteChannel 中去 <br>
+	 * 较长的静态文本直接使用预先编码好的 byte[]，以 gathering write 的方式写出，无需拷贝到中间缓冲区
+	 */
+	public void render(Map<?, ?> data, WritableByteChannel channel) {
+		ChannelWriter channelWriter = env.engineConfig.writerBuffer.getChannelWriter(channel);
+		try {
+			ast.exec(env, new Scope(data, env.engineConfig.sharedObjectMap), channelWriter);
+		} finally {
+			channelWriter.close();
+		}
+	}
+	
+	/**
+	 * 支持无 data 参数，渲染到 WritableByteChannel 中去
+	 */
+	public void render(WritableByteChannel channel) {
+		render(null, channel);
+	}
+	
+	/**
+	 * 渲染到 ByteBuffer 数组中去，可直接用于 GatheringByteChannel.write(ByteBuffer[]) <br>
+	 * 数组中较长的静态文本为与模板共享底层 byte[] 的只读 ByteBuffer
+	 */
+	public ByteBuffer[] renderToByteBuffers(Map<?, ?> data) {
+		ChannelWriter channelWriter = env.engineConfig.writerBuffer.getChannelWriter(null);
+		try {
+			ast.exec(env, new Scope(data, env.engineConfig.sharedObjectMap), channelWriter);
+			return channelWriter.toByteBuffers();
+		} finally {
+			channelWriter.close();
+		}
+	}
+	
 	/**
 	 * 渲染到 Writer 中去
 	 */
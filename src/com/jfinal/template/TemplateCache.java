@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import com.jfinal.kit.LruQueue;
+import com.jfinal.kit.SingleFlight;
+
+/**
+ * TemplateCache
+ * 
+ * Engine 使用的线程安全模板缓存
+ * 1: 命中时只有一次 ConcurrentHashMap 读操作，不加锁
+ * 2: 同一个 key 同时未命中时只有一个线程解析模板，其它线程等待并共享解析结果，
+ *    解析出现异常时所有等待的线程抛出同一个异常，且异常结果不被缓存，详见 SingleFlight
+ * 3: maxSize 大于 0 时缓存数量有上限，超出时淘汰最近未被访问的模板，
+ *    淘汰只在未命中时发生，命中时仅设置访问标记，详见 LruQueue
+ */
+class TemplateCache {
+	
+	private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+	private final SingleFlight<String, Template> building = new SingleFlight<String, Template>();
+	private final LruQueue<String> lru = new LruQueue<String>();
+	private volatile int maxSize;
+	
+	final LongAdder hitCount = new LongAdder();
+	final LongAdder missCount = new LongAdder();
+	final LongAdder parseCount = new LongAdder();
+	final LongAdder parseNanos = new LongAdder();
+	final LongAdder evictionCount = new LongAdder();
+	
+	/**
+	 * @param maxSize 缓存数量上限，小于等于 0 表示不限制
+	 */
+	TemplateCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+	
+	int getMaxSize() {
+		return maxSize;
+	}
+	
+	Template get(final String key, final boolean devMode, final Callable<Template> builder) {
+		final CacheEntry entry = cache.get(key);
+		if (entry != null && !(devMode && entry.template.isModified())) {
+			entry.touch();
+			hitCount.increment();
+			return entry.template;
+		}
+		
+		missCount.increment();
+		return building.execute(key, new Callable<Template>() {
+			public Template call() throws Exception {
+				// 其它线程可能在本线程检查缓存之后刚完成解析
+				CacheEntry current = cache.get(key);
+				if (current != null && current != entry && !(devMode && current.template.isModified())) {
+					return current.template;
+				}
+				
+				long start = System.nanoTime();
+				Template ret = builder.call();
+				parseNanos.add(System.nanoTime() - start);
+				parseCount.increment();
+				
+				CacheEntry newEntry = new CacheEntry(key, ret);
+				cache.put(key, newEntry);
+				lru.add(newEntry);
+				evict();
+				return ret;
+			}
+		});
+	}
+	
+	/**
+	 * 超出上限时淘汰最近未被访问的模板，只在未命中时调用
+	 */
+	private void evict() {
+		evictionCount.add(lru.evict(cache, maxSize));
+	}
+	
+	void remove(String key) {
+		cache.remove(key);
+	}
+	
+	void clear() {
+		cache.clear();
+		lru.clear();
+	}
+	
+	int size() {
+		return cache.size();
+	}
+	
+	void resetStat() {
+		hitCount.reset();
+		missCount.reset();
+		parseCount.reset();
+		parseNanos.reset();
+		evictionCount.reset();
+	}
+	
+	private static class CacheEntry extends LruQueue.Entry<String> {
+		
+		final Template template;
+		
+		CacheEntry(String key, Template template) {
+			super(key);
+			this.template = template;
+		}
+	}
+}
+
+
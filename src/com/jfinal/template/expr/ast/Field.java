@@ -17,7 +17,6 @@
 package com.jfinal.template.expr.ast;
 
 import java.lang.reflect.Array;
-import com.jfinal.kit.HashKit;
 import com.jfinal.kit.StrKit;
 import com.jfinal.plugin.activerecord.Model;
 import com.jfinal.plugin.activerecord.Record;
@@ -38,10 +37,17 @@ import com.jfinal.template.stat.Scope;
  */
 public class Field extends Expr {
 	
+	// InlineCache 中 getter 与 public field 以外的取值方式
+	private static final Object MODEL = new Object();
+	private static final Object RECORD = new Object();
+	private static final Object MAP = new Object();
+	private static final Object ARRAY_LENGTH = new Object();
+	private static final Object NOT_FOUND = new Object();
+	
 	private Expr expr;
 	private String fieldName;
 	private String getterName;
-	private long getterNameHash;
+	private volatile InlineCache inlineCache;
 	
 	public Field(Expr expr, String fieldName, Location location) {
 		if (expr == null) {
@@ -50,8 +56,6 @@ public class Field extends Expr {
 		this.expr = expr;
 		this.fieldName = fieldName;
 		this.getterName = "get" + StrKit.firstCharToUpperCase(fieldName);
-		// fnv1a64 hash 到比 String.hashCode() 更大的 long 值范围
-		this.getterNameHash = HashKit.fnv1a64(getterName);
 		this.location = location;
 	}
 	
@@ -69,38 +73,35 @@ public class Field extends Expr {
 		}
 		
 		Class<?> targetClass = target.getClass();
-		Long key = buildFieldKey(targetClass);
-		
-		MethodInfo getter;
-		try {
-			getter = MethodKit.getGetterMethod(key, targetClass, getterName);
-		} catch (Exception e) {
-			throw new TemplateException(e.getMessage(), location, e);
+		InlineCache ic = inlineCache;
+		Object accessor = InlineCache.get(ic, targetClass);
+		if (accessor == InlineCache.MISS) {
+			try {
+				accessor = resolve(targetClass);
+			} catch (Exception e) {
+				throw new TemplateException(e.getMessage(), location, e);
+			}
+			inlineCache = InlineCache.add(ic, targetClass, null, accessor);
 		}
 		
 		try {
-			if (getter != null) {
-				return getter.invoke(target, ExprList.NULL_OBJECT_ARRAY);
+			if (accessor instanceof MethodInfo) {
+				return ((MethodInfo)accessor).invoke(target, ExprList.NULL_OBJECT_ARRAY);
 			}
-			if (target instanceof Model) {
+			if (accessor == MODEL) {
 				return ((Model<?>)target).get(fieldName);
 			}
-			if (target instanceof Record) {
+			if (accessor == RECORD) {
 				return ((Record)target).get(fieldName);
 			}
-			if (target instanceof java.util.Map) {
+			if (accessor == MAP) {
 				return ((java.util.Map<?, ?>)target).get(fieldName);
 			}
-			// if (target instanceof com.jfinal.kit.Ret) {
-				// return ((com.jfinal.kit.Ret)target).get(fieldName);
-			// }
-			java.lang.reflect.Field field = FieldKit.getField(key, targetClass, fieldName);
-			if (field != null) {
-				return field.get(target);
+			if (accessor instanceof java.lang.reflect.Field) {
+				return ((java.lang.reflect.Field)accessor).get(target);
 			}
-			
 			// 支持获取数组长度： array.length
-			if ("length".equals(fieldName) && target.getClass().isArray()) {
+			if (accessor == ARRAY_LENGTH) {
 				return Array.getLength(target);
 			}
 		} catch (Exception e) {
@@ -118,8 +119,34 @@ public class Field extends Expr {
 		throw new TemplateException("Field not found: \"" + fieldName + "\" and getter method not found: \"" + getterName + "()\"", location);
 	}
 	
-	private Long buildFieldKey(Class<?> targetClass) {
-		return targetClass.getName().hashCode() ^ getterNameHash;
+	/**
+	 * 取值方式只与 targetClass 有关，解析结果缓存在 InlineCache 中
+	 */
+	private Object resolve(Class<?> targetClass) {
+		MethodInfo getter = MethodKit.getGetterMethod(targetClass, getterName);
+		if (getter != null) {
+			return getter;
+		}
+		if (Model.class.isAssignableFrom(targetClass)) {
+			return MODEL;
+		}
+		if (Record.class.isAssignableFrom(targetClass)) {
+			return RECORD;
+		}
+		if (java.util.Map.class.isAssignableFrom(targetClass)) {
+			return MAP;
+		}
+		// if (target instanceof com.jfinal.kit.Ret) {
+			// return ((com.jfinal.kit.Ret)target).get(fieldName);
+		// }
+		java.lang.reflect.Field field = FieldKit.getField(targetClass, fieldName);
+		if (field != null) {
+			return field;
+		}
+		if ("length".equals(fieldName) && targetClass.isArray()) {
+			return ARRAY_LENGTH;
+		}
+		return NOT_FOUND;
 	}
 }
 
@@ -17,25 +17,34 @@
 package com.jfinal.template.expr.ast;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import com.jfinal.template.expr.ast.MethodKit.MethodKey;
 
 /**
  * FieldKit
+ * 
+ * fieldCache 与 MethodKit 一样使用 MethodKey 作为 key，数量上限由 MethodKit.setMaxCacheSize(int) 统一设置
  */
 public class FieldKit {
 	
-	private static final HashMap<Long, Object> fieldCache = new HashMap<Long, Object>();
+	private static final Class<?>[] NULL_ARG_TYPES = new Class<?>[0];
+	static final ConcurrentHashMap<MethodKey, Object> fieldCache = new ConcurrentHashMap<MethodKey, Object>();
 	
+	/**
+	 * @param key 为兼容保留，已不再使用，缓存 key 由 targetClass 与 fieldName 生成
+	 */
 	public static Field getField(Long key, Class<?> targetClass, String fieldName) {
+		return getField(targetClass, fieldName);
+	}
+	
+	public static Field getField(Class<?> targetClass, String fieldName) {
+		MethodKey key = new MethodKey(targetClass, fieldName, NULL_ARG_TYPES);
 		Object field = fieldCache.get(key);
 		if (field == null) {
 			field = doGetField(targetClass, fieldName);
-			if (field != null) {
-				fieldCache.put(key, field);
-			} else {
-				// 对于不存在的 Field，只进行一次获取操作，主要为了支持 null safe，未来需要考虑内存泄漏风险
-				fieldCache.put(key, Boolean.FALSE);
-			}
+			// 对于不存在的 Field，只进行一次获取操作，主要为了支持 null safe
+			fieldCache.put(key, field != null ? field : MethodKit.NOT_FOUND);
+			MethodKit.checkCacheSize(fieldCache);
 		}
 		return field instanceof Field ? (Field)field : null;
 	}
@@ -55,3 +64,4 @@ public class FieldKit {
 
 
 
+
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template.expr.ast;
+
+/**
+ * InlineCache
+ * 
+ * Field、Method 节点持有的调用点缓存，记录最近出现过的 receiver 类型（Method 还包括实参类型）
+ * 及其解析结果，命中时无需生成 key、查询 MethodKit/FieldKit 全局缓存，也无需分配参数类型数组
+ * 
+ * 1：对象不可变，节点通过 volatile 字段整体替换，多线程读取无需加锁
+ * 2：最多缓存 MAX_SIZE 种类型，超出后转为 megamorphic 状态，不再缓存，节点退回全局缓存查找
+ * 3：MethodKit.version 变化（extension method 增删、clearCache）后自动失效
+ */
+final class InlineCache {
+	
+	static final int MAX_SIZE = 4;
+	static final Object MISS = new Object();
+	
+	private final int version;
+	private final Class<?>[] classes;
+	private final Class<?>[][] argTypes;
+	private final Object[] values;
+	private final boolean megamorphic;
+	
+	private InlineCache(int version, Class<?>[] classes, Class<?>[][] argTypes, Object[] values, boolean megamorphic) {
+		this.version = version;
+		this.classes = classes;
+		this.argTypes = argTypes;
+		this.values = values;
+		this.megamorphic = megamorphic;
+	}
+	
+	/**
+	 * 用于 Field，返回 MISS 表示未命中
+	 */
+	static Object get(InlineCache ic, Class<?> targetClass) {
+		if (ic == null || ic.version != MethodKit.version) {
+			return MISS;
+		}
+		Class<?>[] cs = ic.classes;
+		for (int i=0; i<cs.length; i++) {
+			if (cs[i] == targetClass) {
+				return ic.values[i];
+			}
+		}
+		return MISS;
+	}
+	
+	/**
+	 * 用于 Method，直接比较实参的类型，返回 MISS 表示未命中
+	 */
+	static Object get(InlineCache ic, Class<?> targetClass, Object[] argValues) {
+		if (ic == null || ic.version != MethodKit.version) {
+			return MISS;
+		}
+		Class<?>[] cs = ic.classes;
+		for (int i=0; i<cs.length; i++) {
+			if (cs[i] == targetClass && matchArgTypes(ic.argTypes[i], argValues)) {
+				return ic.values[i];
+			}
+		}
+		return MISS;
+	}
+	
+	private static boolean matchArgTypes(Class<?>[] types, Object[] argValues) {
+		int len = argValues != null ? argValues.length : 0;
+		if (types.length != len) {
+			return false;
+		}
+		for (int i=0; i<len; i++) {
+			Object v = argValues[i];
+			if (types[i] != (v != null ? v.getClass() : null)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * 返回加入新类型之后的 InlineCache，超出 MAX_SIZE 时返回 megamorphic 状态的 InlineCache
+	 */
+	static InlineCache add(InlineCache ic, Class<?> targetClass, Class<?>[] argTypes, Object value) {
+		int version = MethodKit.version;
+		if (ic == null || ic.version != version) {
+			return new InlineCache(version, new Class<?>[]{targetClass}, new Class<?>[][]{argTypes}, new Object[]{value}, false);
+		}
+		if (ic.megamorphic) {
+			return ic;
+		}
+		
+		int n = ic.classes.length;
+		if (n >= MAX_SIZE) {
+			return new InlineCache(version, new Class<?>[0], new Class<?>[0][], new Object[0], true);
+		}
+		
+		Class<?>[] cs = new Class<?>[n + 1];
+		Class<?>[][] ats = new Class<?>[n + 1][];
+		Object[] vs = new Object[n + 1];
+		System.arraycopy(ic.classes, 0, cs, 0, n);
+		System.arraycopy(ic.argTypes, 0, ats, 0, n);
+		System.arraycopy(ic.values, 0, vs, 0, n);
+		cs[n] = targetClass;
+		ats[n] = argTypes;
+		vs[n] = value;
+		return new InlineCache(version, cs, ats, vs, false);
+	}
+}
+
+
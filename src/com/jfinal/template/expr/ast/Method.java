@@ -30,6 +30,7 @@ public class Method extends Expr {
 	private Expr expr;
 	private String methodName;
 	private ExprList exprList;
+	private volatile InlineCache inlineCache;
 	
 	public Method(Expr expr, String methodName, ExprList exprList, Location location) {
 		if (exprList == null || exprList.length() == 0) {
@@ -65,12 +66,7 @@ public class Method extends Expr {
 		}
 		
 		Object[] argValues = exprList.evalExprList(scope);
-		MethodInfo methodInfo;
-		try {
-			methodInfo = MethodKit.getMethod(target.getClass(), methodName, argValues);
-		} catch (Exception e) {
-			throw new TemplateException(e.getMessage(), location, e);
-		}
+		MethodInfo methodInfo = getMethodInfo(target.getClass(), argValues);
 		if (methodInfo == null) {
 			if (scope.getCtrl().isNullSafe()) {
 				return null;
@@ -92,6 +88,27 @@ public class Method extends Expr {
 		}
 	}
 	
+	/**
+	 * 先查找 InlineCache，未命中时查找 MethodKit 并将结果（包括 null）加入 InlineCache
+	 */
+	private MethodInfo getMethodInfo(Class<?> targetClass, Object[] argValues) {
+		InlineCache ic = inlineCache;
+		Object ret = InlineCache.get(ic, targetClass, argValues);
+		if (ret != InlineCache.MISS) {
+			return (MethodInfo)ret;
+		}
+		
+		Class<?>[] argTypes = MethodKit.getArgTypes(argValues);
+		MethodInfo methodInfo;
+		try {
+			methodInfo = MethodKit.getMethodByArgTypes(targetClass, methodName, argTypes);
+		} catch (Exception e) {
+			throw new TemplateException(e.getMessage(), location, e);
+		}
+		inlineCache = InlineCache.add(ic, targetClass, argTypes, methodInfo);
+		return methodInfo;
+	}
+	
 	static String buildMethodNotFoundSignature(String preMsg, String methodName, Object[] argValues) {
 		StringBuilder ret = new StringBuilder().append(preMsg).append(methodName).append("(");
 		if (argValues != null) {
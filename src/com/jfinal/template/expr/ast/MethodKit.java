@@ -18,10 +18,13 @@ package com.jfinal.template.expr.ast;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import com.jfinal.kit.ReflectKit;
 import com.jfinal.template.ext.extensionmethod.ByteExt;
 import com.jfinal.template.ext.extensionmethod.DoubleExt;
@@ -33,6 +36,12 @@ import com.jfinal.template.ext.extensionmethod.StringExt;
 
 /**
  * MethodKit
+ * 
+ * 1：methodCache 使用 MethodKey 作为 key，equals 比较 class、方法名与参数类型，
+ *    hash 冲突时不会取到错误的方法，MethodKeyBuilder 生成的 long 值仅用作 MethodInfo.getKey()
+ * 2：不存在的方法以 NOT_FOUND 缓存以支持 null safe，通过 setMaxCacheSize(int) 可限制缓存数量，
+ *    超出上限时先清除 NOT_FOUND 项，仍超出则清空缓存，extension method 保存在独立的 map 中不受影响
+ * 3：Field、Method 节点在自身持有 InlineCache，extension method 变化时通过 version 使其失效
  */
 public class MethodKit {
 	
@@ -40,7 +49,12 @@ public class MethodKit {
 	private static final Set<String> forbiddenMethods = new HashSet<String>();
 	private static final Set<Class<?>> forbiddenClasses = new HashSet<Class<?>>();
 	private static final Map<Class<?>, Class<?>> primitiveMap = new HashMap<Class<?>, Class<?>>();
-	private static final HashMap<Long, Object> methodCache = new HashMap<Long, Object>();
+	
+	static final Object NOT_FOUND = Boolean.FALSE;
+	private static final ConcurrentHashMap<MethodKey, Object> methodCache = new ConcurrentHashMap<MethodKey, Object>();
+	private static final ConcurrentHashMap<MethodKey, MethodInfoExt> extensionMethodCache = new ConcurrentHashMap<MethodKey, MethodInfoExt>();
+	static volatile int maxCacheSize = 0;
+	static volatile int version = 0;
 	
 	// 初始化在模板中调用 method 时所在的被禁止使用类
 	static {
@@ -102,36 +116,82 @@ public class MethodKit {
 	}
 	
 	public static MethodInfo getMethod(Class<?> targetClass, String methodName, Object[] argValues) {
-		Class<?>[] argTypes = getArgTypes(argValues);
-		Long key = getMethodKey(targetClass, methodName, argTypes);
+		return getMethodByArgTypes(targetClass, methodName, getArgTypes(argValues));
+	}
+	
+	static MethodInfo getMethodByArgTypes(Class<?> targetClass, String methodName, Class<?>[] argTypes) {
+		MethodKey key = new MethodKey(targetClass, methodName, argTypes);
 		Object method = methodCache.get(key);
 		if (method == null) {
-			method = doGetMethod(key, targetClass, methodName, argTypes);
+			method = extensionMethodCache.get(key);
 			if (method != null) {
-				methodCache.put(key, method);
-			} else {
-				// 对于不存在的 Method，只进行一次获取操作，主要为了支持 null safe，未来需要考虑内存泄漏风险
-				methodCache.put(key, Boolean.FALSE);
+				return (MethodInfo)method;
 			}
+			
+			method = doGetMethod(getMethodKey(targetClass, methodName, argTypes), targetClass, methodName, argTypes);
+			// 对于不存在的 Method，只进行一次获取操作，主要为了支持 null safe
+			methodCache.put(key, method != null ? method : NOT_FOUND);
+			checkCacheSize(methodCache);
 		}
 		return method instanceof MethodInfo ? (MethodInfo)method : null;
 	}
 	
 	/**
 	 * 获取 getter 方法
-	 * 使用与 Field 相同的 key，避免生成两次 key值
+	 * @param key 为兼容保留，已不再使用，缓存 key 由 targetClass 与 methodName 生成
 	 */
 	public static MethodInfo getGetterMethod(Long key, Class<?> targetClass, String methodName) {
-		Object getterMethod = methodCache.get(key);
-		if (getterMethod == null) {
-			getterMethod = doGetMethod(key, targetClass, methodName, NULL_ARG_TYPES);
-			if (getterMethod != null) {
-				methodCache.put(key, getterMethod);
-			} else {
-				methodCache.put(key, Boolean.FALSE);
+		return getGetterMethod(targetClass, methodName);
+	}
+	
+	/**
+	 * 获取 getter 方法，与无参方法调用共用缓存
+	 */
+	public static MethodInfo getGetterMethod(Class<?> targetClass, String methodName) {
+		return getMethodByArgTypes(targetClass, methodName, NULL_ARG_TYPES);
+	}
+	
+	/**
+	 * 设置 MethodKit 与 FieldKit 缓存数量上限，小于等于 0 表示不限制，默认不限制
+	 */
+	public static void setMaxCacheSize(int maxCacheSize) {
+		MethodKit.maxCacheSize = maxCacheSize;
+		checkCacheSize(methodCache);
+		checkCacheSize(FieldKit.fieldCache);
+	}
+	
+	public static int getMaxCacheSize() {
+		return maxCacheSize;
+	}
+	
+	public static int getCacheSize() {
+		return methodCache.size();
+	}
+	
+	/**
+	 * 清空方法缓存，extension method 不受影响，Field、Method 节点中的 InlineCache 同时失效
+	 */
+	public static synchronized void clearCache() {
+		methodCache.clear();
+		FieldKit.fieldCache.clear();
+		version++;
+	}
+	
+	/**
+	 * 超出上限时先清除 NOT_FOUND 项，仍超出则清空，只在未命中时调用
+	 */
+	static void checkCacheSize(ConcurrentHashMap<MethodKey, Object> cache) {
+		int max = maxCacheSize;
+		if (max > 0 && cache.size() > max) {
+			for (Iterator<Object> it = cache.values().iterator(); it.hasNext();) {
+				if (it.next() == NOT_FOUND) {
+					it.remove();
+				}
+			}
+			if (cache.size() > max) {
+				cache.clear();
 			}
 		}
-		return getterMethod instanceof MethodInfo ? (MethodInfo)getterMethod : null;
 	}
 	
 	static Class<?>[] getArgTypes(Object[] argValues) {
@@ -231,6 +291,39 @@ public class MethodKit {
 		return MethodKeyBuilder.instance.getMethodKey(targetClass, methodName, argTypes);
 	}
 	
+	/**
+	 * 缓存 key，equals 比较 class、名称与参数类型，与 MethodKeyBuilder 的切换无关
+	 */
+	static final class MethodKey {
+		
+		final Class<?> targetClass;
+		final String name;
+		final Class<?>[] argTypes;
+		final int hash;
+		
+		MethodKey(Class<?> targetClass, String name, Class<?>[] argTypes) {
+			this.targetClass = targetClass;
+			this.name = name;
+			this.argTypes = argTypes;
+			this.hash = 31 * (31 * targetClass.hashCode() + name.hashCode()) + Arrays.hashCode(argTypes);
+		}
+		
+		public int hashCode() {
+			return hash;
+		}
+		
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof MethodKey)) {
+				return false;
+			}
+			MethodKey k = (MethodKey)obj;
+			return targetClass == k.targetClass && name.equals(k.name) && Arrays.equals(argTypes, k.argTypes);
+		}
+	}
+	
 	// 以下代码实现 extension method 功能 --------------------
 	
 	// 添加 jfinal 官方扩展方法 extension method
@@ -273,22 +366,24 @@ public class MethodKit {
 					throw new RuntimeException("Extension method \"" + methodName + "\" is already exists in class \"" + targetClass.getName() + "\"");
 				}
 			} catch (NoSuchMethodException e) {		// Method 找不到才能添加该扩展方法
-				Long key = MethodKit.getMethodKey(targetClass, methodName, toBoxedType(targetParaTypes));
-				if (methodCache.containsKey(key)) {
+				MethodKey key = new MethodKey(targetClass, methodName, toBoxedType(targetParaTypes));
+				if (extensionMethodCache.containsKey(key)) {
 					throw new RuntimeException(buildMethodSignatureForException("The extension method is already exists: " + extensionClass.getName() + ".", methodName, targetParaTypes));
 				}
 				
-				MethodInfoExt mie = new MethodInfoExt(objectOfExtensionClass, key, extensionClass/* targetClass */, method);
-				methodCache.put(key, mie);
+				MethodInfoExt mie = new MethodInfoExt(objectOfExtensionClass, getMethodKey(targetClass, methodName, key.argTypes), extensionClass/* targetClass */, method);
+				extensionMethodCache.put(key, mie);
+				methodCache.remove(key);		// 清除之前可能缓存的 NOT_FOUND
 			}
 		}
+		version++;
 	}
 	
 	public static void addExtensionMethod(Class<?> targetClass, Class<?> extensionClass) {
 		addExtensionMethod(targetClass, ReflectKit.newInstance(extensionClass));
 	}
 	
-	public static void removeExtensionMethod(Class<?> targetClass, Object objectOfExtensionClass) {
+	public synchronized static void removeExtensionMethod(Class<?> targetClass, Object objectOfExtensionClass) {
 		Class<?> extensionClass = objectOfExtensionClass.getClass();
 		java.lang.reflect.Method[] methodArray = extensionClass.getMethods();
 		for (java.lang.reflect.Method method : methodArray) {
@@ -302,9 +397,10 @@ public class MethodKit {
 			Class<?>[] targetParaTypes = new Class<?>[extensionMethodParaTypes.length - 1];
 			System.arraycopy(extensionMethodParaTypes, 1, targetParaTypes, 0, targetParaTypes.length);
 			
-			Long key = MethodKit.getMethodKey(targetClass, methodName, toBoxedType(targetParaTypes));
-			methodCache.remove(key);
+			MethodKey key = new MethodKey(targetClass, methodName, toBoxedType(targetParaTypes));
+			extensionMethodCache.remove(key);
 		}
+		version++;
 	}
 	
 	private static final Map<Class<?>, Class<?>> primitiveToBoxedMap = new HashMap<Class<?>, Class<?>>();
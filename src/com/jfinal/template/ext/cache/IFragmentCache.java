@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template.ext.cache;
+
+/**
+ * IFragmentCache 为 #cache 指令提供缓存存储
+ * 
+ * value 为 #cache 指令体按 engine 编码渲染后的 byte[]
+ * ttlSeconds 小于等于 0 表示不过期
+ */
+public interface IFragmentCache {
+	
+	byte[] get(String key);
+	
+	void put(String key, byte[] value, int ttlSeconds);
+	
+	void remove(String key);
+	
+	void removeAll();
+}
+
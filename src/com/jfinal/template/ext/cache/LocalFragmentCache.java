@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template.ext.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import com.jfinal.kit.LruQueue;
+
+/**
+ * LocalFragmentCache
+ * 
+ * #cache 指令默认使用的本地缓存
+ * 1: 命中时只有一次 ConcurrentHashMap 读操作，不加锁，过期的内容在读取时被移除
+ * 2: 缓存数量超出 maxSize 时淘汰最近未被访问的内容，淘汰只在写入时发生，详见 LruQueue
+ */
+public class LocalFragmentCache implements IFragmentCache {
+	
+	public static final int DEFAULT_MAX_SIZE = 1000;
+	
+	private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+	private final LruQueue<String> lru = new LruQueue<String>();
+	private volatile int maxSize;
+	
+	/**
+	 * @param maxSize 缓存数量上限，必须大于 0
+	 */
+	public LocalFragmentCache(int maxSize) {
+		setMaxSize(maxSize);
+	}
+	
+	public LocalFragmentCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+	
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		}
+		this.maxSize = maxSize;
+		evict();
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public byte[] get(String key) {
+		CacheEntry entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		
+		long now = System.nanoTime();
+		if (entry.expireAt != 0 && now - entry.expireAt >= 0) {
+			cache.remove(key, entry);
+			return null;
+		}
+		entry.touch();
+		return entry.value;
+	}
+	
+	public void put(String key, byte[] value, int ttlSeconds) {
+		long expireAt = 0;
+		if (ttlSeconds > 0) {
+			expireAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+			if (expireAt == 0) {
+				expireAt = 1;
+			}
+		}
+		CacheEntry entry = new CacheEntry(key, value, expireAt);
+		cache.put(key, entry);
+		lru.add(entry);
+		evict();
+	}
+	
+	public void remove(String key) {
+		cache.remove(key);
+	}
+	
+	public void removeAll() {
+		cache.clear();
+		lru.clear();
+	}
+	
+	public int size() {
+		return cache.size();
+	}
+	
+	/**
+	 * 超出上限时淘汰最近未被访问的内容，只在写入时调用
+	 */
+	private void evict() {
+		lru.evict(cache, maxSize);
+	}
+	
+	private static class CacheEntry extends LruQueue.Entry<String> {
+		
+		final byte[] value;
+		final long expireAt;		// 0 表示不过期
+		
+		CacheEntry(String key, byte[] value, long expireAt) {
+			super(key);
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+}
+
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template.ext.cache;
+
+import java.util.Set;
+import com.jfinal.plugin.redis.Cache;
+import com.jfinal.plugin.redis.Redis;
+import redis.clients.jedis.Jedis;
+
+/**
+ * RedisFragmentCache 使用 redis 存储 #cache 指令的缓存内容，适用于多个节点共享片段缓存
+ * 
+ * 配置：
+ * <pre>
+ * me.setFragmentCache(new RedisFragmentCache(Redis.use("fragment")));
+ * </pre>
+ */
+public class RedisFragmentCache implements IFragmentCache {
+	
+	public static final String DEFAULT_KEY_PREFIX = "jfinal_fragment:";
+	
+	private final Cache cache;
+	private final String keyPrefix;
+	
+	public RedisFragmentCache(Cache cache, String keyPrefix) {
+		if (cache == null) {
+			throw new IllegalArgumentException("cache can not be null");
+		}
+		if (keyPrefix == null) {
+			throw new IllegalArgumentException("keyPrefix can not be null");
+		}
+		this.cache = cache;
+		this.keyPrefix = keyPrefix;
+	}
+	
+	public RedisFragmentCache(Cache cache) {
+		this(cache, DEFAULT_KEY_PREFIX);
+	}
+	
+	public RedisFragmentCache() {
+		this(Redis.use());
+	}
+	
+	public byte[] get(String key) {
+		return cache.get(keyPrefix + key);
+	}
+	
+	public void put(String key, byte[] value, int ttlSeconds) {
+		if (ttlSeconds > 0) {
+			cache.setex(keyPrefix + key, ttlSeconds, value);
+		} else {
+			cache.set(keyPrefix + key, value);
+		}
+	}
+	
+	public void remove(String key) {
+		cache.del(keyPrefix + key);
+	}
+	
+	/**
+	 * 使用 KEYS 命令查找 keyPrefix 下的所有 key 再删除，key 数量较多时会阻塞 redis，慎用
+	 */
+	public void removeAll() {
+		String pattern = cache.getKeyNamingPolicy().getKeyName(keyPrefix) + "*";
+		Jedis jedis = cache.getJedis();
+		try {
+			Set<String> keys = jedis.keys(pattern);
+			if (keys != null && keys.size() > 0) {
+				jedis.del(keys.toArray(new String[keys.size()]));
+			}
+		} finally {
+			cache.close(jedis);
+		}
+	}
+}
+
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.jfinal.template.ext.directive;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import com.jfinal.kit.LogKit;
+import com.jfinal.kit.SingleFlight;
+import com.jfinal.template.Directive;
+import com.jfinal.template.Env;
+import com.jfinal.template.TemplateException;
+import com.jfinal.template.expr.ast.Expr;
+import com.jfinal.template.expr.ast.ExprList;
+import com.jfinal.template.ext.cache.IFragmentCache;
+import com.jfinal.template.io.CharWriter;
+import com.jfinal.template.io.FastStringWriter;
+import com.jfinal.template.io.IWritable;
+import com.jfinal.template.io.Writer;
+import com.jfinal.template.stat.ParseException;
+import com.jfinal.template.stat.Scope;
+
+/**
+ * #cache 指令缓存指令体渲染后的内容，缓存命中时直接输出，不再执行指令体
+ * 
+ * 该指令默认不注册，避免与应用中已有的同名指令冲突，需要时手动添加：
+ * <pre>
+ * public void configEngine(Engine me) {
+ *   me.addDirective("cache", CacheDirective.class);
+ * }
+ * </pre>
+ * 
+ * <pre>
+ * 用法：
+ * 1：第一个参数为缓存的 key，可以是任意表达式，以求值结果的 toString() 作为 key
+ * 2：第二个参数可选，为缓存的存活时间，单位为秒，不指定或者小于等于 0 表示不过期
+ * 
+ *   #cache("hotNews", 60)
+ *     ...
+ *   #end
+ *   
+ *   #cache("article_" + article.id, 300)
+ *     ...
+ *   #end
+ * 
+ * 1：缓存存储默认为 LocalFragmentCache，可通过 engine.setFragmentCache(...) 切换为 RedisFragmentCache
+ * 2：同一个 key 同时未命中时只有一个线程执行指令体，其它线程等待并共享其结果
+ * 3：缓存内容为按 engine 编码转换好的 byte[]，渲染到 OutputStream 时（例如 TemplateRender）直接写出
+ * 4：key 全局有效，不同位置的 #cache 指令使用相同的 key 将共享缓存内容
+ * 5：缓存命中时指令体中的 #set 等指令不会被执行
+ * </pre>
+ */
+public class CacheDirective extends Directive {
+	
+	private static final SingleFlight<FillKey, byte[]> fills = new SingleFlight<FillKey, byte[]>();
+	
+	private Expr keyExpr;
+	private Expr ttlExpr;
+	
+	public void setExprList(ExprList exprList) {
+		int len = exprList.length();
+		if (len == 0) {
+			throw new ParseException("The parameter of #cache directive can not be blank", location);
+		}
+		if (len > 2) {
+			throw new ParseException("wrong number of #cache directive parameter, two parameters allowed at most", location);
+		}
+		
+		this.keyExpr = exprList.getExpr(0);
+		this.ttlExpr = len == 2 ? exprList.getExpr(1) : null;
+		this.exprList = exprList;
+	}
+	
+	public void exec(Env env, Scope scope, Writer writer) {
+		Object key = keyExpr.eval(scope);
+		if (key == null) {
+			throw new TemplateException("The key of #cache directive can not be null", location);
+		}
+		
+		IFragmentCache cache = env.getEngineConfig().getFragmentCache();
+		String keyStr = key.toString();
+		byte[] data = get(cache, keyStr);
+		if (data == null) {
+			data = fill(env, scope, cache, keyStr, getTtlSeconds(scope));
+		}
+		
+		try {
+			writer.write(new Fragment(data, env.getEngineConfig().getEncoding()));
+		} catch (IOException e) {
+			throw new TemplateException(e.getMessage(), location, e);
+		}
+	}
+	
+	private int getTtlSeconds(Scope scope) {
+		if (ttlExpr == null) {
+			return 0;
+		}
+		Object value = ttlExpr.eval(scope);
+		if (!(value instanceof Number)) {
+			throw new TemplateException("The ttl of #cache directive must be a number", location);
+		}
+		return ((Number)value).intValue();
+	}
+	
+	private byte[] fill(final Env env, final Scope scope, final IFragmentCache cache, final String key, final int ttlSeconds) {
+		return fills.execute(new FillKey(cache, key), new Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				// 其它线程可能在本线程检查缓存之后刚完成填充
+				byte[] ret = get(cache, key);
+				if (ret == null) {
+					ret = render(env, scope);
+					put(cache, key, ret, ttlSeconds);
+				}
+				return ret;
+			}
+		});
+	}
+	
+	private byte[] render(Env env, Scope scope) {
+		CharWriter charWriter = new CharWriter(64);
+		FastStringWriter fsw = new FastStringWriter();
+		charWriter.init(fsw);
+		try {
+			stat.exec(env, scope, charWriter);
+		} finally {
+			charWriter.close();
+		}
+		return fsw.toString().getBytes(Charset.forName(env.getEngineConfig().getEncoding()));
+	}
+	
+	/**
+	 * 缓存存储出现异常时（例如 redis 不可用）退化为直接执行指令体
+	 */
+	private byte[] get(IFragmentCache cache, String key) {
+		try {
+			return cache.get(key);
+		} catch (RuntimeException e) {
+			LogKit.warn("#cache directive can not get fragment from cache, key: " + key, e);
+			return null;
+		}
+	}
+	
+	private void put(IFragmentCache cache, String key, byte[] value, int ttlSeconds) {
+		try {
+			cache.put(key, value, ttlSeconds);
+		} catch (RuntimeException e) {
+			LogKit.warn("#cache directive can not put fragment into cache, key: " + key, e);
+		}
+	}
+	
+	public boolean hasEnd() {
+		return true;
+	}
+	
+	private static class Fragment implements IWritable {
+		
+		final byte[] bytes;
+		final String encoding;
+		
+		Fragment(byte[] bytes, String encoding) {
+			this.bytes = bytes;
+			this.encoding = encoding;
+		}
+		
+		public byte[] getBytes() {
+			return bytes;
+		}
+		
+		public char[] getChars() {
+			return new String(bytes, Charset.forName(encoding)).toCharArray();
+		}
+	}
+	
+	private static class FillKey {
+		
+		final IFragmentCache cache;
+		final String key;
+		
+		FillKey(IFragmentCache cache, String key) {
+			this.cache = cache;
+			this.key = key;
+		}
+		
+		public int hashCode() {
+			return System.identityHashCode(cache) * 31 + key.hashCode();
+		}
+		
+		public boolean equals(Object o) {
+			if (!(o instanceof FillKey)) {
+				return false;
+			}
+			FillKey other = (FillKey)o;
+			return cache == other.cache && key.equals(other.key);
+		}
+	}
+}
+
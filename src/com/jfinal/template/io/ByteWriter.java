@@ -30,8 +30,12 @@ public class ByteWriter extends Writer {
 	char[] chars;
 	byte[] bytes;
 	
+	// 小于该值的字符可直接窄化为单个 byte，为 0 时不启用，详见 Encoder.singleByteCharLimit()
+	int singleByteCharLimit;
+	
 	public ByteWriter(Encoder encoder, int bufferSize) {
 		this.encoder = encoder;
+		this.singleByteCharLimit = encoder.singleByteCharLimit();
 		this.chars = new char[bufferSize];
 		this.bytes = new byte[bufferSize * ((int)encoder.maxBytesPerChar())];
 	}
@@ -64,6 +68,17 @@ public class ByteWriter extends Writer {
 			len -= chars.length;
 		}
 		
+		// ASCII、Latin-1 快速通道：逐字符直接转为 byte，跳过 getChars 与 encoder，遇到多字节字符时回退
+		int limit = singleByteCharLimit;
+		int i = 0;
+		for (char c; i < len && (c = str.charAt(offset + i)) < limit; i++) {
+			bytes[i] = (byte)c;
+		}
+		if (i == len) {
+			out.write(bytes, 0, len);
+			return ;
+		}
+		
 		str.getChars(offset, offset + len, chars, 0);
 		int byteLen = encoder.encode(chars, 0, len, bytes);
 		out.write(bytes, 0, byteLen);
@@ -80,6 +95,16 @@ public class ByteWriter extends Writer {
 			len -= chars.length;
 		}
 		
+		int limit = singleByteCharLimit;
+		int i = 0;
+		for (char c; i < len && (c = stringBuilder.charAt(offset + i)) < limit; i++) {
+			bytes[i] = (byte)c;
+		}
+		if (i == len) {
+			out.write(bytes, 0, len);
+			return ;
+		}
+		
 		stringBuilder.getChars(offset, offset + len, chars, 0);
 		int byteLen = encoder.encode(chars, 0, len, bytes);
 		out.write(bytes, 0, byteLen);
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.template.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChannelWriter
+ * 
+ * 渲染到 WritableByteChannel 或 ByteBuffer 数组中去：
+ * 1: 长度不小于 directThreshold 的静态文本直接将 Text 预先编码好的 byte[] 包装为 ByteBuffer 加入输出队列，不做拷贝
+ * 2: 表达式输出等较短的片段合并写入 chunk 缓冲区，避免产生大量细碎的 ByteBuffer
+ * 3: channel 为 GatheringByteChannel 时一次 gathering write 写出队列中的全部 ByteBuffer
+ * 
+ * 4: 字符串、数值等的编码委托给内部的 ByteWriter，其 out 为写入 chunk 的 ChunkOutputStream，
+ *    因此与 ByteWriter 共用 ASCII、Latin-1 快速通道以及 IntegerWriter 等工具类
+ * 
+ * init(null) 为收集模式，渲染结束后通过 toByteBuffers() 取走结果，此时 chunk 交由调用方持有不再复用
+ * 注意：channel 需为阻塞模式
+ */
+public class ChannelWriter extends Writer {
+	
+	static final int DEFAULT_CHUNK_SIZE = 8192;
+	static final int DEFAULT_DIRECT_THRESHOLD = 512;
+	static final int MAX_SEGMENTS = 64;
+	
+	WritableByteChannel channel;
+	final ByteWriter byteWriter;
+	
+	int chunkSize;
+	int directThreshold;
+	
+	byte[] chunk;
+	int chunkStart;		// chunk 中尚未加入 segments 的数据起始位置
+	int chunkPos;
+	
+	List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+	
+	public ChannelWriter(Encoder encoder, int bufferSize, int chunkSize, int directThreshold) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be greater than 0");
+		}
+		this.chunkSize = chunkSize;
+		this.directThreshold = directThreshold;
+		this.byteWriter = new ByteWriter(encoder, bufferSize).init(new ChunkOutputStream());
+	}
+	
+	public ChannelWriter(Encoder encoder, int bufferSize) {
+		this(encoder, bufferSize, DEFAULT_CHUNK_SIZE, DEFAULT_DIRECT_THRESHOLD);
+	}
+	
+	public ChannelWriter init(WritableByteChannel channel) {
+		this.channel = channel;
+		return this;
+	}
+	
+	public void flush() throws IOException {
+		if (channel != null) {
+			writeSegments();
+		}
+	}
+	
+	public void close() {
+		try {
+			if (channel != null) {
+				writeSegments();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			channel = null;
+			segments.clear();
+			chunkStart = chunkPos = 0;
+		}
+	}
+	
+	/**
+	 * 收集模式下取走渲染结果，较长的静态文本为与模板共享底层 byte[] 的只读 ByteBuffer
+	 */
+	public ByteBuffer[] toByteBuffers() {
+		sealChunk();
+		ByteBuffer[] ret = segments.toArray(new ByteBuffer[segments.size()]);
+		segments.clear();
+		chunk = null;
+		chunkStart = chunkPos = 0;
+		return ret;
+	}
+	
+	public void write(IWritable writable) throws IOException {
+		byte[] data = writable.getBytes();
+		if (data.length < directThreshold) {
+			copy(data, 0, data.length);
+			return ;
+		}
+		
+		sealChunk();
+		segments.add(ByteBuffer.wrap(data).asReadOnlyBuffer());
+		if (channel != null && segments.size() >= MAX_SEGMENTS) {
+			writeSegments();
+		}
+	}
+	
+	public void write(String str, int offset, int len) throws IOException {
+		byteWriter.write(str, offset, len);
+	}
+	
+	public void write(String str) throws IOException {
+		byteWriter.write(str);
+	}
+	
+	public void write(StringBuilder stringBuilder, int offset, int len) throws IOException {
+		byteWriter.write(stringBuilder, offset, len);
+	}
+	
+	public void write(StringBuilder stringBuilder) throws IOException {
+		byteWriter.write(stringBuilder);
+	}
+	
+	public void write(boolean booleanValue) throws IOException {
+		byteWriter.write(booleanValue);
+	}
+	
+	public void write(int intValue) throws IOException {
+		byteWriter.write(intValue);
+	}
+	
+	public void write(long longValue) throws IOException {
+		byteWriter.write(longValue);
+	}
+	
+	public void write(double doubleValue) throws IOException {
+		byteWriter.write(doubleValue);
+	}
+	
+	public void write(float floatValue) throws IOException {
+		byteWriter.write(floatValue);
+	}
+	
+	void copy(byte[] src, int off, int len) throws IOException {
+		while (len > 0) {
+			if (chunk == null) {
+				chunk = new byte[chunkSize];
+				chunkStart = chunkPos = 0;
+			} else if (chunkPos == chunk.length) {
+				nextChunk();
+				continue ;
+			}
+			
+			int n = Math.min(len, chunk.length - chunkPos);
+			System.arraycopy(src, off, chunk, chunkPos, n);
+			chunkPos += n;
+			off += n;
+			len -= n;
+		}
+	}
+	
+	/**
+	 * chunk 已写满：channel 模式下写出全部 segment 后复用 chunk，收集模式下另行分配
+	 */
+	private void nextChunk() throws IOException {
+		if (channel != null) {
+			writeSegments();
+		} else {
+			sealChunk();
+			chunk = new byte[chunkSize];
+			chunkStart = chunkPos = 0;
+		}
+	}
+	
+	private void sealChunk() {
+		if (chunkPos > chunkStart) {
+			segments.add(ByteBuffer.wrap(chunk, chunkStart, chunkPos - chunkStart).slice());
+			chunkStart = chunkPos;
+		}
+	}
+	
+	private void writeSegments() throws IOException {
+		sealChunk();
+		int size = segments.size();
+		if (size > 0) {
+			ByteBuffer[] srcs = segments.toArray(new ByteBuffer[size]);
+			if (channel instanceof GatheringByteChannel) {
+				GatheringByteChannel gatheringChannel = (GatheringByteChannel)channel;
+				int offset = 0;
+				while (offset < size) {
+					gatheringChannel.write(srcs, offset, size - offset);
+					while (offset < size && !srcs[offset].hasRemaining()) {
+						offset++;
+					}
+				}
+			} else {
+				for (ByteBuffer src : srcs) {
+					while (src.hasRemaining()) {
+						channel.write(src);
+					}
+				}
+			}
+			segments.clear();
+		}
+		chunkStart = chunkPos = 0;
+	}
+	
+	/**
+	 * 内部 ByteWriter 的 out，ByteWriter 以及 IntegerWriter 等工具类写入的数据拷贝到 chunk 中
+	 */
+	private class ChunkOutputStream extends OutputStream {
+		
+		public void write(int b) throws IOException {
+			if (chunk == null || chunkPos == chunk.length) {
+				copy(new byte[]{(byte)b}, 0, 1);
+			} else {
+				chunk[chunkPos++] = (byte)b;
+			}
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException {
+			copy(b, off, len);
+		}
+		
+		public void flush() {
+		}
+	}
+}
+
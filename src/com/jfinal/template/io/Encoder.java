@@ -24,5 +24,13 @@ public abstract class Encoder {
 	public abstract float maxBytesPerChar();
 	
 	public abstract int encode(char[] chars, int offset, int len, byte[] bytes);
+	
+	/**
+	 * 小于该值的字符编码后为单个 byte 且值与字符相同，ByteWriter 对此类字符跳过 encode 直接转换
+	 * 例如 ASCII 兼容编码返回 0x80，ISO-8859-1 返回 0x100，返回 0 表示不支持
+	 */
+	public int singleByteCharLimit() {
+		return 0;
+	}
 }
 
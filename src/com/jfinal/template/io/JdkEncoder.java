@@ -29,15 +29,45 @@ import java.nio.charset.CoderResult;
 public class JdkEncoder extends Encoder {
 	
 	private CharsetEncoder ce;
+	private int singleByteCharLimit;
 	
 	public JdkEncoder(Charset charset) {
 		this.ce = charset.newEncoder();
+		this.singleByteCharLimit = computeSingleByteCharLimit(charset);
 	}
 	
 	public float maxBytesPerChar() {
 		return ce.maxBytesPerChar();
 	}
 	
+	public int singleByteCharLimit() {
+		return singleByteCharLimit;
+	}
+	
+	/**
+	 * ISO-8859-1 全部 256 个字符均为单字节，GBK 等 ASCII 兼容编码仅 ASCII 字符为单字节
+	 */
+	private static int computeSingleByteCharLimit(Charset charset) {
+		if ("ISO-8859-1".equals(charset.name())) {
+			return 0x100;
+		}
+		
+		char[] ascii = new char[0x80];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (char)i;
+		}
+		byte[] bytes = new String(ascii).getBytes(charset);
+		if (bytes.length != ascii.length) {
+			return 0;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != i) {
+				return 0;
+			}
+		}
+		return 0x80;
+	}
+	
 	public int encode(char[] chars, int offset, int len, byte[] bytes) {
 		ce.reset();
         ByteBuffer bb = ByteBuffer.wrap(bytes);
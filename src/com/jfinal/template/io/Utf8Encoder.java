@@ -32,6 +32,10 @@ public class Utf8Encoder extends Encoder {
 		return 3.0F;
 	}
 	
+	public int singleByteCharLimit() {
+		return 0x80;
+	}
+	
 	public int encode(char[] chars, int offset, int len, byte[] bytes) {
         int sl = offset + len;
         int dp = 0;
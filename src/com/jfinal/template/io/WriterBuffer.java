@@ -34,6 +34,12 @@ public class WriterBuffer {
 		}
 	};
 	
+	private final ThreadLocal<ChannelWriter> channelWriters = new ThreadLocal<ChannelWriter>() {
+		protected ChannelWriter initialValue() {
+			return new ChannelWriter(encoderFactory.getEncoder(), bufferSize);
+		}
+	};
+	
 	private final ThreadLocal<CharWriter> charWriters = new ThreadLocal<CharWriter>() {
 		protected CharWriter initialValue() {
 			return new CharWriter(bufferSize);
@@ -50,6 +56,13 @@ public class WriterBuffer {
 		return byteWriters.get().init(outputStream);
 	}
 	
+	/**
+	 * channel 为 null 时为收集模式，详见 ChannelWriter
+	 */
+	public ChannelWriter getChannelWriter(java.nio.channels.WritableByteChannel channel) {
+		return channelWriters.get().init(channel);
+	}
+	
 	public CharWriter getCharWriter(java.io.Writer writer) {
 		return charWriters.get().init(writer);
 	}
@@ -109,8 +109,16 @@ public class Parser {
 			}
 			
 			// 过滤内容为空的 Text 节点，通常是处于两个指令之间的空白字符被移除以后的结果，详见 TextToken.deleteBlankTails()
-			if (stat instanceof Text && ((Text)stat).isEmpty()) {
-				continue ;
+			if (stat instanceof Text) {
+				if (((Text)stat).isEmpty()) {
+					continue ;
+				}
+				
+				// 合并被注释、#define、非解析块等分隔开的相邻 Text 节点
+				int last = statList.size() - 1;
+				if (last >= 0 && statList.get(last) instanceof Text && ((Text)statList.get(last)).merge((Text)stat)) {
+					continue ;
+				}
 			}
 			
 			statList.add(stat);
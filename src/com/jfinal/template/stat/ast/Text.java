@@ -87,6 +87,18 @@ public class Text extends Stat implements IWritable {
 		return chars;
 	}
 	
+	/**
+	 * 解析时合并相邻的 Text 节点，减少渲染时 write 的调用次数
+	 * 仅在 content 尚未转换为 bytes、chars 之前有效，返回 false 表示未合并
+	 */
+	public boolean merge(Text next) {
+		if (content == null || next.content == null || !charset.equals(next.charset)) {
+			return false;
+		}
+		content.append(next.content);
+		return true;
+	}
+	
 	public boolean isEmpty() {
 		if (content != null) {
 			return content.length() == 0;
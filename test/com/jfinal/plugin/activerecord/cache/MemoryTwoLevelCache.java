@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord.cache;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.jfinal.plugin.redis.Cache;
+import com.jfinal.plugin.redis.IKeyNamingPolicy;
+import com.jfinal.plugin.redis.serializer.JdkSerializer;
+
+/**
+ * MemoryTwoLevelCache.
+ * 覆盖 remoteXxx() 与 publish()，用进程内的 Remote 代替 redis 及其 pub/sub，
+ * 同一个 Remote 上的多个实例模拟集群中的多个节点，ttl 不生效
+ */
+class MemoryTwoLevelCache extends TwoLevelCache {
+
+	/**
+	 * 多个节点共享的 "redis"
+	 */
+	static class Remote {
+		final ConcurrentMap<String, ConcurrentMap<Object, Object>> data = new ConcurrentHashMap<String, ConcurrentMap<Object, Object>>();
+		final List<MemoryTwoLevelCache> nodes = new CopyOnWriteArrayList<MemoryTwoLevelCache>();
+		int getCount = 0;
+	}
+
+	private final Remote remote;
+	private volatile Runnable afterRemoteGet;
+
+	MemoryTwoLevelCache(Remote remote) {
+		super(new Cache("memory", null, JdkSerializer.me, IKeyNamingPolicy.defaultKeyNamingPolicy));
+		this.remote = remote;
+		remote.nodes.add(this);
+	}
+
+	/**
+	 * remoteGet() 读到数据之后、返回之前执行一次，用于模拟读取 redis 期间发生的写入与失效
+	 */
+	void afterRemoteGet(Runnable action) {
+		this.afterRemoteGet = action;
+	}
+
+	protected Object remoteGet(String cacheName, Object key) {
+		remote.getCount++;
+		ConcurrentMap<Object, Object> hash = remote.data.get(cacheName);
+		Object value = hash != null ? hash.get(key) : null;
+
+		Runnable action = afterRemoteGet;
+		if (action != null) {
+			afterRemoteGet = null;
+			action.run();
+		}
+		return value;
+	}
+
+	protected void remotePut(String cacheName, Object key, Object value, int ttl) {
+		ConcurrentMap<Object, Object> hash = remote.data.get(cacheName);
+		if (hash == null) {
+			hash = new ConcurrentHashMap<Object, Object>();
+			ConcurrentMap<Object, Object> old = remote.data.putIfAbsent(cacheName, hash);
+			if (old != null) {
+				hash = old;
+			}
+		}
+		hash.put(key, value);
+	}
+
+	protected void remoteRemove(String cacheName, Object key) {
+		ConcurrentMap<Object, Object> hash = remote.data.get(cacheName);
+		if (hash != null) {
+			hash.remove(key);
+		}
+	}
+
+	protected void remoteRemoveAll(String cacheName) {
+		remote.data.remove(cacheName);
+	}
+
+	/**
+	 * 同步投递给同一 Remote 上的所有节点，发送方按 nodeId 忽略自己的消息
+	 */
+	protected void publish(char op, String cacheName, Object key) {
+		String message = buildMessage(op, cacheName, key);
+		for (MemoryTwoLevelCache node : remote.nodes) {
+			node.onMessage(message);
+		}
+	}
+}
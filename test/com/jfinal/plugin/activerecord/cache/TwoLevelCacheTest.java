@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2011-2017, James Zhan 詹波 (jfinal@126.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfinal.plugin.activerecord.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TwoLevelCacheTest
+ */
+public class TwoLevelCacheTest {
+
+	private MemoryTwoLevelCache.Remote remote;
+	private MemoryTwoLevelCache nodeA;
+	private MemoryTwoLevelCache nodeB;
+
+	@Before
+	public void setUp() {
+		remote = new MemoryTwoLevelCache.Remote();
+		nodeA = new MemoryTwoLevelCache(remote);
+		nodeB = new MemoryTwoLevelCache(remote);
+	}
+
+	@Test
+	public void getFillsNearCache() {
+		nodeA.put("user", 1, "v1");
+
+		assertEquals("v1", nodeB.get("user", 1));
+		assertEquals("v1", nodeB.get("user", 1));
+		assertEquals(1, remote.getCount);
+		assertEquals(1, nodeB.getStats("user").getRemoteHitCount());
+		assertEquals(1, nodeB.getStats("user").getNearHitCount());
+	}
+
+	@Test
+	public void putInvalidatesOtherNodes() {
+		nodeA.put("user", 1, "v1");
+		assertEquals("v1", nodeB.get("user", 1));
+
+		nodeA.put("user", 1, "v2");
+		assertEquals("v2", nodeB.get("user", 1));
+	}
+
+	@Test
+	public void removeAndRemoveAllInvalidateOtherNodes() {
+		nodeA.put("user", 1, "v1");
+		nodeA.put("user", 2, "v2");
+		assertEquals("v1", nodeB.get("user", 1));
+		assertEquals("v2", nodeB.get("user", 2));
+
+		nodeA.remove("user", 1);
+		assertNull(nodeB.get("user", 1));
+		assertEquals("v2", nodeB.get("user", 2));
+
+		nodeA.removeAll("user");
+		assertNull(nodeB.get("user", 2));
+	}
+
+	@Test
+	public void invalidationDuringRemoteGetDiscardsStaleFill() {
+		nodeA.put("user", 1, "v1");
+
+		// nodeB 已从 redis 读到 v1，回填 near cache 之前 nodeA 写入 v2 并广播失效
+		nodeB.afterRemoteGet(new Runnable() {
+			public void run() {
+				nodeA.put("user", 1, "v2");
+			}
+		});
+		assertEquals("v1", nodeB.get("user", 1));
+
+		// 旧值不能留在 nodeB 的 near cache 中
+		assertEquals("v2", nodeB.get("user", 1));
+	}
+
+	@Test
+	public void removeAllDuringRemoteGetDiscardsStaleFill() {
+		nodeA.put("user", 1, "v1");
+
+		nodeB.afterRemoteGet(new Runnable() {
+			public void run() {
+				nodeA.removeAll("user");
+			}
+		});
+		assertEquals("v1", nodeB.get("user", 1));
+		assertNull(nodeB.get("user", 1));
+	}
+}